@@ -2,12 +2,12 @@
  * Copyright © Squid Solutions, 2016
  *
  * This file is part of Open Bouquet software.
- *  
+ *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU Affero General Public License as
  * published by the Free Software Foundation (version 3 of the License).
  *
- * There is a special FOSS exception to the terms and conditions of the 
+ * There is a special FOSS exception to the terms and conditions of the
  * licenses as they are applied to this program. See LICENSE.txt in
  * the directory of this program distribution.
  *
@@ -25,43 +25,63 @@ package com.squid.kraken.v4.ESIndexFacade;
 
 import java.util.concurrent.CountDownLatch;
 
-import org.elasticsearch.action.bulk.BulkItemResponse;
-import org.elasticsearch.action.bulk.BulkProcessor;
-import org.elasticsearch.action.bulk.BulkRequest;
-import org.elasticsearch.action.bulk.BulkResponse;
+/**
+ * Tracks the completion of a batch of documents submitted to the
+ * ESBulkIndexer. The documents of a single batch may be spread over several
+ * bulk requests, and mixed with documents from other batches.
+ *
+ * @author sergefantino
+ *
+ */
+public class BulkIndexingTicket {
+
+	private final CountDownLatch finish;
 
-public class BulkIndexingNotifyListener implements BulkProcessor.Listener {
+	private volatile String lastId;
 
-	private CountDownLatch finish ;
+	private volatile String error;
 
-	public String lastId;
-	public boolean withError;
-	
-	public BulkIndexingNotifyListener(CountDownLatch lock){
-		this.finish = lock;
+	public BulkIndexingTicket(int size) {
+		this.finish = new CountDownLatch(size);
 	}
-	
-	@Override
-	public void beforeBulk(long executionId, BulkRequest request) {
-		// TODO Auto-generated method stub
-		
+
+	/**
+	 * wait for all the documents to be acknowledged
+	 *
+	 * @return the ID of the last document of the batch
+	 * @throws InterruptedException
+	 */
+	public String await() throws InterruptedException {
+		finish.await();
+		return lastId;
+	}
+
+	public boolean isDone() {
+		return finish.getCount() == 0;
+	}
+
+	public boolean isWithError() {
+		return error != null;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	public String getLastId() {
+		return lastId;
 	}
 
-	@Override
-	public void afterBulk(long executionId, BulkRequest request,
-			BulkResponse response) {
-			BulkItemResponse[] itemsResp = response.getItems();
-			BulkItemResponse lastAction = itemsResp[itemsResp.length  -1];
-			lastId= lastAction.getId();
-			withError = false;
-			finish.countDown();
+	protected void ack(String id, boolean last) {
+		if (last) {
+			lastId = id;
+		}
+		finish.countDown();
 	}
 
-	@Override
-	public void afterBulk(long executionId, BulkRequest request,
-			Throwable failure) {
-		withError = true;
-		finish.countDown();		
+	protected void fail(String message) {
+		error = message;
+		finish.countDown();
 	}
 
 }
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright © Squid Solutions, 2016
+ *
+ * This file is part of Open Bouquet software.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ *
+ * There is a special FOSS exception to the terms and conditions of the
+ * licenses as they are applied to this program. See LICENSE.txt in
+ * the directory of this program distribution.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * Squid Solutions also offers commercial licenses with additional warranties,
+ * professional functionalities or services. If you purchase a commercial
+ * license, then it supersedes and replaces any other agreement between
+ * you and Squid Solutions (above licenses and LICENSE.txt included).
+ * See http://www.squidsolutions.com/EnterpriseBouquet/
+ *******************************************************************************/
+package com.squid.kraken.v4.ESIndexFacade;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+
+import com.squid.kraken.v4.core.analysis.engine.index.DimensionStoreES;
+
+/**
+ * A cursor over all the members of a dimension type, backed by an ES scroll:
+ * only one page of members is kept in memory at a time.
+ */
+public class DimensionMembersScroll {
+
+	private final Client client;
+
+	private final TimeValue keepAlive;
+
+	private String scrollId;
+
+	private SearchHit[] hits;
+
+	private boolean exhausted = false;
+
+	protected DimensionMembersScroll(Client client, SearchResponse first, TimeValue keepAlive) {
+		this.client = client;
+		this.keepAlive = keepAlive;
+		read(first);
+	}
+
+	/**
+	 * return the next page of members source, or an empty list if the scroll
+	 * is exhausted
+	 *
+	 * @return
+	 * @throws ESIndexFacadeException
+	 */
+	public List<Map<String, Object>> next() throws ESIndexFacadeException {
+		if (hits == null) {
+			if (exhausted) {
+				return Collections.emptyList();
+			}
+			try {
+				SearchResponse resp = client.prepareSearchScroll(scrollId).setScroll(keepAlive).execute().actionGet();
+				read(resp);
+			} catch (ElasticsearchException e) {
+				close();
+				throw new ESIndexFacadeException(e);
+			}
+			if (hits == null) {
+				return Collections.emptyList();
+			}
+		}
+		List<Map<String, Object>> page = new ArrayList<>(hits.length);
+		for (SearchHit hit : hits) {
+			Map<String, Object> source = hit.getSource();
+			if (source != null && !source.isEmpty()) {
+				page.add(source);
+			} else {
+				page.add(Collections.singletonMap(DimensionStoreES.idName, (Object) hit.getId()));
+			}
+		}
+		hits = null;
+		return page;
+	}
+
+	/**
+	 * release the scroll context
+	 */
+	public void close() {
+		if (scrollId != null) {
+			try {
+				client.prepareClearScroll().addScrollId(scrollId).execute();
+			} catch (ElasticsearchException e) {
+				// the context will expire anyway
+			}
+			scrollId = null;
+		}
+		exhausted = true;
+		hits = null;
+	}
+
+	private void read(SearchResponse resp) {
+		scrollId = resp.getScrollId();
+		SearchHit[] page = resp.getHits().getHits();
+		if (page == null || page.length == 0) {
+			close();
+		} else {
+			hits = page;
+		}
+	}
+
+}
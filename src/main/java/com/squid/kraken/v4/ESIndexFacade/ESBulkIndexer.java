@@ -0,0 +1,414 @@
+/*******************************************************************************
+ * Copyright © Squid Solutions, 2016
+ *
+ * This file is part of Open Bouquet software.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ *
+ * There is a special FOSS exception to the terms and conditions of the
+ * licenses as they are applied to this program. See LICENSE.txt in
+ * the directory of this program distribution.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * Squid Solutions also offers commercial licenses with additional warranties,
+ * professional functionalities or services. If you purchase a commercial
+ * license, then it supersedes and replaces any other agreement between
+ * you and Squid Solutions (above licenses and LICENSE.txt included).
+ * See http://www.squidsolutions.com/EnterpriseBouquet/
+ *******************************************************************************/
+package com.squid.kraken.v4.ESIndexFacade;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.Client;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.squid.kraken.v4.KrakenConfig;
+
+/**
+ * A long-lived bulk indexing engine for a single ES index. Documents from
+ * every caller are accumulated into shared bulk requests, which are sized
+ * adaptively by bytes according to the observed bulk latency.
+ * <p>
+ * The number of in-flight bulk requests is capped, so callers are
+ * back-pressured when ES can't keep up. Items rejected by ES (full bulk
+ * queue) are retried with an exponential backoff. The periodic flush and the
+ * retries never block the shared scheduler: if no slot is available, the
+ * bulk is sent later.
+ */
+public class ESBulkIndexer {
+
+	static final Logger logger = LoggerFactory.getLogger(ESBulkIndexer.class);
+
+	private static final long MIN_BULK_BYTES = Long
+			.parseLong(KrakenConfig.getProperty("elastic.bulk.minBytes", "262144"));
+
+	private static final long MAX_BULK_BYTES = Long
+			.parseLong(KrakenConfig.getProperty("elastic.bulk.maxBytes", "15728640"));
+
+	private static final long TARGET_LATENCY_MS = Long
+			.parseLong(KrakenConfig.getProperty("elastic.bulk.targetLatencyMs", "1000"));
+
+	private static final int MAX_CONCURRENT_BULKS = Integer
+			.parseInt(KrakenConfig.getProperty("elastic.bulk.maxConcurrent", "2"));
+
+	private static final int MAX_RETRIES = Integer.parseInt(KrakenConfig.getProperty("elastic.bulk.maxRetries", "5"));
+
+	private static final long FLUSH_INTERVAL_MS = Long
+			.parseLong(KrakenConfig.getProperty("elastic.bulk.flushIntervalMs", "1000"));
+
+	private static final long RETRY_DELAY_MS = 100;
+
+	// shared by all the indexers, the tasks must not block
+	private static final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "ESBulkIndexer-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private final Client client;
+
+	private final String indexName;
+
+	private final Semaphore inFlight = new Semaphore(MAX_CONCURRENT_BULKS);
+
+	private final ScheduledFuture<?> periodicFlush;
+
+	// the bulk being accumulated, guarded by this
+	private PendingBulk current = new PendingBulk();
+
+	private volatile long targetBytes = MIN_BULK_BYTES;
+
+	private volatile boolean closed = false;
+
+	// metrics
+	private final long startTime = System.currentTimeMillis();
+	private final AtomicLong docs = new AtomicLong();
+	private final AtomicLong bytes = new AtomicLong();
+	private final AtomicLong bulks = new AtomicLong();
+	private final AtomicLong retries = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final AtomicLong latency = new AtomicLong();
+
+	public ESBulkIndexer(Client client, String indexName) {
+		this.client = client;
+		this.indexName = indexName;
+		this.periodicFlush = scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					PendingBulk bulk = drain();
+					if (bulk != null) {
+						trySend(bulk);
+					}
+				} catch (Exception e) {
+					logger.error("periodic flush failed for index " + ESBulkIndexer.this.indexName, e);
+				}
+			}
+		}, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+	}
+
+	public String getIndexName() {
+		return indexName;
+	}
+
+	/**
+	 * add a batch of documents to the index. This may block if too many bulk
+	 * requests are in-flight.
+	 *
+	 * @param requests
+	 * @param flush
+	 *            if true, send the pending documents right away (use it if
+	 *            the caller is going to wait for the ticket)
+	 * @return a ticket to track the batch completion
+	 * @throws InterruptedException
+	 */
+	public BulkIndexingTicket add(List<IndexRequest> requests, boolean flush) throws InterruptedException {
+		if (closed) {
+			throw new IllegalStateException("bulk indexer for index " + indexName + " is closed");
+		}
+		BulkIndexingTicket ticket = new BulkIndexingTicket(requests.size());
+		int last = requests.size() - 1;
+		for (int i = 0; i < requests.size(); i++) {
+			enqueue(new BulkEntry(requests.get(i), ticket, i == last, 0));
+		}
+		if (flush) {
+			flush();
+		}
+		return ticket;
+	}
+
+	/**
+	 * send the pending documents, if any
+	 *
+	 * @throws InterruptedException
+	 */
+	public void flush() throws InterruptedException {
+		PendingBulk bulk = drain();
+		if (bulk != null) {
+			execute(bulk);
+		}
+	}
+
+	/**
+	 * flush the pending documents and wait for the in-flight requests
+	 *
+	 * @param timeout
+	 * @param unit
+	 * @throws InterruptedException
+	 */
+	public void close(long timeout, TimeUnit unit) throws InterruptedException {
+		closed = true;
+		periodicFlush.cancel(false);
+		flush();
+		if (inFlight.tryAcquire(MAX_CONCURRENT_BULKS, timeout, unit)) {
+			inFlight.release(MAX_CONCURRENT_BULKS);
+		} else {
+			logger.warn("closing bulk indexer for index " + indexName + " with pending requests");
+		}
+	}
+
+	public Map<String, Object> getStatistics() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		long elapse = Math.max(1, System.currentTimeMillis() - startTime);
+		long count = bulks.get();
+		stats.put("index", indexName);
+		stats.put("docs", docs.get());
+		stats.put("bytes", bytes.get());
+		stats.put("bulks", count);
+		stats.put("retries", retries.get());
+		stats.put("failures", failures.get());
+		stats.put("inFlight", MAX_CONCURRENT_BULKS - inFlight.availablePermits());
+		stats.put("targetBytes", targetBytes);
+		stats.put("avgLatencyMs", count > 0 ? latency.get() / count : 0);
+		stats.put("docsPerSec", docs.get() * 1000 / elapse);
+		return stats;
+	}
+
+	/**
+	 * take the bulk being accumulated
+	 *
+	 * @return the bulk, or null if there is no pending document
+	 */
+	private synchronized PendingBulk drain() {
+		if (current.entries.isEmpty()) {
+			return null;
+		}
+		PendingBulk bulk = current;
+		current = new PendingBulk();
+		return bulk;
+	}
+
+	private void enqueue(BulkEntry entry) throws InterruptedException {
+		PendingBulk bulk = null;
+		synchronized (this) {
+			current.add(entry);
+			if (current.request.estimatedSizeInBytes() >= targetBytes) {
+				bulk = current;
+				current = new PendingBulk();
+			}
+		}
+		if (bulk != null) {
+			execute(bulk);
+		}
+	}
+
+	private void execute(PendingBulk bulk) throws InterruptedException {
+		// back-pressure: block until a slot is available
+		inFlight.acquire();
+		send(bulk);
+	}
+
+	/**
+	 * send the bulk if a slot is available, else try again later; this is
+	 * used from the scheduler threads, which must not block
+	 */
+	private void trySend(final PendingBulk bulk) {
+		if (inFlight.tryAcquire()) {
+			send(bulk);
+		} else {
+			scheduler.schedule(new Runnable() {
+				@Override
+				public void run() {
+					trySend(bulk);
+				}
+			}, RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * send the bulk; the caller must hold an in-flight slot
+	 */
+	private void send(final PendingBulk bulk) {
+		final long start = System.currentTimeMillis();
+		final long size = bulk.request.estimatedSizeInBytes();
+		try {
+			client.bulk(bulk.request, new ActionListener<BulkResponse>() {
+				@Override
+				public void onResponse(BulkResponse response) {
+					try {
+						handleResponse(bulk, response, size, System.currentTimeMillis() - start);
+					} finally {
+						inFlight.release();
+					}
+				}
+
+				@Override
+				public void onFailure(Throwable e) {
+					try {
+						handleFailure(bulk, e);
+					} finally {
+						inFlight.release();
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			inFlight.release();
+			handleFailure(bulk, e);
+		}
+	}
+
+	private void handleResponse(PendingBulk bulk, BulkResponse response, long size, long elapse) {
+		bulks.incrementAndGet();
+		bytes.addAndGet(size);
+		latency.addAndGet(elapse);
+		List<BulkEntry> rejected = new ArrayList<>();
+		for (BulkItemResponse item : response.getItems()) {
+			BulkEntry entry = bulk.entries.get(item.getItemId());
+			if (!item.isFailed()) {
+				docs.incrementAndGet();
+				entry.ticket.ack(item.getId(), entry.last);
+			} else if (isRejection(item.getFailureMessage()) && entry.retry < MAX_RETRIES) {
+				rejected.add(entry);
+			} else {
+				failures.incrementAndGet();
+				entry.ticket.fail(item.getFailureMessage());
+			}
+		}
+		adapt(elapse, !rejected.isEmpty());
+		if (!rejected.isEmpty()) {
+			retry(rejected);
+		}
+	}
+
+	private void handleFailure(PendingBulk bulk, Throwable e) {
+		if (isRejection(e.toString())) {
+			List<BulkEntry> rejected = new ArrayList<>();
+			for (BulkEntry entry : bulk.entries) {
+				if (entry.retry < MAX_RETRIES) {
+					rejected.add(entry);
+				} else {
+					failures.incrementAndGet();
+					entry.ticket.fail(e.getMessage());
+				}
+			}
+			adapt(TARGET_LATENCY_MS, true);
+			retry(rejected);
+		} else {
+			logger.error("bulk request failed for index " + indexName, e);
+			for (BulkEntry entry : bulk.entries) {
+				failures.incrementAndGet();
+				entry.ticket.fail(e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * resize the bulks according to the latency: grow while ES answers fast,
+	 * shrink when it gets slow or starts rejecting
+	 */
+	private void adapt(long elapse, boolean rejection) {
+		long size = targetBytes;
+		if (rejection || elapse > TARGET_LATENCY_MS) {
+			size = Math.max(MIN_BULK_BYTES, size / 2);
+		} else if (elapse < TARGET_LATENCY_MS / 2) {
+			size = Math.min(MAX_BULK_BYTES, size + size / 2);
+		}
+		targetBytes = size;
+	}
+
+	private void retry(final List<BulkEntry> rejected) {
+		if (rejected.isEmpty()) {
+			return;
+		}
+		int attempt = rejected.get(0).retry;
+		retries.addAndGet(rejected.size());
+		// the rejected entries are sent in their own bulk, without waiting
+		// for a slot
+		scheduler.schedule(new Runnable() {
+			@Override
+			public void run() {
+				PendingBulk bulk = new PendingBulk();
+				for (BulkEntry entry : rejected) {
+					bulk.add(new BulkEntry(entry.request, entry.ticket, entry.last, entry.retry + 1));
+				}
+				trySend(bulk);
+			}
+		}, RETRY_DELAY_MS << attempt, TimeUnit.MILLISECONDS);
+	}
+
+	private boolean isRejection(String message) {
+		return message != null && message.contains("EsRejectedExecutionException");
+	}
+
+	private static class BulkEntry {
+
+		private final IndexRequest request;
+
+		private final BulkIndexingTicket ticket;
+
+		private final boolean last;
+
+		private final int retry;
+
+		public BulkEntry(IndexRequest request, BulkIndexingTicket ticket, boolean last, int retry) {
+			this.request = request;
+			this.ticket = ticket;
+			this.last = last;
+			this.retry = retry;
+		}
+
+	}
+
+	private static class PendingBulk {
+
+		private final BulkRequest request = new BulkRequest();
+
+		// entries are in the same order as the bulk items
+		private final List<BulkEntry> entries = new ArrayList<>();
+
+		public void add(BulkEntry entry) {
+			request.add(entry.request);
+			entries.add(entry);
+		}
+
+	}
+
+}
@@ -32,7 +32,8 @@ import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
@@ -48,10 +49,11 @@ import org.elasticsearch.action.admin.indices.mapping.put.PutMappingResponse;
 import org.elasticsearch.action.admin.indices.recovery.RecoveryRequest;
 import org.elasticsearch.action.admin.indices.recovery.RecoveryResponse;
 import org.elasticsearch.action.admin.indices.recovery.ShardRecoveryResponse;
-import org.elasticsearch.action.bulk.BulkProcessor;
 import org.elasticsearch.action.count.CountResponse;
 import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.search.SearchRequestBuilder;
@@ -60,6 +62,7 @@ import org.elasticsearch.client.Client;
 import org.elasticsearch.cluster.metadata.MappingMetaData;
 import org.elasticsearch.common.collect.ImmutableOpenMap;
 import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.index.mapper.MergeMappingException;
@@ -94,9 +97,15 @@ public class ESIndexFacade implements IESIndexFacade {
 	private Client client;
 	private Node node;
 
+	// one long-lived bulk indexer per index
+	private ConcurrentHashMap<String, ESBulkIndexer> bulkIndexers = new ConcurrentHashMap<>();
+
 	private static int MIN_NGRAM = 1;
 	private static int MAX_NGRAM = 6;
 
+	// how long a scroll context is kept alive between two pages
+	private static final long SCROLL_KEEP_ALIVE_MS = 60000;
+
 	public ESIndexFacade() {
 	}
 
@@ -106,10 +115,51 @@ public class ESIndexFacade implements IESIndexFacade {
 	}
 
 	public void stop() {
+		for (ESBulkIndexer indexer : bulkIndexers.values()) {
+			try {
+				indexer.close(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				// ignore
+			}
+		}
+		bulkIndexers.clear();
 		this.client.close();
 		node.close();
 	}
 
+	/**
+	 * get the bulk indexer for that index
+	 * 
+	 * @param indexName
+	 * @return
+	 */
+	private ESBulkIndexer getBulkIndexer(String indexName) {
+		ESBulkIndexer indexer = bulkIndexers.get(indexName);
+		if (indexer == null) {
+			ESBulkIndexer create = new ESBulkIndexer(client, indexName);
+			indexer = bulkIndexers.putIfAbsent(indexName, create);
+			if (indexer == null) {
+				indexer = create;
+			} else {
+				try {
+					create.close(0, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					// ignore
+				}
+			}
+		}
+		return indexer;
+	}
+
+	@Override
+	public List<Map<String, Object>> getBulkIndexingStatistics() {
+		List<Map<String, Object>> stats = new ArrayList<>();
+		for (ESBulkIndexer indexer : bulkIndexers.values()) {
+			stats.add(indexer.getStatistics());
+		}
+		return stats;
+	}
+
 	// one index per domain
 
 	@Override
@@ -182,6 +232,14 @@ public class ESIndexFacade implements IESIndexFacade {
 
 	@Override
 	public void removeDomain(String domainName) throws ESIndexFacadeException {
+		ESBulkIndexer indexer = bulkIndexers.remove(domainName);
+		if (indexer != null) {
+			try {
+				indexer.close(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				// ignore
+			}
+		}
 		try {
 			DeleteIndexResponse delete = client.admin().indices().delete(new DeleteIndexRequest(domainName))
 					.actionGet();
@@ -546,38 +604,20 @@ public class ESIndexFacade implements IESIndexFacade {
 			ArrayList<HashMap<String, Object>> members, HashMap<String, ESMapping> mappings, boolean wait)
 			throws ESIndexFacadeException {
 		try {
-
-			CountDownLatch finish = new CountDownLatch(1);
-			BulkProcessor.Listener listener;
-			if (wait) {
-				listener = new BulkIndexingNotifyListener(finish);
-			} else {
-				listener = new SimpleIndexingListener();
-			}
-
-			BulkProcessor bulkProcessor = BulkProcessor.builder(client, listener).build();
-			// }).setBulkActions(bulkSize).setConcurrentRequests(maxConcurrentBulk).build();
-
+			ArrayList<IndexRequest> requests = new ArrayList<>(members.size());
 			for (HashMap<String, Object> attributes : members) {
 				IndexRequest req = new IndexRequest().index(domainName).type(dimensionName)
 						.id(attributes.get(idName).toString()).source(attributes);
-				// System.out.println(req.toString());
-				bulkProcessor.add(req);
+				requests.add(req);
 			}
-			bulkProcessor.close();
+			BulkIndexingTicket ticket = getBulkIndexer(domainName).add(requests, wait);
 			if (wait) {
-				BulkIndexingNotifyListener l = (BulkIndexingNotifyListener) listener;
-				try {
-					finish.await();
-				} catch (InterruptedException e) {
-					throw new ESIndexFacadeException(
-							"Dimension Indexation ended with error " + domainName + "/" + dimensionName);
-				}
-				if (l.withError) {
-					throw new ESIndexFacadeException(
-							"Dimension Indexation ended with error " + domainName + "/" + dimensionName);
+				String lastId = ticket.await();
+				if (ticket.isWithError()) {
+					throw new ESIndexFacadeException("Dimension Indexation ended with error " + domainName + "/"
+							+ dimensionName + ": " + ticket.getError());
 				} else {
-					return l.lastId;
+					return lastId;
 				}
 			} else {
 				return "";
@@ -630,6 +670,32 @@ public class ESIndexFacade implements IESIndexFacade {
 		}
 	}
 
+	@Override
+	public Map<String, Map<String, Object>> getDimensionValues(String domainName, String dimensionName,
+			Collection<String> valueIDs) throws ESIndexFacadeException {
+		Map<String, Map<String, Object>> values = new HashMap<>();
+		if (valueIDs.isEmpty()) {
+			return values;
+		}
+		try {
+			logger.debug("multi-get dimension values index " + domainName + " type " + dimensionName + " for "
+					+ valueIDs.size() + " ids");
+			MultiGetResponse resp = client.prepareMultiGet().add(domainName, dimensionName, valueIDs).execute()
+					.actionGet();
+			for (MultiGetItemResponse item : resp.getResponses()) {
+				if (item.isFailed()) {
+					logger.debug("failed to get entry " + item.getId() + ", type " + dimensionName + ": "
+							+ item.getFailure().getMessage());
+				} else if (item.getResponse().isExists()) {
+					values.put(item.getId(), item.getResponse().getSourceAsMap());
+				}
+			}
+			return values;
+		} catch (Exception e) {
+			throw new ESIndexFacadeException("failed getting values for " + domainName + "/" + dimensionName, e);
+		}
+	}
+
 	@Override
 	public ArrayList<Map<String, Object>> getDimensionByIDs(String domainName, String dimensionName,
 			ArrayList<String> ids) {
@@ -686,6 +752,28 @@ public class ESIndexFacade implements IESIndexFacade {
 		}
 	}
 
+	@Override
+	public DimensionMembersScroll scrollDimensionMembers(String domainName, String dimensionName,
+			String sortingFieldName, int pageSize, HashMap<String, ESMapping> mappings) throws ESIndexFacadeException {
+		try {
+			logger.debug(" Scrolling " + domainName + "/" + dimensionName + " by pages of " + pageSize);
+
+			QueryBuilder query = ESIndexFacadeUtilities.filterOnType(dimensionName);
+			TimeValue keepAlive = new TimeValue(SCROLL_KEEP_ALIVE_MS);
+
+			SearchRequestBuilder srb = client.prepareSearch(domainName).setTypes(dimensionName).setQuery(query);
+			srb.setSize(pageSize);
+			srb.setScroll(keepAlive);
+			srb.addSort(SortBuilders
+					.fieldSort(ESIndexFacadeUtilities.getSortingFieldName(sortingFieldName, mappings, false)));
+			SearchResponse resp = srb.execute().actionGet();
+
+			return new DimensionMembersScroll(client, resp, keepAlive);
+		} catch (ElasticsearchException e) {
+			throw new ESIndexFacadeException(e);
+		}
+	}
+
 	@Override
 	public DimensionsSearchResult searchDimensionMembersByTokensAndLocalFilter(String domainName, String dimensionName,
 			String[] tokens, int from, int nbResults, HashMap<String, ESMapping> mappings, String idFieldname)
@@ -822,18 +910,7 @@ public class ESIndexFacade implements IESIndexFacade {
 			Collection<List<DimensionMember>> ids, HashMap<String, ESMapping> mappings, boolean wait)
 			throws ESIndexFacadeException {
 
-		CountDownLatch finish = new CountDownLatch(1);
-
-		BulkProcessor.Listener listener;
-		if (wait) {
-			listener = new BulkIndexingNotifyListener(finish);
-		} else {
-			listener = new SimpleIndexingListener();
-		}
-
-		BulkProcessor bulkProcessor = BulkProcessor.builder(client, listener).build();
-		// }).setBulkActions(bulkSize).setConcurrentRequests(maxConcurrentBulk).build();
-
+		ArrayList<IndexRequest> requests = new ArrayList<>(ids.size());
 		for (List<DimensionMember> corr : ids) {
 			if (types.size() != corr.size()) {
 				continue;
@@ -841,23 +918,22 @@ public class ESIndexFacade implements IESIndexFacade {
 			HashMap<String, Object> source = ESIndexFacadeUtilities.buildSourceIDs(types, corr, mappings);
 
 			IndexRequest req = new IndexRequest().index(domainName).type(hierarchyName).source(source);
-			bulkProcessor.add(req);
+			requests.add(req);
 		}
-		bulkProcessor.close();
-		if (wait) {
-			BulkIndexingNotifyListener l = (BulkIndexingNotifyListener) listener;
-			try {
-				finish.await();
-			} catch (InterruptedException e) {
-				throw new ESIndexFacadeException("Correlation Indexation ended with error ");
-			}
-			if (l.withError) {
-				throw new ESIndexFacadeException("Correlation Indexation ended with error ");
+		try {
+			BulkIndexingTicket ticket = getBulkIndexer(domainName).add(requests, wait);
+			if (wait) {
+				String lastId = ticket.await();
+				if (ticket.isWithError()) {
+					throw new ESIndexFacadeException("Correlation Indexation ended with error " + ticket.getError());
+				} else {
+					return lastId;
+				}
 			} else {
-				return l.lastId;
+				return "";
 			}
-		} else {
-			return "";
+		} catch (InterruptedException e) {
+			throw new ESIndexFacadeException("Correlation Indexation ended with error ");
 		}
 	};
 
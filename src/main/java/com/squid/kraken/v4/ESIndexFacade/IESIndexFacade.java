@@ -98,6 +98,33 @@ public interface IESIndexFacade {
 			String[] tokens, int from, int nbResults, HashMap<String, ESMapping> mappings, String idFieldname)
 			throws ESIndexFacadeException;
 
+	/**
+	 * open a scroll over all the members of the dimension type, sorted like
+	 * getNDimensionMembers()
+	 * 
+	 * @param domainName
+	 * @param dimensionName
+	 * @param sortingFieldName
+	 * @param pageSize
+	 * @param mappings
+	 * @return
+	 * @throws ESIndexFacadeException
+	 */
+	public DimensionMembersScroll scrollDimensionMembers(String domainName, String dimensionName,
+			String sortingFieldName, int pageSize, HashMap<String, ESMapping> mappings) throws ESIndexFacadeException;
+
+	/**
+	 * get several dimension values in a single round-trip
+	 * 
+	 * @param domainName
+	 * @param dimensionName
+	 * @param valueIDs
+	 * @return the values source indexed by ID; unknown IDs are ignored
+	 * @throws ESIndexFacadeException
+	 */
+	public Map<String, Map<String, Object>> getDimensionValues(String domainName, String dimensionName,
+			Collection<String> valueIDs) throws ESIndexFacadeException;
+
 	ArrayList<Map<String, Object>> getDimensionByIDs(String domainName, String dimensionName, ArrayList<String> ids);
 
 	// populate correlations
@@ -135,6 +162,15 @@ public interface IESIndexFacade {
 			String fieldname, Object threshold, ESIndexFacadeUtilities.InequalityRelation binRel, int from,
 			int nbResults, HashMap<String, ESMapping> mappings);
 
+	// monitoring
+
+	/**
+	 * return the bulk indexing statistics, one entry per index
+	 * 
+	 * @return
+	 */
+	public List<Map<String, Object>> getBulkIndexingStatistics();
+
 	// count
 
 	public long getCountType(String domainName, String dimensionName);
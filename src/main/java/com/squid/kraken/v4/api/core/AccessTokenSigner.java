@@ -0,0 +1,341 @@
+/*******************************************************************************
+ * Copyright © Squid Solutions, 2016
+ *
+ * This file is part of Open Bouquet software.
+ *  
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ *
+ * There is a special FOSS exception to the terms and conditions of the 
+ * licenses as they are applied to this program. See LICENSE.txt in
+ * the directory of this program distribution.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * Squid Solutions also offers commercial licenses with additional warranties,
+ * professional functionalities or services. If you purchase a commercial
+ * license, then it supersedes and replaces any other agreement between
+ * you and Squid Solutions (above licenses and LICENSE.txt included).
+ * See http://www.squidsolutions.com/EnterpriseBouquet/
+ *******************************************************************************/
+package com.squid.kraken.v4.api.core;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jws.JsonWebSignature;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.MalformedClaimException;
+import org.jose4j.jwt.NumericDate;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.jose4j.jwt.consumer.JwtConsumer;
+import org.jose4j.jwt.consumer.JwtConsumerBuilder;
+import org.jose4j.keys.HmacKey;
+import org.jose4j.lang.JoseException;
+import org.mongodb.morphia.Datastore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Optional;
+import com.squid.kraken.v4.KrakenConfig;
+import com.squid.kraken.v4.model.AccessToken;
+import com.squid.kraken.v4.model.AccessTokenPK;
+import com.squid.kraken.v4.persistence.MongoDBHelper;
+
+/**
+ * Stateless access tokens: the token id is a signed JWT carrying the
+ * customer, user, client and expiration, so it can be validated without
+ * reading the token store.<br>
+ * Only {@link AccessToken.Type#NORMAL} tokens with an expiration are signed,
+ * the other tokens (refresh, code...) are still stored.<br>
+ * Revoked tokens are kept in a small in-memory list until they expire; the
+ * revocation is propagated to the other servers as an AccessTokenPK DELETE
+ * event through the {@link GlobalEventPublisher}, and persisted so it can be
+ * reloaded by {@link #resync()}.<br>
+ * A logout revokes all the tokens issued before to the user: it is published
+ * as a signed logout marker, handled like a token revocation.<br>
+ * Enabled with "kraken.token.jwt=true"; all the servers must share the same
+ * "kraken.token.jwt.secret", the signed tokens are disabled if it is not set.
+ * Tokens valid for more than "kraken.token.jwt.maxAge" ms are still stored.
+ */
+public class AccessTokenSigner {
+
+	static final Logger logger = LoggerFactory.getLogger(AccessTokenSigner.class);
+
+	private static final String CUSTOMER_CLAIM = "customerId";
+	private static final String CLIENT_CLAIM = "clientId";
+	private static final String REFRESH_CLAIM = "refreshToken";
+	private static final String ISSUED_CLAIM = "issuedAtMillis";
+	private static final String LOGOUT_CLAIM = "logout";
+
+	private static AccessTokenSigner instance;
+
+	public static synchronized AccessTokenSigner getInstance() {
+		if (instance == null) {
+			instance = new AccessTokenSigner();
+		}
+		return instance;
+	}
+
+	private final boolean enabled;
+
+	private final long maxAge;
+
+	private final HmacKey key;
+
+	private final JwtConsumer consumer;
+
+	// revoked token id -> expiration date
+	private final ConcurrentHashMap<String, Long> revoked = new ConcurrentHashMap<String, Long>();
+
+	// customerId/userId -> {logout date, expiration}: the tokens issued
+	// before the logout are revoked
+	private final ConcurrentHashMap<String, long[]> logouts = new ConcurrentHashMap<String, long[]>();
+
+	private AccessTokenSigner() {
+		boolean enabled = Boolean.parseBoolean(KrakenConfig.getProperty("kraken.token.jwt", "false"));
+		String secret = KrakenConfig.getProperty("kraken.token.jwt.secret", null);
+		byte[] seed;
+		if (secret != null) {
+			seed = secret.getBytes(StandardCharsets.UTF_8);
+		} else {
+			if (enabled) {
+				// a per-server key would reject the tokens signed by the other servers
+				logger.error("kraken.token.jwt.secret is not set, signed tokens are disabled");
+				enabled = false;
+			}
+			seed = new byte[32];
+			new SecureRandom().nextBytes(seed);
+		}
+		this.enabled = enabled;
+		// 30 days
+		this.maxAge = Long.parseLong(KrakenConfig.getProperty("kraken.token.jwt.maxAge", "2592000000"));
+		this.key = new HmacKey(sha256(seed));
+		// the expiration is checked by getToken() to report expired tokens
+		this.consumer = new JwtConsumerBuilder().setVerificationKey(key).setSkipAllValidators().build();
+		if (enabled) {
+			resync();
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * check if the token must be signed instead of being stored
+	 */
+	public boolean isSignable(AccessToken token) {
+		return enabled && token.getExpirationDateMillis() != null
+				&& token.getExpirationDateMillis() - System.currentTimeMillis() <= maxAge
+				&& (token.getType() == null || token.getType() == AccessToken.Type.NORMAL);
+	}
+
+	/**
+	 * check if the token id is a signed token (a JWT compact serialization)
+	 */
+	public boolean isSigned(AccessTokenPK id) {
+		return enabled && id != null && id.getTokenId() != null && id.getTokenId().indexOf('.') > 0;
+	}
+
+	/**
+	 * sign the token: its id is replaced by the JWT
+	 * 
+	 * @param token
+	 * @return the token
+	 */
+	public AccessToken sign(AccessToken token) {
+		JwtClaims claims = new JwtClaims();
+		claims.setJwtId(token.getId().getTokenId());
+		claims.setIssuedAtToNow();
+		claims.setClaim(ISSUED_CLAIM, System.currentTimeMillis());
+		claims.setExpirationTime(NumericDate.fromMilliseconds(token.getExpirationDateMillis()));
+		claims.setClaim(CUSTOMER_CLAIM, token.getCustomerId());
+		if (token.getUserId() != null) {
+			claims.setSubject(token.getUserId());
+		}
+		if (token.getClientId() != null) {
+			claims.setClaim(CLIENT_CLAIM, token.getClientId());
+		}
+		if (token.getRefreshToken() != null) {
+			claims.setClaim(REFRESH_CLAIM, token.getRefreshToken());
+		}
+		token.setId(sign(claims));
+		return token;
+	}
+
+	/**
+	 * create the logout marker of the user: once deleted, all the tokens
+	 * issued to the user before now are revoked
+	 * 
+	 * @param customerId
+	 * @param userId
+	 * @return the marker id
+	 */
+	public AccessTokenPK logout(String customerId, String userId) {
+		JwtClaims claims = new JwtClaims();
+		claims.setJwtId(UUID.randomUUID().toString());
+		claims.setIssuedAtToNow();
+		claims.setClaim(ISSUED_CLAIM, System.currentTimeMillis());
+		// no token issued before can outlive it
+		claims.setExpirationTime(NumericDate.fromMilliseconds(System.currentTimeMillis() + maxAge));
+		claims.setClaim(CUSTOMER_CLAIM, customerId);
+		claims.setSubject(userId);
+		claims.setClaim(LOGOUT_CLAIM, true);
+		return sign(claims);
+	}
+
+	private AccessTokenPK sign(JwtClaims claims) {
+		JsonWebSignature jws = new JsonWebSignature();
+		jws.setPayload(claims.toJson());
+		jws.setKey(key);
+		jws.setAlgorithmHeaderValue(AlgorithmIdentifiers.HMAC_SHA256);
+		try {
+			return new AccessTokenPK(jws.getCompactSerialization());
+		} catch (JoseException e) {
+			throw new APIException("unable to sign the access token", e, false);
+		}
+	}
+
+	/**
+	 * verify the token signature and rebuild the token
+	 * 
+	 * @param id
+	 * @return the token or absent if the signature is invalid or if it has
+	 *         been revoked; note that the token may be expired
+	 */
+	public Optional<AccessToken> read(AccessTokenPK id) {
+		if (revoked.containsKey(id.getTokenId())) {
+			return Optional.absent();
+		}
+		try {
+			JwtClaims claims = consumer.processToClaims(id.getTokenId());
+			if (claims.hasClaim(LOGOUT_CLAIM) || isLoggedOut(claims)) {
+				return Optional.absent();
+			}
+			AccessToken token = new AccessToken(id, claims.getStringClaimValue(CUSTOMER_CLAIM),
+					claims.getStringClaimValue(CLIENT_CLAIM), claims.getExpirationTime().getValueInMillis());
+			token.setUserId(claims.getSubject());
+			token.setType(AccessToken.Type.NORMAL);
+			token.setRefreshToken(claims.getStringClaimValue(REFRESH_CLAIM));
+			return Optional.of(token);
+		} catch (InvalidJwtException | MalformedClaimException e) {
+			logger.info("invalid signed access token: " + e.getMessage());
+			return Optional.absent();
+		}
+	}
+
+	private boolean isLoggedOut(JwtClaims claims) throws MalformedClaimException {
+		long[] logout = logouts.get(getUserKey(claims));
+		return logout != null && getIssuedAt(claims) <= logout[0];
+	}
+
+	private String getUserKey(JwtClaims claims) throws MalformedClaimException {
+		return claims.getStringClaimValue(CUSTOMER_CLAIM) + "/" + claims.getSubject();
+	}
+
+	private long getIssuedAt(JwtClaims claims) throws MalformedClaimException {
+		Long millis = claims.getClaimValue(ISSUED_CLAIM, Long.class);
+		if (millis != null) {
+			return millis;
+		}
+		return claims.getIssuedAt() != null ? claims.getIssuedAt().getValueInMillis() : 0;
+	}
+
+	/**
+	 * revoke a signed token until it expires; if the token is a logout marker
+	 * revoke all the tokens issued to the user before it
+	 * 
+	 * @param id
+	 */
+	public void revoke(AccessTokenPK id) {
+		try {
+			JwtClaims claims = consumer.processToClaims(id.getTokenId());
+			long expiration = claims.getExpirationTime().getValueInMillis();
+			if (claims.hasClaim(LOGOUT_CLAIM)) {
+				String user = getUserKey(claims);
+				long issuedAt = getIssuedAt(claims);
+				long[] previous = logouts.get(user);
+				if (previous == null || previous[0] < issuedAt) {
+					logouts.put(user, new long[] { issuedAt, expiration });
+				}
+			} else {
+				revoked.put(id.getTokenId(), expiration);
+			}
+		} catch (InvalidJwtException | MalformedClaimException e) {
+			logger.info("invalid signed access token: " + e.getMessage());
+		}
+		purge();
+	}
+
+	/**
+	 * persist the revocation so the servers can reload it on resync; the
+	 * revocation itself is applied by the DELETE event
+	 * 
+	 * @param id
+	 */
+	public void store(AccessTokenPK id) {
+		try {
+			JwtClaims claims = consumer.processToClaims(id.getTokenId());
+			MongoDBHelper.getDatastore().save(
+					new AccessTokenRevocation(id.getTokenId(), claims.getExpirationTime().getValueInMillis()));
+		} catch (InvalidJwtException | MalformedClaimException e) {
+			logger.info("invalid signed access token: " + e.getMessage());
+		} catch (Exception e) {
+			logger.error("failed to store the token revocation, it won't survive a resync", e);
+		}
+	}
+
+	/**
+	 * reload the persisted revocations: some DELETE events may have been
+	 * missed by this server
+	 */
+	public void resync() {
+		if (!enabled) {
+			return;
+		}
+		try {
+			Datastore ds = MongoDBHelper.getDatastore();
+			ds.delete(ds.createQuery(AccessTokenRevocation.class).field("expiration")
+					.lessThan(System.currentTimeMillis()));
+			for (AccessTokenRevocation revocation : ds.createQuery(AccessTokenRevocation.class).asList()) {
+				revoke(new AccessTokenPK(revocation.getId()));
+			}
+		} catch (Exception e) {
+			logger.error("failed to reload the token revocations", e);
+		}
+	}
+
+	private void purge() {
+		long now = System.currentTimeMillis();
+		for (Iterator<Entry<String, Long>> iter = revoked.entrySet().iterator(); iter.hasNext();) {
+			if (iter.next().getValue() < now) {
+				iter.remove();
+			}
+		}
+		for (Iterator<Entry<String, long[]>> iter = logouts.entrySet().iterator(); iter.hasNext();) {
+			if (iter.next().getValue()[1] < now) {
+				iter.remove();
+			}
+		}
+	}
+
+	private static byte[] sha256(byte[] seed) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(seed);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -23,6 +23,13 @@
  *******************************************************************************/
 package com.squid.kraken.v4.api.core;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiConsumer;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.EntityTag;
+
 import com.squid.kraken.v4.persistence.AppContext;
 
 /**
@@ -36,4 +43,38 @@ public class BaseServiceRest {
         this.userContext = userContext;
     }
 
+    /**
+     * Resume a suspended response when the future completes.<br>
+     * Errors are resumed as is, so they are handled by the exception mappers
+     * like for a synchronous call.
+     */
+    public static <V> void resume(final AsyncResponse asyncResponse, CompletableFuture<V> future) {
+        future.whenComplete(new BiConsumer<V, Throwable>() {
+            @Override
+            public void accept(V value, Throwable error) {
+                if (error instanceof CompletionException && error.getCause() != null) {
+                    error = error.getCause();
+                }
+                if (error != null) {
+                    asyncResponse.resume(error);
+                } else {
+                    asyncResponse.resume(value);
+                }
+            }
+        });
+    }
+
+    /**
+     * check if the If-None-Match header lists the (strong) ETag
+     */
+    public static boolean matchETag(String ifNoneMatch, EntityTag etag) {
+        for (String value : ifNoneMatch.split(",")) {
+            String tag = value.trim();
+            if (tag.equals("*") || tag.equals(etag.toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
 }
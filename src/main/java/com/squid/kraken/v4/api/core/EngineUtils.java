@@ -24,10 +24,13 @@
 package com.squid.kraken.v4.api.core;
 
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
 
@@ -281,9 +284,9 @@ public class EngineUtils {
 				Intervalle range = null;
 				if (index.getDimension().getType() == Type.CONTINUOUS) {
 					if (index.getStatus()==Status.DONE) {
-						List<DimensionMember> members = index.getMembers();
-						if (!members.isEmpty()) {
-							DimensionMember member = members.get(0);
+						// only read the first member, no need for a scroll
+						DimensionMember member = index.getMember(0);
+						if (member != null) {
 							Object object = member.getID();
 							if (object instanceof Intervalle) {
 								range = (Intervalle)object;
@@ -549,6 +552,17 @@ public class EngineUtils {
 						}
 					}
 					AccessRightsUtils.getInstance().checkRole(ctx, index.getDimension(), Role.READ);
+					// resolve all the selected keys in a single lookup
+					List<String> keys = new ArrayList<>();
+					for (FacetMember selectedItem : facetSel.getSelectedItems()) {
+						if (selectedItem instanceof FacetMemberString) {
+							String key = ((FacetMemberString) selectedItem).getId();
+							if (key!=null && !key.equals("") && facetSel.getId()!=null) {
+								keys.add(key);
+							}
+						}
+					}
+					Map<String, DimensionMember> resolved = keys.isEmpty()?Collections.<String, DimensionMember>emptyMap():index.getMembersByKeys(keys);
 					for (FacetMember selectedItem : facetSel.getSelectedItems()) {
 						if (selectedItem instanceof FacetMemberInterval) {
 							IntervalleObject compareFromInterval = null;
@@ -573,7 +587,7 @@ public class EngineUtils {
 									//&& !fmember.getId().equals("-1") // support legacy drill-down // end of legacy support !
 									&& facetSel.getId()!=null) {// to support legacy
 								// if we provide the ID, it's safe to use it...
-								DimensionMember member = index.getMemberByKey(fmember.getId());
+								DimensionMember member = resolved.get(fmember.getId());
 								if (member!=null) {
 									ds.add(axis, member);
 								} else if (fmember.getValue()!=null) {
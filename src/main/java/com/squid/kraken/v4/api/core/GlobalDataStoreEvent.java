@@ -25,10 +25,7 @@ package com.squid.kraken.v4.api.core;
 
 import java.io.Serializable;
 
-import org.bson.types.ObjectId;
 import org.mongodb.morphia.annotations.Embedded;
-import org.mongodb.morphia.annotations.Entity;
-import org.mongodb.morphia.annotations.Id;
 
 import com.squid.kraken.v4.model.GenericPK;
 import com.squid.kraken.v4.persistence.DataStoreEvent;
@@ -37,16 +34,14 @@ import com.squid.kraken.v4.persistence.DataStoreEvent.Type;
 
 
 /**
- * A {@link DataStoreEvent} wrapper to be persisted in the shared event queue.
+ * A {@link DataStoreEvent} wrapper to be persisted in the shared event queue,
+ * as part of a {@link GlobalDataStoreEventBatch}.
  */
-@Entity(value = GlobalEventPublisher.EVENTBUS, noClassnameStored = true)
+@Embedded
 public class GlobalDataStoreEvent implements Serializable {
 
     private static final long serialVersionUID = 4424781302038215507L;
     
-    @Id
-    private ObjectId id;
-
     @Embedded
     private GenericPK sourceId;
     
@@ -68,6 +63,7 @@ public class GlobalDataStoreEvent implements Serializable {
         this.ts = ts;
         this.server = server;
         this.type = type;
+        this.emitter = emitter;
     }
 
     public GenericPK getSourceId() {
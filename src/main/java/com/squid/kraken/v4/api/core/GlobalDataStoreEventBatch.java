@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright © Squid Solutions, 2016
+ *
+ * This file is part of Open Bouquet software.
+ *  
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ *
+ * There is a special FOSS exception to the terms and conditions of the 
+ * licenses as they are applied to this program. See LICENSE.txt in
+ * the directory of this program distribution.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * Squid Solutions also offers commercial licenses with additional warranties,
+ * professional functionalities or services. If you purchase a commercial
+ * license, then it supersedes and replaces any other agreement between
+ * you and Squid Solutions (above licenses and LICENSE.txt included).
+ * See http://www.squidsolutions.com/EnterpriseBouquet/
+ *******************************************************************************/
+package com.squid.kraken.v4.api.core;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.mongodb.morphia.annotations.Embedded;
+import org.mongodb.morphia.annotations.Entity;
+import org.mongodb.morphia.annotations.Id;
+
+/**
+ * The events published by a server during a flush interval, persisted as a
+ * single document in the shared event queue.<br>
+ * The sequence number is incremented for each batch of a server session, so
+ * the readers can detect the batches they missed.
+ */
+@Entity(value = GlobalEventPublisher.EVENTBUS, noClassnameStored = true)
+public class GlobalDataStoreEventBatch implements Serializable {
+
+    private static final long serialVersionUID = -3416553150934950287L;
+
+    @Id
+    private ObjectId id;
+
+    private long ts;
+
+    private String server;
+
+    private long session;
+
+    private long seq;
+
+    @Embedded
+    private List<GlobalDataStoreEvent> events = new ArrayList<GlobalDataStoreEvent>();
+
+    public GlobalDataStoreEventBatch() {
+
+    }
+
+    public GlobalDataStoreEventBatch(String server, long session, long seq, long ts, List<GlobalDataStoreEvent> events) {
+        super();
+        this.server = server;
+        this.session = session;
+        this.seq = seq;
+        this.ts = ts;
+        this.events = events;
+    }
+
+    public long getTs() {
+        return ts;
+    }
+
+    public void setTs(long ts) {
+        this.ts = ts;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public void setServer(String server) {
+        this.server = server;
+    }
+
+    public long getSession() {
+        return session;
+    }
+
+    public void setSession(long session) {
+        this.session = session;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    public List<GlobalDataStoreEvent> getEvents() {
+        return events;
+    }
+
+    public void setEvents(List<GlobalDataStoreEvent> events) {
+        this.events = events;
+    }
+
+    @Override
+    public String toString() {
+        return "GlobalDataStoreEventBatch [server=" + server + ", session=" + session + ", seq=" + seq + ", ts=" + ts
+                + ", events=" + (events != null ? events.size() : 0) + "]";
+    }
+
+}
@@ -23,7 +23,17 @@
  *******************************************************************************/
 package com.squid.kraken.v4.api.core;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.mongodb.morphia.query.Query;
 import org.slf4j.Logger;
@@ -32,11 +42,14 @@ import org.slf4j.LoggerFactory;
 import com.mongodb.BasicDBObject;
 import com.mongodb.DB;
 import com.squid.kraken.v4.KrakenConfig;
+import com.squid.kraken.v4.caching.CacheFactoryEHCache;
+import com.squid.kraken.v4.core.analysis.engine.index.DimensionMemberCache;
 import com.squid.kraken.v4.model.GenericPK;
 import com.squid.kraken.v4.model.Persistent;
 import com.squid.kraken.v4.persistence.DataStoreEvent;
 import com.squid.kraken.v4.persistence.DataStoreEventBus;
 import com.squid.kraken.v4.persistence.DataStoreEventObserver;
+import com.squid.kraken.v4.persistence.EffectiveRoleCache;
 import com.squid.kraken.v4.persistence.MongoDBHelper;
 
 /**
@@ -46,19 +59,59 @@ import com.squid.kraken.v4.persistence.MongoDBHelper;
  * Polls the shared message queue for incoming events from other servers and 
  * publish it to the local {@link DataStoreEventBus}. Note : Currently only 
  * source object ids (pks) are published<br>
- * It uses a MongoDB capped collection named "eventbus" to store the queue and a tailable cursor 
+ * It uses a MongoDB capped collection named "eventbus_batch" to store the queue and a tailable cursor 
  * to subscribe to notifications.<br>
+ * The events are published by batches, one document per flush interval. Each
+ * batch has a sequence number, if a reader detects that it missed some batches
+ * from a server (e.g. because the capped collection wrapped around) it flushes
+ * its local caches.<br>
+ * The pending events are bounded by "kraken.eventbus.maxPending": when Mongo
+ * can't keep up the events are dropped and a sequence number is skipped, so
+ * the other servers will resync.<br>
  */
 public class GlobalEventPublisher implements DataStoreEventObserver {
 
   final Logger logger = LoggerFactory.getLogger(GlobalEventPublisher.class);
 
   static public final String TS_FIELD = "ts";
-  static public final String EVENTBUS = "eventbus";
+  // the former "eventbus" collection can't be resized, so we are using a new one
+  static public final String EVENTBUS = "eventbus_batch";
   static private GlobalEventPublisher instance;
 
+  private static final long CAPPED_SIZE = Long.parseLong(KrakenConfig.getProperty("kraken.eventbus.size", "16777216"));
+
+  private static final long FLUSH_MS = Long.parseLong(KrakenConfig.getProperty("kraken.eventbus.flushMs", "50"));
+
+  // max number of events per document
+  private static final int MAX_BATCH_SIZE = 1000;
+
+  private static final int MAX_PENDING = Integer.parseInt(KrakenConfig.getProperty("kraken.eventbus.maxPending", "100000"));
+
   private final String serverUUID;
 
+  // identify this server run, the sequence restarts for each session
+  private final long session = System.currentTimeMillis();
+
+  // guarded by this
+  private long seq = 0;
+
+  // guarded by itself
+  private final List<GlobalDataStoreEvent> pending = new ArrayList<GlobalDataStoreEvent>();
+
+  // number of events dropped since the last flush, guarded by pending
+  private long dropped = 0;
+
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "GlobalEventPublisher-flush");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  private ScheduledFuture<?> flushTask;
+
   private Reader reader;
 
   private Thread readerThread;
@@ -87,7 +140,7 @@ public class GlobalEventPublisher implements DataStoreEventObserver {
 
     // Create the capped collection
     final BasicDBObject conf = new BasicDBObject("capped", true);
-    conf.put("size", 100000);
+    conf.put("size", CAPPED_SIZE);
     if (!mongo.collectionExists(EVENTBUS)) {
       logger.info("creating capped collection : " + EVENTBUS);
       mongo.createCollection(EVENTBUS, conf);
@@ -104,6 +157,17 @@ public class GlobalEventPublisher implements DataStoreEventObserver {
     reader = new Reader(serverUUID, eventBus, docId);
     readerThread = new Thread(reader);
     readerThread.start();
+    // start the publisher
+    flushTask = scheduler.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          flush();
+        } catch (Exception e) {
+          logger.error("failed to publish the events", e);
+        }
+      }
+    }, FLUSH_MS, FLUSH_MS, TimeUnit.MILLISECONDS);
   }
 
   /**
@@ -111,6 +175,38 @@ public class GlobalEventPublisher implements DataStoreEventObserver {
    */
   public void stop() {
     if (reader!=null) reader.stop();
+    if (flushTask!=null) {
+      flushTask.cancel(false);
+      flush();
+    }
+    scheduler.shutdown();
+  }
+
+  /**
+   * Publish the pending events to the global queue. If the publication fails
+   * the sequence number is lost anyway, so the other servers will resync.
+   */
+  protected synchronized void flush() {
+    List<GlobalDataStoreEvent> events;
+    synchronized (pending) {
+      if (dropped > 0) {
+        logger.warn("dropped " + dropped + " events, the other servers will resync");
+        // skip a sequence number so the readers detect the gap
+        ++seq;
+        dropped = 0;
+      }
+      if (pending.isEmpty()) {
+        return;
+      }
+      events = new ArrayList<GlobalDataStoreEvent>(pending);
+      pending.clear();
+    }
+    for (int i = 0; i < events.size(); i += MAX_BATCH_SIZE) {
+      List<GlobalDataStoreEvent> chunk = events.subList(i, Math.min(events.size(), i + MAX_BATCH_SIZE));
+      GlobalDataStoreEventBatch batch = new GlobalDataStoreEventBatch(serverUUID, session, ++seq,
+          System.currentTimeMillis(), new ArrayList<GlobalDataStoreEvent>(chunk));
+      MongoDBHelper.getDatastore().save(batch);
+    }
   }
 
   public String getServerUUID() {
@@ -126,7 +222,11 @@ public class GlobalEventPublisher implements DataStoreEventObserver {
    */
   @Override
   public void notifyEvent(DataStoreEvent event) {
-    if (!event.isExternal()) {
+    if (event.isBatch()) {
+      for (DataStoreEvent item : event.split()) {
+        notifyEvent(item);
+      }
+    } else if (!event.isExternal()) {
       GenericPK pk = null;
       if (event.getSource() instanceof GenericPK) {
         pk = (GenericPK) event.getSource();
@@ -135,10 +235,16 @@ public class GlobalEventPublisher implements DataStoreEventObserver {
         pk = ((Persistent<?>) event.getSource()).getId();
       }
       if (pk != null) {
-        // insert a new event
+        // queue the event for the next batch
         GlobalDataStoreEvent devent = new GlobalDataStoreEvent(event.getEmitter(), pk,
             event.getType(), System.currentTimeMillis(), serverUUID);
-        MongoDBHelper.getDatastore().save(devent);
+        synchronized (pending) {
+          if (pending.size() < MAX_PENDING) {
+            pending.add(devent);
+          } else {
+            dropped++;
+          }
+        }
       }
     }
   }
@@ -160,6 +266,9 @@ public class GlobalEventPublisher implements DataStoreEventObserver {
 
     private long docId;
 
+    // last batch read for each server: {session, seq}
+    private final Map<String, long[]> positions = new HashMap<String, long[]>();
+
     public Reader(String serverUUID, DataStoreEventBus eventBus, long docId) {
       this.serverUUID = serverUUID;
       this.eventBus = eventBus;
@@ -186,18 +295,15 @@ public class GlobalEventPublisher implements DataStoreEventObserver {
       while (running) {
         sleepTime = SLEEP_TIME;
         try {
-          Iterator<GlobalDataStoreEvent> cur = createCursor(docId);
+          Iterator<GlobalDataStoreEventBatch> cur = createCursor(docId);
           while (cur.hasNext() && running) {
-            GlobalDataStoreEvent doc = cur.next();
+            GlobalDataStoreEventBatch doc = cur.next();
             docId = doc.getTs();
             if (logger.isDebugEnabled()) {
               if(logger.isDebugEnabled()){logger.debug(("read doc : " + doc));}
             }
-            if (doc.getSourceId() != null) {
-              // Publish the event to the DataStoreEventBus
-              eventBus.publishEvent(
-                  new DataStoreEvent(doc.getEmitter(),null, doc.getSourceId(),
-                  doc.getType(), true));
+            if (doc.getServer() != null && accept(doc)) {
+              publish(doc);
             }
           }
         } catch (Throwable t) {
@@ -221,16 +327,78 @@ public class GlobalEventPublisher implements DataStoreEventObserver {
       logger.info("Reader thread stopped");
     }
 
-    private Iterator<GlobalDataStoreEvent> createCursor(Long ts) {
-      Query<GlobalDataStoreEvent> query = MongoDBHelper.getDatastore()
-          .createQuery(GlobalDataStoreEvent.class);
-      query.field(TS_FIELD).greaterThan(ts);
+    /**
+     * check the batch sequence: skip the batches already read, and resync if
+     * some batches are missing
+     */
+    private boolean accept(GlobalDataStoreEventBatch doc) {
+      long[] last = positions.get(doc.getServer());
+      if (last == null) {
+        // first batch from this server since we started
+        positions.put(doc.getServer(), new long[] { doc.getSession(), doc.getSeq() });
+        return true;
+      }
+      long expected = last[0] == doc.getSession() ? last[1] + 1 : 1;
+      if (last[0] == doc.getSession() && doc.getSeq() < expected) {
+        // already read, the cursor may overlap on the same ts
+        return false;
+      }
+      if (doc.getSeq() > expected) {
+        logger.warn("missed " + (doc.getSeq() - expected) + " event batches from server " + doc.getServer()
+            + ", flushing local caches");
+        resync();
+      }
+      last[0] = doc.getSession();
+      last[1] = doc.getSeq();
+      return true;
+    }
+
+    /**
+     * publish the batch to the local bus, only the last event for a given
+     * object is published
+     */
+    private void publish(GlobalDataStoreEventBatch doc) {
+      if (doc.getEvents() == null) {
+        return;
+      }
+      LinkedHashMap<GenericPK, GlobalDataStoreEvent> events = new LinkedHashMap<GenericPK, GlobalDataStoreEvent>();
+      for (GlobalDataStoreEvent event : doc.getEvents()) {
+        if (event.getSourceId() != null) {
+          events.remove(event.getSourceId());
+          events.put(event.getSourceId(), event);
+        }
+      }
+      for (GlobalDataStoreEvent event : events.values()) {
+        // Publish the event to the DataStoreEventBus
+        eventBus.publishEvent(
+            new DataStoreEvent(event.getEmitter(),null, event.getSourceId(),
+            event.getType(), true));
+      }
+    }
+
+    /**
+     * we can't know which objects were modified, so drop the local caches.
+     * The project content is checked against the shared redis keys, so it is
+     * safe already.
+     */
+    private void resync() {
+      CacheFactoryEHCache.getCacheFactory().clearAll();
+      EffectiveRoleCache.getInstance().invalidateAll();
+      DimensionMemberCache.invalidateAll();
+      // the missed token revocations are reloaded from the store
+      AccessTokenSigner.getInstance().resync();
+    }
+
+    private Iterator<GlobalDataStoreEventBatch> createCursor(Long ts) {
+      Query<GlobalDataStoreEventBatch> query = MongoDBHelper.getDatastore()
+          .createQuery(GlobalDataStoreEventBatch.class);
+      // batches from different servers may share the same ts, duplicates are filtered by sequence
+      query.field(TS_FIELD).greaterThanOrEq(ts);
       query.field("server").notEqual(serverUUID);
-      Iterator<GlobalDataStoreEvent> it = query.tail();
+      Iterator<GlobalDataStoreEventBatch> it = query.tail();
       if (!it.hasNext()) {
-        // init the cursor by inserting an empty event
-        GlobalDataStoreEvent devent = new GlobalDataStoreEvent(null, null,
-            null, ts + 10, null);
+        // init the cursor by inserting an empty batch
+        GlobalDataStoreEventBatch devent = new GlobalDataStoreEventBatch(null, 0, 0, ts + 10, null);
         MongoDBHelper.getDatastore().save(devent);
       }
       return it;
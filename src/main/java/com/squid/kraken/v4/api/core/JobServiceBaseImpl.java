@@ -27,15 +27,19 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.List;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
 import java.util.zip.GZIPOutputStream;
 
 import org.slf4j.Logger;
@@ -47,6 +51,7 @@ import com.google.common.base.Optional;
 import com.squid.core.poi.ExcelFile;
 import com.squid.core.poi.ExcelSettingsBean;
 import com.squid.kraken.v4.api.core.APIException.ApiError;
+import com.squid.kraken.v4.api.core.websocket.NotificationWebsocket.JobMessage;
 import com.squid.kraken.v4.caching.NotInCacheException;
 import com.squid.kraken.v4.core.analysis.engine.processor.ComputingException;
 import com.squid.kraken.v4.export.ExportSourceWriter;
@@ -93,6 +98,13 @@ public abstract class JobServiceBaseImpl<T extends ComputationJob<PK, R>, PK ext
 
 	private ScheduledFuture<?> jobsGCThread;
 
+	// used to schedule the async requests timeouts and polls
+	private final ScheduledExecutorService jobsTimer = Executors.newSingleThreadScheduledExecutor();
+
+	// the jobs running on this server, so that async requests can wait for
+	// their completion
+	private final ConcurrentHashMap<PK, CompletableFuture<T>> runningJobs = new ConcurrentHashMap<PK, CompletableFuture<T>>();
+
 	private final Class<T> type;
 
 	private JobComputer<T, PK, R> computer;
@@ -136,7 +148,7 @@ public abstract class JobServiceBaseImpl<T extends ComputationJob<PK, R>, PK ext
 			e.printStackTrace();
 		} finally {
 			jobsGC = Executors.newSingleThreadScheduledExecutor();
-			ModelGC<T, PK> gc = new ModelGC<T, PK>(temporaryJobMaxAgeInSeconds, this, type);
+			ModelGC<T, PK> gc = new ModelGC<T, PK>(temporaryJobMaxAgeInSeconds, type);
 			jobsGCThread = jobsGC.scheduleWithFixedDelay(gc, 0, 1, TimeUnit.HOURS);
 
 		}
@@ -159,6 +171,7 @@ public abstract class JobServiceBaseImpl<T extends ComputationJob<PK, R>, PK ext
 				jobsGC.awaitTermination(2, TimeUnit.SECONDS);
 				jobsGC.shutdownNow();
 			}
+			jobsTimer.shutdownNow();
 
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -260,6 +273,192 @@ public abstract class JobServiceBaseImpl<T extends ComputationJob<PK, R>, PK ext
 		return results;
 	}
 
+	/**
+	 * Asynchronous version of
+	 * {@link #readResults(AppContext, GenericPK, Integer, boolean, Integer, Integer, String, Integer)}
+	 * : the calling thread is never blocked while the job is computing.<br>
+	 * The returned future completes with the results, or with the same
+	 * APIException as the synchronous version; if the timeout expires first it
+	 * completes with a {@link ComputingInProgressAPIException}.
+	 *
+	 * @return the results future
+	 */
+	public CompletableFuture<R> readResultsAsync(final AppContext ctx, final PK jobId, Integer timeoutMs,
+			boolean reRunIfNoResults, Integer maxResults, Integer startIndex, String lazy, Integer retryDelayMs) {
+		final CompletableFuture<R> results = new CompletableFuture<R>();
+		boolean wait = (timeoutMs != null) && (timeoutMs > 0);
+		if (wait) {
+			final ScheduledFuture<?> timer = jobsTimer.schedule(new Runnable() {
+				@Override
+				public void run() {
+					results.completeExceptionally(new ComputingInProgressAPIException(null, ctx.isNoError(), null));
+				}
+			}, timeoutMs, TimeUnit.MILLISECONDS);
+			results.whenComplete(new BiConsumer<R, Throwable>() {
+				@Override
+				public void accept(R value, Throwable error) {
+					timer.cancel(false);
+				}
+			});
+		}
+		readResultsAsync(ctx, jobId, wait, timeoutMs, reRunIfNoResults, maxResults, startIndex, lazy,
+				retryDelayMs != null ? retryDelayMs : 1000, results);
+		return results;
+	}
+
+	private void readResultsAsync(final AppContext ctx, final PK jobId, final boolean wait, final Integer timeoutMs,
+			final boolean reRunIfNoResults, final Integer maxResults, final Integer startIndex, final String lazy,
+			final int retryDelayMs, final CompletableFuture<R> results) {
+		if (results.isDone()) {
+			// timeout
+			return;
+		}
+		try {
+			final T job = read(ctx, jobId);
+			if (job.getStatus().equals(Status.RUNNING)) {
+				// job isn't done yet
+				if (!wait) {
+					throw new ComputingInProgressAPIException(null, ctx.isNoError(), null);
+				}
+				final Runnable retry = new Runnable() {
+					@Override
+					public void run() {
+						readResultsAsync(ctx, jobId, wait, timeoutMs, reRunIfNoResults, maxResults, startIndex, lazy,
+								retryDelayMs, results);
+					}
+				};
+				CompletableFuture<T> completion = runningJobs.get(jobId);
+				if (completion != null) {
+					// running on this server, wait for completion
+					completion.whenCompleteAsync(new BiConsumer<T, Throwable>() {
+						@Override
+						public void accept(T done, Throwable e) {
+							retry.run();
+						}
+					}, getJobsExecutor());
+				} else {
+					// running elsewhere, poll it without holding a thread
+					jobsTimer.schedule(new Runnable() {
+						@Override
+						public void run() {
+							getJobsExecutor().execute(retry);
+						}
+					}, retryDelayMs, TimeUnit.MILLISECONDS);
+				}
+			} else if (job.getStatus().equals(Status.PENDING)) {
+				boolean lazyAnalysis = (lazy != null) && (lazy.equals("true") || lazy.equals("noError"));
+				if (lazyAnalysis) {
+					results.complete(null);
+				} else {
+					// start the job
+					JobTask<T, PK, R> task = new JobTask<T, PK, R>(ctx, job, computer, type, maxResults, startIndex,
+							lazy, false);
+					submit(task, job.getId()).whenCompleteAsync(new BiConsumer<T, Throwable>() {
+						@Override
+						public void accept(T done, Throwable e) {
+							if (e instanceof NotInCacheException) {
+								results.completeExceptionally(e);
+							} else if (e == null && done.getStatus().equals(Status.DONE)) {
+								results.complete(done.getResults());
+							} else {
+								results.completeExceptionally(
+										new ComputingInProgressAPIException(null, ctx.isNoError(), null));
+							}
+						}
+					}, getJobsExecutor());
+				}
+			} else if ((job.getError() == null) || (job.getError().isEnableRerun())) {
+				// DONE, the results may have to be computed again
+				getJobsExecutor().execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							boolean lazyAnalysis = (lazy != null) && (lazy.equals("true") || lazy.equals("noError"));
+							results.complete(computer.compute(ctx, job, maxResults, startIndex, lazyAnalysis));
+						} catch (ComputingException | InterruptedException e) {
+							String message = job.getError() != null ? job.getError().getMessage() : e.getMessage();
+							results.completeExceptionally(
+									new APIException(message, ctx.isNoError(), ApiError.COMPUTING_FAILED));
+						} catch (Throwable e) {
+							results.completeExceptionally(e);
+						}
+					}
+				});
+			} else {
+				// job completed with errors
+				if (!job.getTemporary() && reRunIfNoResults) {
+					// re-run it and get the results
+					store(ctx, job, null, false, null, null, null);
+					readResultsAsync(ctx, jobId, wait, timeoutMs, false, maxResults, startIndex, lazy, retryDelayMs,
+							results);
+				} else {
+					throw new APIException(job.getError().getMessage(), ctx.isNoError(), ApiError.COMPUTING_FAILED);
+				}
+			}
+		} catch (Throwable e) {
+			results.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * submit the task and track its completion
+	 */
+	private CompletableFuture<T> submit(JobTask<T, PK, R> task, final PK jobId) {
+		final CompletableFuture<T> completion = new CompletableFuture<T>();
+		runningJobs.put(jobId, completion);
+		FutureTask<T> future = new FutureTask<T>(task) {
+			@Override
+			protected void done() {
+				runningJobs.remove(jobId, completion);
+				try {
+					completion.complete(get());
+				} catch (ExecutionException e) {
+					completion.completeExceptionally(e.getCause());
+				} catch (InterruptedException | CancellationException e) {
+					completion.completeExceptionally(e);
+				}
+			}
+		};
+		task.publish(JobMessage.Status.QUEUED);
+		getJobsExecutor().execute(future);
+		return completion;
+	}
+
+	/**
+	 * Write the results the default way (JSON)
+	 *
+	 * @param out
+	 * @param results
+	 */
+	public void writeResults(OutputStream out, JobResult results) {
+		ObjectMapper mapper = new ObjectMapper();
+		try {
+			ObjectWriter objectWriter = mapper.writer();
+			objectWriter.writeValue(out, results);
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Write the results as JSON, compressed if required
+	 *
+	 * @param out
+	 * @param results
+	 * @param outputCompression
+	 */
+	public void writeResults(OutputStream out, JobResult results, OutputCompression outputCompression) {
+		if (outputCompression == OutputCompression.GZIP) {
+			try {
+				// closed by the writer
+				out = new GZIPOutputStream(out);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		writeResults(out, results);
+	}
+
 	/**
 	 * Write job results to output stream.
 	 *
@@ -298,13 +497,7 @@ public abstract class JobServiceBaseImpl<T extends ComputationJob<PK, R>, PK ext
 				}
 			}
 			// JSON
-			ObjectMapper mapper = new ObjectMapper();
-			try {
-				ObjectWriter objectWriter = mapper.writer();
-				objectWriter.writeValue(out, results);
-			} catch (Exception e) {
-				throw new RuntimeException(e);
-			}
+			writeResults(out, results);
 		} else {
 			// return the results the "export" way
 			if (writer == null) {
@@ -469,7 +662,7 @@ public abstract class JobServiceBaseImpl<T extends ComputationJob<PK, R>, PK ext
 			JobTask<T, PK, R> task = new JobTask<T, PK, R>(ctx, jobToStart, computer, type, maxResults, startIndex,
 					lazy, returnJob);
 			// and start it
-			Future<T> submit = getJobsExecutor().submit(task);
+			Future<T> submit = submit(task, jobToStart.getId());
 			if (timeout != null) {
 				logger.info("waiting for job results for " + timeout + " ms.");
 				try {
@@ -527,7 +720,7 @@ public abstract class JobServiceBaseImpl<T extends ComputationJob<PK, R>, PK ext
 
 			if (writer == null) {
 				// and start it asynchronously
-				Future<T> submit = getJobsExecutor().submit(task);
+				Future<T> submit = submit(task, jobToStart.getId());
 				if (timeout != null) {
 					logger.info("waiting for job results for " + timeout + " ms.");
 					try {
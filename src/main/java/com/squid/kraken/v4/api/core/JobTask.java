@@ -29,11 +29,14 @@ import java.util.concurrent.Callable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.squid.kraken.v4.api.core.websocket.NotificationWebsocket;
+import com.squid.kraken.v4.api.core.websocket.NotificationWebsocket.JobMessage;
 import com.squid.kraken.v4.caching.NotInCacheException;
 import com.squid.kraken.v4.export.ExportSourceWriter;
 import com.squid.kraken.v4.model.ComputationJob;
 import com.squid.kraken.v4.model.ComputationJob.Status;
 import com.squid.kraken.v4.model.GenericPK;
+import com.squid.kraken.v4.model.ProjectPK;
 import com.squid.kraken.v4.persistence.AppContext;
 import com.squid.kraken.v4.persistence.DAOFactory;
 import com.squid.kraken.v4.persistence.dao.JobDAO;
@@ -122,6 +125,7 @@ public class JobTask<T extends ComputationJob<PK, R>, PK extends GenericPK, R ex
 			if (!lazyAnalysis) {
 				job.setStatus(Status.RUNNING);
 				dao.update(app, job);
+				publish(JobMessage.Status.EXECUTING);
 			}
 
 			// compute and get the results
@@ -167,10 +171,24 @@ public class JobTask<T extends ComputationJob<PK, R>, PK extends GenericPK, R ex
 			// error=false status=done");
 
 			dao.update(app, job);
+			publish(job.getError() == null ? JobMessage.Status.DONE : JobMessage.Status.ERROR);
 		}
 		return job;
 	}
 
+	/**
+	 * push the job state to the websocket session that started it
+	 * 
+	 * @param status
+	 */
+	void publish(JobMessage.Status status) {
+		PK id = job.getId();
+		String projectId = (id instanceof ProjectPK) ? ((ProjectPK) id).getProjectId() : null;
+		String error = (job.getError() != null) ? job.getError().getMessage() : null;
+		NotificationWebsocket.notifyJob(ctx,
+				new JobMessage(ctx.getSessionId(), projectId, id.getObjectId(), status, error));
+	}
+
 	public OutputStream getOutputStream() {
 		return outputStream;
 	}
@@ -23,11 +23,15 @@
  *******************************************************************************/
 package com.squid.kraken.v4.api.core;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.squid.kraken.v4.KrakenConfig;
 import com.squid.kraken.v4.model.GenericPK;
 import com.squid.kraken.v4.model.Persistent;
 import com.squid.kraken.v4.persistence.AppContext;
@@ -36,22 +40,28 @@ import com.squid.kraken.v4.persistence.dao.ExpirableDAO;
 
 /**
  * Garbage Collector task.<br>
- * Delete all expired model object.
+ * Delete all expired model object.<br>
+ * Objects are deleted by batches, with a single remove and a single event per
+ * batch; the run pauses between batches and stops after a maximum number of
+ * objects, the remaining ones will be collected by the next run.
  */
 public class ModelGC<T extends Persistent<PK>, PK extends GenericPK> implements Runnable {
 
     static private final Logger logger = LoggerFactory.getLogger(ModelGC.class);
 
+    private static final int BATCH_SIZE = Integer.parseInt(KrakenConfig.getProperty("kraken.gc.batchSize", "500"));
+
+    private static final long BATCH_PAUSE_MS = Long.parseLong(KrakenConfig.getProperty("kraken.gc.batchPauseMs", "200"));
+
+    private static final int MAX_PER_RUN = Integer.parseInt(KrakenConfig.getProperty("kraken.gc.maxPerRun", "50000"));
+
     private final int temporaryMaxAgeInSeconds;
     
-    private GenericService<T, PK> service;
-    
     private Class<T> type;
 
-    public ModelGC(int temporaryMaxAgeInSeconds, GenericService<T, PK> service, Class<T> type) {
+    public ModelGC(int temporaryMaxAgeInSeconds, Class<T> type) {
         super();
         this.temporaryMaxAgeInSeconds = temporaryMaxAgeInSeconds;
-        this.service = service;
         this.type = type;
     }
 
@@ -62,20 +72,39 @@ public class ModelGC<T extends Persistent<PK>, PK extends GenericPK> implements
             DAOFactory factory = DAOFactory.getDAOFactory();
             ExpirableDAO<T> dao = ((ExpirableDAO<T>) factory.getDAO(type));
             long maxCreationDate = System.currentTimeMillis() - (temporaryMaxAgeInSeconds * 1000);
-            List<T> findAllExpired = dao.findAllExpired(maxCreationDate);
-            logger.info("Deleting " + findAllExpired.size() + " expired "+type.getName()+" instances");
-            for (T job : findAllExpired) {
-                try {
-                    AppContext ctx = ServiceUtils.getInstance().getRootUserContext(job.getCustomerId());
-                    service.delete(ctx, job.getId());
-                } catch (Exception e) {
-                    logger.warn("Error deleting objectId : " +job.getId());
-                    e.printStackTrace();
+            int total = 0;
+            while (total < MAX_PER_RUN) {
+                List<T> expired = dao.findExpired(maxCreationDate, Math.min(BATCH_SIZE, MAX_PER_RUN - total));
+                if (expired.isEmpty()) {
+                    break;
+                }
+                // the context is per customer
+                Map<String, List<T>> byCustomer = new HashMap<String, List<T>>();
+                for (T job : expired) {
+                    List<T> list = byCustomer.get(job.getCustomerId());
+                    if (list == null) {
+                        list = new ArrayList<T>();
+                        byCustomer.put(job.getCustomerId(), list);
+                    }
+                    list.add(job);
+                }
+                for (Map.Entry<String, List<T>> entry : byCustomer.entrySet()) {
+                    AppContext ctx = ServiceUtils.getInstance().getRootUserContext(entry.getKey());
+                    dao.deleteExpired(ctx, entry.getValue());
+                }
+                total += expired.size();
+                if (expired.size() < BATCH_SIZE) {
+                    break;
                 }
+                // let the other tasks breathe
+                Thread.sleep(BATCH_PAUSE_MS);
             }
+            logger.info("Deleted " + total + " expired "+type.getName()+" instances");
+        } catch (InterruptedException e) {
+            logger.info("JobGC interrupted for type : "+type.getSimpleName());
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-}
\ No newline at end of file
+}
@@ -38,6 +38,7 @@ import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.TimeZone;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -403,8 +404,8 @@ public class ServiceUtils {
 		StateServiceBaseImpl.getInstance().initGC(temporaryJobMaxAgeInSeconds);
 		AuthServiceImpl.getInstance().initGC();
 
-		// ModelObserver
-		DataStoreEventBus.getInstance().subscribe(
+		// ModelObserver - must be notified before the next read (flush-on-read)
+		DataStoreEventBus.getInstance().subscribeSync(
 				MetaModelObserver.getInstance());
 		
 		// DistributedEventBus
@@ -418,6 +419,7 @@ public class ServiceUtils {
 		StateServiceBaseImpl.getInstance().stopGC();
 		AuthServiceImpl.getInstance().stopGC();
 		GlobalEventPublisher.getInstance().stop();
+		DataStoreEventBus.getInstance().shutdown(5, TimeUnit.SECONDS);
 	}
 
 	public String generateUUID() {
@@ -0,0 +1,316 @@
+/*******************************************************************************
+ * Copyright © Squid Solutions, 2016
+ *
+ * This file is part of Open Bouquet software.
+ *  
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ *
+ * There is a special FOSS exception to the terms and conditions of the 
+ * licenses as they are applied to this program. See LICENSE.txt in
+ * the directory of this program distribution.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * Squid Solutions also offers commercial licenses with additional warranties,
+ * professional functionalities or services. If you purchase a commercial
+ * license, then it supersedes and replaces any other agreement between
+ * you and Squid Solutions (above licenses and LICENSE.txt included).
+ * See http://www.squidsolutions.com/EnterpriseBouquet/
+ *******************************************************************************/
+package com.squid.kraken.v4.api.core.analytics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.squid.kraken.v4.KrakenConfig;
+import com.squid.kraken.v4.caching.redis.RedisCacheManager;
+import com.squid.kraken.v4.caching.redis.generationalkeysserver.RedisKey;
+import com.squid.kraken.v4.core.analysis.universe.Space;
+import com.squid.kraken.v4.model.AccessToken;
+import com.squid.kraken.v4.model.AccessTokenPK;
+import com.squid.kraken.v4.model.AnalyticsQuery;
+import com.squid.kraken.v4.model.AnalyticsQueryImpl;
+import com.squid.kraken.v4.model.FacetSelection;
+import com.squid.kraken.v4.model.ProjectAnalysisJob;
+import com.squid.kraken.v4.model.ProjectAnalysisJobPK;
+import com.squid.kraken.v4.model.ProjectFacetJob;
+import com.squid.kraken.v4.model.ProjectFacetJobPK;
+import com.squid.kraken.v4.model.State;
+import com.squid.kraken.v4.model.StatePK;
+import com.squid.kraken.v4.persistence.AppContext;
+import com.squid.kraken.v4.persistence.DataStoreEvent;
+import com.squid.kraken.v4.persistence.DataStoreEvent.Type;
+import com.squid.kraken.v4.persistence.DataStoreEventBus;
+import com.squid.kraken.v4.persistence.DataStoreEventObserver;
+
+/**
+ * Cache the compiled part of an analytics query: the resolved Space, the
+ * query merged with the bookmark/state config, the facet selection and the
+ * analysis job. A repeated request can then go straight to the results cache
+ * lookup.<br>
+ * Plans are scoped by token since the Space is resolved with the user
+ * context; they are checked against the domain generation key on every hit,
+ * and the whole cache is flushed on any meta-model change.<br>
+ * A plan is shared by concurrent requests, so it only keeps a template of the
+ * analysis job: each request gets its own copy.
+ */
+public class AnalysisPlanCache implements DataStoreEventObserver {
+
+	static private AnalysisPlanCache instance;
+
+	static synchronized public AnalysisPlanCache getInstance() {
+		if (instance == null) {
+			instance = DataStoreEventBus.getInstance().subscribeSync(new AnalysisPlanCache());
+		}
+		return instance;
+	}
+
+	private static final long MAX_PLANS = Long
+			.parseLong(KrakenConfig.getProperty("kraken.analytics.planCache.size", "1000"));
+
+	private static final long TTL_SECONDS = Long
+			.parseLong(KrakenConfig.getProperty("kraken.analytics.planCache.ttlSeconds", "300"));
+
+	private final Cache<String, Plan> cache;
+
+	private AnalysisPlanCache() {
+		// expire after write: relative periods (e.g. current month) are
+		// resolved when compiling
+		cache = CacheBuilder.newBuilder().maximumSize(MAX_PLANS).expireAfterWrite(TTL_SECONDS, TimeUnit.SECONDS)
+				.build();
+	}
+
+	/**
+	 * compute the plan key; must be called before the query is merged with
+	 * the bookmark config
+	 */
+	public String computeKey(AppContext ctx, String BBID, String stateId, AnalyticsQuery query,
+			boolean applyFormatting) {
+		if (MAX_PLANS <= 0 || ctx.getToken() == null) {
+			return null;
+		}
+		return ctx.getToken().getOid() + "/" + BBID + "/" + stateId + "/" + applyFormatting + "/"
+				+ computeQueryKey(query);
+	}
+
+	/**
+	 * the normalized query definition: it covers every query property that
+	 * affects the analysis job or the reply, so two queries with the same key
+	 * can share the same result
+	 */
+	public static String computeQueryKey(AnalyticsQuery query) {
+		StringBuilder key = new StringBuilder();
+		append(key, "BBID", query.getBBID());
+		append(key, "domain", query.getDomain());
+		append(key, "groupBy", query.getGroupBy());
+		append(key, "metrics", query.getMetrics());
+		append(key, "filters", query.getFilters());
+		append(key, "period", query.getPeriod());
+		append(key, "timeframe", query.getTimeframe());
+		append(key, "compareTo", query.getCompareTo());
+		append(key, "orderBy", query.getOrderBy());
+		append(key, "rollups", query.getRollups());
+		append(key, "offset", query.getOffset());
+		append(key, "limit", query.getLimit());
+		append(key, "beyondLimit", query.getBeyondLimit());
+		append(key, "bookmarkId", query.getBookmarkId());
+		append(key, "maxResults", query.getMaxResults());
+		append(key, "startIndex", query.getStartIndex());
+		append(key, "lazy", query.getLazy());
+		append(key, "approximate", query.getApproximate());
+		append(key, "style", query.getStyle());
+		return key.toString();
+	}
+
+	private static void append(StringBuilder key, String name, Object value) {
+		key.append(name).append('=');
+		if (value instanceof List) {
+			key.append('[');
+			for (Object item : (List<?>) value) {
+				append(key, item);
+			}
+			key.append(']');
+		} else {
+			append(key, value);
+		}
+		key.append(';');
+	}
+
+	private static void append(StringBuilder key, Object value) {
+		if (value == null) {
+			key.append('-');
+		} else {
+			// length-prefixed so a value can't be confused with a separator
+			String text = value.toString();
+			key.append(text.length()).append(':').append(text);
+		}
+	}
+
+	/**
+	 * get a valid plan, or null
+	 */
+	public Plan get(String key) {
+		if (key == null) {
+			return null;
+		}
+		Plan plan = cache.getIfPresent(key);
+		if (plan != null && !RedisCacheManager.getInstance().isValid(plan.generation)) {
+			cache.invalidate(key);
+			return null;
+		}
+		return plan;
+	}
+
+	/**
+	 * cache the plan; the job is copied, so the caller can keep using it
+	 * 
+	 * @return the plan, or null if it can't be cached
+	 */
+	public Plan put(String key, Space space, AnalyticsQuery merged, FacetSelection actual, ProjectAnalysisJob job) {
+		if (key == null) {
+			return null;
+		}
+		String domainId = space.getDomain().getId().toUUID();
+		String projectId = space.getUniverse().getProject().getId().toUUID();
+		RedisKey generation = RedisCacheManager.getInstance().getKey(domainId, projectId);
+		AnalyticsQuery snapshot = new AnalyticsQueryImpl();
+		copyMerged(merged, snapshot);
+		Plan plan = new Plan(space, snapshot, actual, copy(job), generation);
+		cache.put(key, plan);
+		return plan;
+	}
+
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	@Override
+	public void notifyEvent(DataStoreEvent event) {
+		Object source = event.getSource();
+		if (event.isBatch()) {
+			for (DataStoreEvent item : event.split()) {
+				notifyEvent(item);
+			}
+		} else if (source instanceof ProjectAnalysisJob || source instanceof ProjectAnalysisJobPK
+				|| source instanceof ProjectFacetJob || source instanceof ProjectFacetJobPK
+				|| source instanceof AccessToken || source instanceof AccessTokenPK) {
+			// not part of the plan
+		} else if ((source instanceof State || source instanceof StatePK) && event.getType() == Type.CREATION) {
+			// a new state can't be in a plan yet
+		} else {
+			cache.invalidateAll();
+		}
+	}
+
+	/**
+	 * A compiled analysis
+	 */
+	public static class Plan {
+
+		private final Space space;
+
+		private final AnalyticsQuery query;
+
+		private final FacetSelection selection;
+
+		private final ProjectAnalysisJob job;
+
+		private final RedisKey generation;
+
+		// the last complete result, if any
+		private volatile String redisKey = null;
+
+		private Plan(Space space, AnalyticsQuery query, FacetSelection selection, ProjectAnalysisJob job,
+				RedisKey generation) {
+			this.space = space;
+			this.query = query;
+			this.selection = selection;
+			this.job = job;
+			this.generation = generation;
+		}
+
+		public Space getSpace() {
+			return space;
+		}
+
+		public FacetSelection getSelection() {
+			return selection;
+		}
+
+		/**
+		 * @return a new copy of the analysis job
+		 */
+		public ProjectAnalysisJob getJob() {
+			return copy(job);
+		}
+
+		public String getRedisKey() {
+			return redisKey;
+		}
+
+		public void setRedisKey(String redisKey) {
+			this.redisKey = redisKey;
+		}
+
+		/**
+		 * restore the merged query definition into the request query
+		 */
+		public void restore(AnalyticsQuery target) {
+			copyMerged(query, target);
+		}
+
+	}
+
+	/**
+	 * copy the query properties that are set by merging the bookmark config
+	 */
+	private static void copyMerged(AnalyticsQuery query, AnalyticsQuery target) {
+		target.setDomain(query.getDomain());
+		target.setLimit(query.getLimit());
+		target.setPeriod(query.getPeriod());
+		target.setTimeframe(copy(query.getTimeframe()));
+		target.setCompareTo(copy(query.getCompareTo()));
+		target.setFilters(copy(query.getFilters()));
+		target.setGroupBy(copy(query.getGroupBy()));
+		target.setMetrics(copy(query.getMetrics()));
+		target.setOrderBy(copy(query.getOrderBy()));
+		target.setRollups(copy(query.getRollups()));
+		if (query.getProblems() != null) {
+			target.setProblems(new ArrayList<>(query.getProblems()));
+		}
+	}
+
+	/**
+	 * copy the job definition; the result properties are left out
+	 */
+	private static ProjectAnalysisJob copy(ProjectAnalysisJob job) {
+		ProjectAnalysisJob copy = new ProjectAnalysisJob(job.getId());
+		copy.setDomains(copy(job.getDomains()));
+		copy.setMetricList(copy(job.getMetricList()));
+		copy.setFacets(copy(job.getFacets()));
+		copy.setOrderBy(copy(job.getOrderBy()));
+		copy.setSelection(job.getSelection());
+		copy.setRollups(copy(job.getRollups()));
+		copy.setAutoRun(job.getAutoRun());
+		copy.setLimit(job.getLimit());
+		copy.setOffset(job.getOffset());
+		copy.setBeyondLimit(copy(job.getBeyondLimit()));
+		if (job.getOptionKeys() != null) {
+			copy.setOptionKeys(new HashMap<>(job.getOptionKeys()));
+		}
+		return copy;
+	}
+
+	private static <E> List<E> copy(List<E> list) {
+		return list != null ? new ArrayList<>(list) : null;
+	}
+
+}
@@ -36,17 +36,35 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.GZIPOutputStream;
 
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
@@ -55,10 +73,12 @@ import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.cxf.jaxrs.impl.UriBuilderImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -89,6 +109,7 @@ import com.squid.core.sql.render.SQLSkin;
 import com.squid.kraken.v4.KrakenConfig;
 import com.squid.kraken.v4.api.core.APIException;
 import com.squid.kraken.v4.api.core.AccessRightsUtils;
+import com.squid.kraken.v4.api.core.BaseServiceRest;
 import com.squid.kraken.v4.api.core.ComputingInProgressAPIException;
 import com.squid.kraken.v4.api.core.EngineUtils;
 import com.squid.kraken.v4.api.core.InvalidIdAPIException;
@@ -101,17 +122,21 @@ import com.squid.kraken.v4.api.core.bookmark.BookmarkServiceBaseImpl;
 import com.squid.kraken.v4.api.core.project.ProjectServiceBaseImpl;
 import com.squid.kraken.v4.api.core.customer.StateServiceBaseImpl;
 import com.squid.kraken.v4.api.core.projectanalysisjob.AnalysisJobComputer;
+import com.squid.kraken.v4.api.core.websocket.NotificationWebsocket;
+import com.squid.kraken.v4.api.core.websocket.NotificationWebsocket.JobMessage;
 import com.squid.kraken.v4.caching.NotInCacheException;
 import com.squid.kraken.v4.caching.redis.RedisCacheManager;
 import com.squid.kraken.v4.caching.redis.queryworkerserver.QueryWorkerJobStatus;
 import com.squid.kraken.v4.core.analysis.datamatrix.AxisValues;
 import com.squid.kraken.v4.core.analysis.datamatrix.DataMatrix;
+import com.squid.kraken.v4.core.analysis.datamatrix.DataMatrixStream;
 import com.squid.kraken.v4.core.analysis.datamatrix.IDataMatrixConverter;
 import com.squid.kraken.v4.core.analysis.datamatrix.MeasureValues;
 import com.squid.kraken.v4.core.analysis.datamatrix.RecordConverter;
 import com.squid.kraken.v4.core.analysis.datamatrix.TableConverter;
 import com.squid.kraken.v4.core.analysis.datamatrix.TransposeConverter;
 import com.squid.kraken.v4.core.analysis.engine.bookmark.BookmarkManager;
+import com.squid.kraken.v4.core.analysis.engine.cache.MetaModelObserver;
 import com.squid.kraken.v4.core.analysis.engine.hierarchy.DimensionIndex;
 import com.squid.kraken.v4.core.analysis.engine.hierarchy.DimensionIndex.Status;
 import com.squid.kraken.v4.core.analysis.engine.hierarchy.DimensionMember;
@@ -202,6 +227,7 @@ import com.squid.kraken.v4.model.ValueType;
 import com.squid.kraken.v4.model.ViewQuery;
 import com.squid.kraken.v4.model.ViewReply;
 import com.squid.kraken.v4.persistence.AppContext;
+import com.squid.kraken.v4.runtime.CustomJacksonJsonProvider;
 import com.squid.kraken.v4.vegalite.VegaliteConfigurator;
 import com.squid.kraken.v4.vegalite.VegaliteSpecs;
 import com.squid.kraken.v4.vegalite.VegaliteSpecs.Data;
@@ -222,6 +248,30 @@ public class AnalyticsServiceBaseImpl implements AnalyticsServiceConstants {
 	static final Logger logger = LoggerFactory
 			.getLogger(AnalyticsServiceBaseImpl.class);
 
+
+	// the timeouts of the suspended analyses
+	private static final ScheduledExecutorService analysisTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "analytics-timeout");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	// a suspended analysis without timeout is resumed with an error after
+	// this delay
+	private static final long MAX_WAIT_SECONDS = Long
+			.parseLong(KrakenConfig.getProperty("kraken.analytics.maxWaitSeconds", "3600"));
+
+	// approximate mode: the fraction of the rows to sample
+	private static final double APPROXIMATE_RATE = Double
+			.parseDouble(KrakenConfig.getProperty("kraken.approximate.rate", "0.01"));
+
+	// the jobs with an exact result being computed in the background
+	private static final Set<String> upgrading = Collections
+			.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
 	private UriInfo uriInfo = null;
 	
 	private URI publicBaseUri = null;
@@ -1069,55 +1119,292 @@ public class AnalyticsServiceBaseImpl implements AnalyticsServiceConstants {
 			DataLayout data,
 			boolean applyFormatting,
 			String envelope,
+			Integer timeout,
+			String ifNoneMatch
+			)
+	{
+		return runAnalysis(userContext, BBID, null, stateId, query, data, applyFormatting, envelope, timeout, ifNoneMatch);
+	}
+
+	/**
+	 * same as runAnalysis() but the response is computed without blocking the
+	 * calling thread
+	 */
+	public CompletableFuture<Response> runAnalysisAsync(
+			final AppContext userContext,
+			String BBID,
+			String stateId, 
+			final AnalyticsQuery query, 
+			DataLayout data,
+			boolean applyFormatting,
+			String envelope,
+			Integer timeout,
+			String ifNoneMatch
+			)
+	{
+		return runAnalysisAsync(userContext, BBID, null, stateId, query, data, applyFormatting, envelope, timeout, ifNoneMatch);
+	}
+
+	/**
+	 * run a batch of analyses on the same subject.
+	 * <p>
+	 * The subject is resolved once for the whole batch, identical analyses are
+	 * computed only once, and the analyses run in parallel with a shared
+	 * deadline. The response is a JSON array streamed in completion order: each
+	 * item holds the indexes of the queries it answers, the status code and
+	 * either the result or the error.
+	 */
+	public Response runAnalysisBatch(
+			final AppContext userContext,
+			final String BBID,
+			final String stateId,
+			List<AnalyticsQuery> queries,
+			final DataLayout data,
+			final boolean applyFormatting,
+			final String envelope,
 			Integer timeout
 			)
+	{
+		if (queries==null || queries.isEmpty()) {
+			throw new APIException("the batch must contain at least one query", true);
+		}
+		final Space space = getSpace(userContext, BBID);
+		// coalesce the identical analyses
+		final LinkedHashMap<String, List<Integer>> indexes = new LinkedHashMap<>();
+		final HashMap<String, AnalyticsQuery> distinct = new HashMap<>();
+		for (int i=0; i<queries.size(); i++) {
+			AnalyticsQuery query = queries.get(i);
+			String key = AnalysisPlanCache.computeQueryKey(query);
+			if (!indexes.containsKey(key)) {
+				indexes.put(key, new ArrayList<Integer>());
+				distinct.put(key, query);
+			}
+			indexes.get(key).add(i);
+		}
+		final long deadline = timeout!=null?System.currentTimeMillis()+timeout:0;
+		// the analyses are computed by the customer execution engine, the
+		// items are queued in completion order
+		final BlockingQueue<BatchItem> completion = new LinkedBlockingQueue<>();
+		for (final Entry<String, List<Integer>> entry : indexes.entrySet()) {
+			AnalyticsQuery query = distinct.get(entry.getKey());
+			Integer remaining = deadline>0?(int)Math.max(0, deadline-System.currentTimeMillis()):null;
+			try {
+				runAnalysisAsync(userContext, BBID, space, stateId, query, data, applyFormatting, envelope, remaining, null)
+				.whenComplete(new BiConsumer<Response, Throwable>() {
+					@Override
+					public void accept(Response response, Throwable error) {
+						completion.add(createBatchItem(entry.getValue(), response, error));
+					}
+				});
+			} catch (Exception e) {
+				completion.add(createBatchItem(entry.getValue(), null, e));
+			}
+		}
+		final int size = indexes.size();
+		// the analyses time out at the deadline, but not before 1s: leave
+		// them that long to report it; without timeout, use the hard limit
+		final long limit = deadline>0?deadline+1000:System.currentTimeMillis()+TimeUnit.SECONDS.toMillis(MAX_WAIT_SECONDS);
+		StreamingOutput stream = new StreamingOutput() {
+			@Override
+			public void write(OutputStream os) throws IOException, WebApplicationException {
+				JsonGenerator json = CustomJacksonJsonProvider.getMapper().getFactory().createGenerator(os);
+				try {
+					json.writeStartArray();
+					Set<List<Integer>> written = Collections.newSetFromMap(new IdentityHashMap<List<Integer>, Boolean>());
+					for (int i=0; i<size; i++) {
+						BatchItem item = completion.poll(Math.max(0, limit-System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+						if (item==null) {
+							break;
+						}
+						writeBatchItem(json, item);
+						written.add(item.indexes);
+					}
+					// the analyses still running at the deadline
+					for (List<Integer> pending : indexes.values()) {
+						if (!written.contains(pending)) {
+							writeBatchItem(json, createBatchItem(pending, null,
+									new ComputingInProgressAPIException("computing in progress", userContext.isNoError(), null)));
+						}
+					}
+					json.writeEndArray();
+				} catch (InterruptedException e) {
+					throw new IOException("batch analysis interrupted", e);
+				} finally {
+					json.close();
+				}
+			}
+		};
+		return Response.ok(stream, MediaType.APPLICATION_JSON_TYPE).build();
+	}
+
+	private static void writeBatchItem(JsonGenerator json, BatchItem item) throws IOException {
+		json.writeStartObject();
+		json.writeObjectField("index", item.indexes);
+		json.writeNumberField("code", item.code);
+		if (item.error!=null) {
+			json.writeStringField("error", item.error);
+		} else {
+			json.writeObjectField("result", item.result);
+		}
+		json.writeEndObject();
+		// send the tile right away
+		json.flush();
+	}
+
+	private BatchItem createBatchItem(List<Integer> indexes, Response response, Throwable error) {
+		if (error instanceof CompletionException && error.getCause()!=null) {
+			error = error.getCause();
+		}
+		if (error==null) {
+			return new BatchItem(indexes, response.getStatus(), response.getEntity(), null);
+		} else if (error instanceof APIException) {
+			return new BatchItem(indexes, ((APIException)error).getCode(), null, error.getMessage());
+		} else {
+			logger.error("batch analysis failed: "+error.getMessage(), error);
+			return new BatchItem(indexes, 500, null, error.getMessage());
+		}
+	}
+
+	/**
+	 * a batch result, answering one or several queries of the batch
+	 */
+	private static class BatchItem {
+
+		private final List<Integer> indexes;
+
+		private final int code;
+
+		private final Object result;
+
+		private final String error;
+
+		public BatchItem(List<Integer> indexes, int code, Object result, String error) {
+			this.indexes = indexes;
+			this.code = code;
+			this.result = result;
+			this.error = error;
+		}
+
+	}
+
+	/**
+	 * @param batchSpace
+	 *            the subject if already resolved, or null
+	 */
+	private Response runAnalysis(
+			final AppContext userContext,
+			String BBID,
+			Space batchSpace,
+			String stateId, 
+			final AnalyticsQuery query, 
+			DataLayout data,
+			boolean applyFormatting,
+			String envelope,
+			Integer timeout,
+			String ifNoneMatch
+			)
+	{
+		CompletableFuture<Response> response = runAnalysisAsync(userContext, BBID, batchSpace, stateId, query, data, applyFormatting, envelope, timeout, ifNoneMatch);
+		try {
+			return response.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause()!=null ? e.getCause().getCause() : e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			} else {
+				throw new APIException(cause.getMessage(), true);
+			}
+		} catch (InterruptedException e) {
+			throw new APIException(e.getMessage(), true);
+		}
+	}
+
+	/**
+	 * run the analysis without blocking the calling thread: the response
+	 * future completes once the analysis is computed, or with a
+	 * ComputingInProgressAPIException if the timeout expires first.
+	 * 
+	 * @param batchSpace
+	 *            the subject if already resolved, or null
+	 */
+	private CompletableFuture<Response> runAnalysisAsync(
+			final AppContext userContext,
+			String BBID,
+			Space batchSpace,
+			String stateId, 
+			final AnalyticsQuery query, 
+			DataLayout data,
+			boolean applyFormatting,
+			String envelope,
+			final Integer timeout,
+			final String ifNoneMatch
+			)
 	{
 		Space space = null;// if we can initialize it, fine to report in the catch block
 		try {
+			// the request shape, before the query is merged with the bookmark
+			final String requestKey = AnalysisPlanCache.computeQueryKey(query)+"/"+stateId+"/"+applyFormatting;
 			//
 			if (envelope==null) {
 				envelope = computeEnvelope(query);
 			}
 			//
-			space = getSpace(userContext, BBID);
-			//
-			Bookmark bookmark = space.getBookmark();
-			BookmarkConfig config = BookmarkManager.INSTANCE.readConfig(bookmark);
-			// check the state
-			if (stateId!=null && !stateId.equals("")) {
-				// read the state
-				StatePK pk = new StatePK(userContext.getCustomerId(), stateId);
-				State state = StateServiceBaseImpl.getInstance().read(userContext, pk);
-				BookmarkConfig stateConfig = BookmarkManager.INSTANCE.readConfig(state);
-				if (stateConfig!=null) {
-					config = stateConfig;
+			// check for a compiled plan
+			AnalysisPlanCache plans = AnalysisPlanCache.getInstance();
+			String planKey = plans.computeKey(userContext, BBID, stateId, query, applyFormatting);
+			AnalysisPlanCache.Plan plan = plans.get(planKey);
+			final AnalysisPlanCache.Plan cached;
+			final ProjectAnalysisJob job;
+			FacetSelection actual;
+			if (plan != null) {
+				space = plan.getSpace();
+				plan.restore(query);
+				job = plan.getJob();
+				actual = plan.getSelection();
+				cached = plan;
+			} else {
+				space = batchSpace!=null?batchSpace:getSpace(userContext, BBID);
+				//
+				Bookmark bookmark = space.getBookmark();
+				BookmarkConfig config = BookmarkManager.INSTANCE.readConfig(bookmark);
+				// check the state
+				if (stateId!=null && !stateId.equals("")) {
+					// read the state
+					StatePK pk = new StatePK(userContext.getCustomerId(), stateId);
+					State state = StateServiceBaseImpl.getInstance().read(userContext, pk);
+					BookmarkConfig stateConfig = BookmarkManager.INSTANCE.readConfig(state);
+					if (stateConfig!=null) {
+						config = stateConfig;
+					}
 				}
+				//
+				// merge the bookmark config with the query
+				mergeBookmarkConfig(space, query, config);
+				//
+				// set limit of not defined
+				if (query.getLimit()==null) {
+					query.setLimit((long) 100);
+				}
+				// create the facet selection
+				FacetSelection selection = createFacetSelection(space, query);
+				// create the job
+				job = createAnalysisJob(space, query, selection, OutputFormat.JSON);
+				// applyFormatting
+				if (applyFormatting) {
+					HashMap<String, Object> optionKeys = new HashMap<>();
+					optionKeys.put(DataMatrix.APPLY_FORMAT_OPTION, true);
+					job.setOptionKeys(optionKeys);
+				}
+				// update the facet selection with actual values
+				actual = computeFacetSelection(space, selection);
+				cached = plans.put(planKey, space, query, actual, job);
 			}
 			//
-			// merge the bookmark config with the query
-			mergeBookmarkConfig(space, query, config);
-			//
-			// set limit of not defined
-			if (query.getLimit()==null) {
-				query.setLimit((long) 100);
-			}
-			// create the facet selection
-			FacetSelection selection = createFacetSelection(space, query);
-			// create the job
-			final ProjectAnalysisJob job = createAnalysisJob(space, query, selection, OutputFormat.JSON);
-			// applyFormatting
-			if (applyFormatting) {
-				HashMap<String, Object> optionKeys = new HashMap<>();
-				optionKeys.put(DataMatrix.APPLY_FORMAT_OPTION, true);
-				job.setOptionKeys(optionKeys);
-			}
-			// update the facet selection with actual values
-			FacetSelection actual = computeFacetSelection(space, selection);
-			//
 			final boolean lazyFlag = (query.getLazy() != null) && (query.getLazy().equals("true") || query.getLazy().equals("noError"));
+			final boolean approximateFlag = !lazyFlag && Boolean.TRUE.equals(query.getApproximate());
 			//
 			// create the AnalysisResult
-			AnalyticsReply reply = new AnalyticsReply();
+			final AnalyticsReply reply = new AnalyticsReply();
 			//
 			reply.setSelection(convertToSelection(userContext, query, space, job, actual));
 			//
@@ -1129,107 +1416,227 @@ public class AnalyticsServiceBaseImpl implements AnalyticsServiceConstants {
 				AnalysisJobComputer computer = new AnalysisJobComputer();
 				String sql = computer.viewSQL(userContext, job);
 				reply.setResult(sql);
-			} else {
-				if (query.getStyle()==Style.HTML) {
-					// change data format to legacy
-					data=DataLayout.LEGACY;
-					if (query.getLimit()>100 && query.getMaxResults()==null) {
-						// try to apply maxResults
-						query.setMaxResults(100);
-					}
+				return CompletableFuture.completedFuture(createAnalysisResponse(userContext, space, query, reply, data, envelope, null));
+			}
+			if (plan!=null && ifNoneMatch!=null && query.getStyle()!=Style.HTML) {
+				// conditional request: check the client copy without reading the result
+				// - the generation check must reflect the pending model changes
+				MetaModelObserver.getInstance().flush(space.getUniverse().getProject().getId());
+				String redisKey = plan.getRedisKey();
+				EntityTag current = computeETag(redisKey, requestKey, data, envelope);
+				if (current!=null && BaseServiceRest.matchETag(ifNoneMatch, current) && RedisCacheManager.getInstance().isCurrent(redisKey)) {
+					return CompletableFuture.completedFuture(Response.notModified(current).build());
 				}
-				try {
-					Callable<DataMatrix> task = new Callable<DataMatrix>() {
-						@Override
-						public DataMatrix call() throws Exception {
-							return compute(userContext, job, query.getMaxResults(), query.getStartIndex(), lazyFlag);
+			}
+			if (query.getStyle()==Style.HTML) {
+				// change data format to legacy
+				data=DataLayout.LEGACY;
+				if (query.getLimit()>100 && query.getMaxResults()==null) {
+					// try to apply maxResults
+					query.setMaxResults(100);
+				}
+			}
+			// completed by the task itself, so no thread is waiting for it
+			final CompletableFuture<DataMatrix> computed = new CompletableFuture<>();
+			Callable<DataMatrix> task = new Callable<DataMatrix>() {
+				@Override
+				public DataMatrix call() throws Exception {
+					notifyQuery(userContext, job, JobMessage.Status.EXECUTING, null);
+					try {
+						DataMatrix matrix = approximateFlag
+								? computeApproximate(userContext, job, query.getMaxResults(), query.getStartIndex())
+								: compute(userContext, job, query.getMaxResults(), query.getStartIndex(), lazyFlag);
+						notifyQuery(userContext, job, JobMessage.Status.DONE, null);
+						if (cached!=null && !matrix.isPending() && !matrix.isApproximate()) {
+							cached.setRedisKey(matrix.getRedisKey());
 						}
-					};
-					Future<DataMatrix> futur = ExecutionManager.INSTANCE.submit(userContext.getCustomerId(), task);
-					DataMatrix matrix = null;
-					if (timeout==null) {
-						// using the customer execution engine to control load
-						matrix = futur.get();
-					} else {
-						matrix = futur.get(timeout>1000?timeout:1000, java.util.concurrent.TimeUnit.MILLISECONDS);
-					}
-					if (data==DataLayout.LEGACY) {
-						DataTable legacy = matrix.toDataTable(userContext, query.getMaxResults(), query.getStartIndex(), false, null);
-						reply.setResult(legacy);
-					} else {
-						IDataMatrixConverter<Object[]> converter = getConverter(data);
-						DataHeader header = computeDataHeader(matrix, computePrettyPrinterOptions(query.getStyle(), space));
-						AnalyticsResult result = new AnalyticsResult();
-						Object[] output = converter.convert(query, matrix);
-						result.setHeader(header);
-						result.setDataLayout(data);
-						result.setData(output);
-						result.setInfo(getAnalyticsResultInfo(output.length, query.getStartIndex(), matrix));
-						reply.setResult(result);
-					}
-				} catch (NotInCacheException e) {
-					if (query.getLazy().equals("noError")) {
-						reply.setResult(new AnalyticsResult());
-					} else {
+						computed.complete(matrix);
+						return matrix;
+					} catch (Exception e) {
+						notifyQuery(userContext, job, JobMessage.Status.ERROR, e.getMessage());
+						computed.completeExceptionally(e);
 						throw e;
 					}
-				} catch (ExecutionException e) {
-					Throwable cause = e.getCause();
-					if (cause instanceof NotInCacheException) {
-						if (query.getLazy().equals("noError") || query.getStyle()==Style.HTML) {
-							query.add(new Problem(Severity.ERROR, "SQL", "Lazy flag prevented to run the query: "+cause.getMessage(), cause));
-							reply.setResult(new AnalyticsResult());
-						} else {
-							// now using a 404 instead of the 204
-							throw new AnalyticsAPIException(cause, 404, query);
+				}
+			};
+			notifyQuery(userContext, job, JobMessage.Status.QUEUED, null);
+			// using the customer execution engine to control load
+			final Future<DataMatrix> futur;
+			try {
+				futur = ExecutionManager.INSTANCE.submit(userContext.getCustomerId(), task);
+			} catch (RuntimeException e) {
+				notifyQuery(userContext, job, JobMessage.Status.ERROR, e.getMessage());
+				throw new ComputingException(e);
+			}
+			// the engine may cancel the task or never run it: watch the future
+			// so the response is always resumed
+			final ScheduledFuture<?> watch = analysisTimer.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					if (futur.isDone() && !computed.isDone()) {
+						try {
+							computed.complete(futur.get());
+						} catch (CancellationException e) {
+							computed.completeExceptionally(e);
+						} catch (ExecutionException e) {
+							computed.completeExceptionally(e.getCause());
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
 						}
-					} else {
-						if (query.getStyle()==Style.HTML) {
-							// wrap the exception in a Problem
-							query.add(new Problem(Severity.ERROR, "SQL", "Failed to run the query: "+cause.getMessage(), cause));
-						} else {
-							// just let if go
-							throwCauseException(e);
+					}
+				}
+			}, 1, 1, TimeUnit.SECONDS);
+			final ScheduledFuture<?> timer;
+			if (timeout!=null) {
+				// the computation goes on, the client will get it from the cache
+				timer = analysisTimer.schedule(new Runnable() {
+					@Override
+					public void run() {
+						computed.completeExceptionally(new TimeoutException());
+					}
+				}, timeout>1000?timeout:1000, TimeUnit.MILLISECONDS);
+			} else {
+				timer = analysisTimer.schedule(new Runnable() {
+					@Override
+					public void run() {
+						if (computed.completeExceptionally(new ComputingException("analysis " + job.getId().getAnalysisJobId()
+								+ " did not complete in " + MAX_WAIT_SECONDS + "s"))) {
+							futur.cancel(true);
 						}
 					}
-				} catch (TimeoutException e) {
-					if (query.getStyle()==Style.HUMAN || query.getStyle()==Style.HTML) {
-						URI link = getPublicBaseUriBuilder().path("/status/{queryID}").queryParam("access_token", userContext.getToken().getOid()).build(query.getQueryID());
-						throw new ComputingInProgressAPIException("computing in progress", true, timeout*2, query.getQueryID(), link);
-					} else {
-						throw new ComputingInProgressAPIException("computing in progress", true, timeout*2, query.getQueryID());
-					}
-				}
-			}
-			if (query.getStyle()==Style.HTML && data==DataLayout.SQL) {
-				return generator.createHTMLsql(reply.getResult().toString());
-			} else if (query.getStyle()==Style.HTML && data==DataLayout.LEGACY) {
-				return generator.createHTMLPageTable(userContext, space, reply, (DataTable)reply.getResult());
-			} else if (envelope.equalsIgnoreCase("ALL")) {
-				return Response.ok(reply).build();
-			} else if (envelope.equalsIgnoreCase("RESULT")) {
-				return Response.ok(reply.getResult()).build();
-			} else if (envelope.equalsIgnoreCase("DATA")) {
-				if (reply.getResult() instanceof AnalyticsResult) {
-					return Response.ok(((AnalyticsResult)reply.getResult()).getData()).build();
-				} else if (reply.getResult() instanceof DataTable) {
-					return Response.ok(((DataTable)reply.getResult()).getRows()).build();
-				} else {
-					// return result instead
-					return Response.ok(reply.getResult()).build();
+				}, MAX_WAIT_SECONDS, TimeUnit.SECONDS);
+			}
+			computed.whenComplete(new BiConsumer<DataMatrix, Throwable>() {
+				@Override
+				public void accept(DataMatrix matrix, Throwable error) {
+					watch.cancel(false);
+					timer.cancel(false);
+					if (computed.isCancelled()) {
+						futur.cancel(true);
+					}
+				}
+			});
+			final Space finalSpace = space;
+			final DataLayout finalData = data;
+			final String finalEnvelope = envelope;
+			return computed.handle(new BiFunction<DataMatrix, Throwable, Response>() {
+				@Override
+				public Response apply(DataMatrix matrix, Throwable error) {
+					return completeAnalysis(userContext, finalSpace, query, reply, finalData, finalEnvelope, timeout,
+							requestKey, ifNoneMatch, matrix, error);
 				}
-			} 
-			//else
-			return Response.ok(reply).build();
+			});
 		} catch (DatabaseServiceException | ComputingException | InterruptedException | ScopeException | SQLScopeException | RenderingException e) {
-			if (query.getStyle()==Style.HTML) {
-				query.add(new Problem(Severity.ERROR, "query", "unable to run the query, fatal error: " + e.getMessage(), e));
-				AnalyticsReply reply = new AnalyticsReply();
-				reply.setQuery(query);
-				return generator.createHTMLPageTable(userContext, space, reply, null);
+			return CompletableFuture.completedFuture(createAnalysisError(userContext, space, query, e));
+		}
+	}
+
+	/**
+	 * build the analysis response once the matrix is computed, or report the
+	 * computation error
+	 */
+	private Response completeAnalysis(
+			AppContext userContext,
+			Space space,
+			AnalyticsQuery query,
+			AnalyticsReply reply,
+			DataLayout data,
+			String envelope,
+			Integer timeout,
+			String requestKey,
+			String ifNoneMatch,
+			DataMatrix matrix,
+			Throwable error
+			)
+	{
+		if (error instanceof CompletionException && error.getCause()!=null) {
+			error = error.getCause();
+		}
+		try {
+			EntityTag etag = null;
+			if (error==null) {
+				if (query.getStyle()!=Style.HTML && !matrix.isPending() && !matrix.isApproximate()) {
+					etag = computeETag(matrix.getRedisKey(), requestKey, data, envelope);
+					if (etag!=null && ifNoneMatch!=null && BaseServiceRest.matchETag(ifNoneMatch, etag)) {
+						return Response.notModified(etag).build();
+					}
+				}
+				if (data==DataLayout.LEGACY) {
+					DataTable legacy = matrix.toDataTable(userContext, query.getMaxResults(), query.getStartIndex(), false, null);
+					reply.setResult(legacy);
+				} else {
+					IDataMatrixConverter<Object[]> converter = getConverter(data);
+					DataHeader header = computeDataHeader(matrix, computePrettyPrinterOptions(query.getStyle(), space));
+					AnalyticsResult result = new AnalyticsResult();
+					// the records are written when the response is serialized
+					DataMatrixStream output = new DataMatrixStream(converter, query, matrix);
+					result.setHeader(header);
+					result.setDataLayout(data);
+					result.setData(output);
+					result.setInfo(getAnalyticsResultInfo(output.getSize(), query.getStartIndex(), matrix));
+					reply.setResult(result);
+				}
+			} else if (error instanceof TimeoutException) {
+				if (query.getStyle()==Style.HUMAN || query.getStyle()==Style.HTML) {
+					URI link = getPublicBaseUriBuilder().path("/status/{queryID}").queryParam("access_token", userContext.getToken().getOid()).build(query.getQueryID());
+					throw new ComputingInProgressAPIException("computing in progress", true, timeout*2, query.getQueryID(), link);
+				} else {
+					throw new ComputingInProgressAPIException("computing in progress", true, timeout*2, query.getQueryID());
+				}
+			} else if (error instanceof NotInCacheException) {
+				if (query.getLazy().equals("noError") || query.getStyle()==Style.HTML) {
+					query.add(new Problem(Severity.ERROR, "SQL", "Lazy flag prevented to run the query: "+error.getMessage(), error));
+					reply.setResult(new AnalyticsResult());
+				} else {
+					// now using a 404 instead of the 204
+					throw new AnalyticsAPIException(error, 404, query);
+				}
 			} else {
-				throw new APIException(e.getMessage(), true);
+				if (query.getStyle()==Style.HTML) {
+					// wrap the exception in a Problem
+					query.add(new Problem(Severity.ERROR, "SQL", "Failed to run the query: "+error.getMessage(), error));
+				} else {
+					// just let if go
+					throwCauseException(new ExecutionException(error));
+				}
 			}
+			return createAnalysisResponse(userContext, space, query, reply, data, envelope, etag);
+		} catch (ComputingException e) {
+			return createAnalysisError(userContext, space, query, e);
+		}
+	}
+
+	private Response createAnalysisResponse(AppContext userContext, Space space, AnalyticsQuery query, AnalyticsReply reply, DataLayout data, String envelope, EntityTag etag) {
+		if (query.getStyle()==Style.HTML && data==DataLayout.SQL) {
+			return generator.createHTMLsql(reply.getResult().toString());
+		} else if (query.getStyle()==Style.HTML && data==DataLayout.LEGACY) {
+			return generator.createHTMLPageTable(userContext, space, reply, (DataTable)reply.getResult());
+		} else if (envelope.equalsIgnoreCase("ALL")) {
+			return Response.ok(reply).tag(etag).build();
+		} else if (envelope.equalsIgnoreCase("RESULT")) {
+			return Response.ok(reply.getResult()).tag(etag).build();
+		} else if (envelope.equalsIgnoreCase("DATA")) {
+			if (reply.getResult() instanceof AnalyticsResult) {
+				return Response.ok(((AnalyticsResult)reply.getResult()).getData()).tag(etag).build();
+			} else if (reply.getResult() instanceof DataTable) {
+				return Response.ok(((DataTable)reply.getResult()).getRows()).tag(etag).build();
+			} else {
+				// return result instead
+				return Response.ok(reply.getResult()).tag(etag).build();
+			}
+		} 
+		//else
+		return Response.ok(reply).tag(etag).build();
+	}
+
+	private Response createAnalysisError(AppContext userContext, Space space, AnalyticsQuery query, Exception e) {
+		if (query.getStyle()==Style.HTML) {
+			query.add(new Problem(Severity.ERROR, "query", "unable to run the query, fatal error: " + e.getMessage(), e));
+			AnalyticsReply reply = new AnalyticsReply();
+			reply.setQuery(query);
+			return generator.createHTMLPageTable(userContext, space, reply, null);
+		} else {
+			throw new APIException(e.getMessage(), true);
 		}
 	}
 	
@@ -3260,6 +3667,9 @@ public class AnalyticsServiceBaseImpl implements AnalyticsServiceConstants {
 		info.setPageSize(pageSize);
 		info.setTotalSize(matrix.getRows().size());
 		info.setComplete(matrix.isFullset());
+		info.setPending(matrix.isPending());
+		info.setApproximate(matrix.isApproximate());
+		info.setSampleRate(matrix.getSampleRate());
 		return info;
 	}
 
@@ -3401,6 +3811,7 @@ public class AnalyticsServiceBaseImpl implements AnalyticsServiceConstants {
 		} else if (query.getStartIndex()!=null) builder.queryParam(START_INDEX_PARAM, query.getStartIndex());
 		//
 		if (query.getLazy()!=null) builder.queryParam(LAZY_PARAM, query.getLazy());
+		if (query.getApproximate()!=null) builder.queryParam(APPROXIMATE_PARAM, query.getApproximate());
 		if (style!=null) {
 			builder.queryParam(STYLE_PARAM, style);
 		} else if (query.getStyle()!=null) builder.queryParam(STYLE_PARAM, query.getStyle());
@@ -3425,6 +3836,57 @@ public class AnalyticsServiceBaseImpl implements AnalyticsServiceConstants {
 		}
 	}
 	
+	/**
+	 * the ETag of an analytics result: the result redis key, plus a digest of
+	 * the request shape (query, state, formatting, layout and envelope)
+	 * @return the ETag or null if the result has no redis key
+	 */
+	private EntityTag computeETag(String redisKey, String requestKey, DataLayout data, String envelope) {
+		if (redisKey==null) return null;
+		String shape = DigestUtils.sha256Hex(requestKey+"/"+data+"/"+envelope.toUpperCase());
+		return new EntityTag(redisKey+"."+shape.substring(0, 16));
+	}
+
+	/**
+	 * approximate mode: use the exact result if it is already in cache, else
+	 * answer from a sample of the rows and compute the exact result in the
+	 * background, so the next call will get it
+	 */
+	private DataMatrix computeApproximate(final AppContext ctx, final ProjectAnalysisJob job, Integer maxResults,
+			Integer startIndex) throws ComputingException, InterruptedException {
+		try {
+			return compute(ctx, job, maxResults, startIndex, true, false);
+		} catch (NotInCacheException e) {
+			// not yet computed
+		}
+		DataMatrix matrix = compute(ctx, job, maxResults, startIndex, false, true);
+		final String key = job.getId().toString();
+		if (matrix.isApproximate() && upgrading.add(key)) {
+			Callable<DataMatrix> task = new Callable<DataMatrix>() {
+				@Override
+				public DataMatrix call() throws Exception {
+					try {
+						return compute(ctx, job, null, null, false, false);
+					} finally {
+						upgrading.remove(key);
+					}
+				}
+			};
+			try {
+				ExecutionManager.INSTANCE.submit(ctx.getCustomerId(), task);
+			} catch (RuntimeException e) {
+				upgrading.remove(key);
+				logger.warn("cannot compute the exact result for job " + job.getId() + ": " + e.getMessage());
+			}
+		}
+		return matrix;
+	}
+
+	private DataMatrix compute(AppContext ctx, ProjectAnalysisJob job, Integer maxResults, Integer startIndex,
+			boolean lazy) throws ComputingException, InterruptedException {
+		return compute(ctx, job, maxResults, startIndex, lazy, false);
+	}
+
 	/**
 	 * moved some legacy code out of AnalysisJobComputer
 	 * => still need to bypass the ProjectAnalysisJob
@@ -3433,12 +3895,13 @@ public class AnalyticsServiceBaseImpl implements AnalyticsServiceConstants {
 	 * @param maxResults
 	 * @param startIndex
 	 * @param lazy
+	 * @param approximate if true, run the analysis on a sample of the rows
 	 * @return
 	 * @throws ComputingException
 	 * @throws InterruptedException
 	 */
 	private DataMatrix compute(AppContext ctx, ProjectAnalysisJob job, Integer maxResults, Integer startIndex,
-			boolean lazy) throws ComputingException, InterruptedException {
+			boolean lazy, boolean approximate) throws ComputingException, InterruptedException {
 		// build the analysis
 		long start = System.currentTimeMillis();
 		logger.info("Starting preview compute for job " + job.getId());
@@ -3448,12 +3911,20 @@ public class AnalyticsServiceBaseImpl implements AnalyticsServiceConstants {
 		} catch (Exception e) {
 			throw new ComputingException(e);
 		}
+		// answer the page as soon as it is available
+		if (maxResults != null) {
+			analysis.setPageRows((startIndex != null ? startIndex : 0) + maxResults);
+		}
+		if (approximate) {
+			analysis.setSampleRate(APPROXIMATE_RATE);
+		}
 		// run the analysis
 		DataMatrix datamatrix = ComputingService.INSTANCE.glitterAnalysis(analysis, null);
 		if (lazy && (datamatrix == null)) {
 			throw new NotInCacheException("Lazy preview, analysis " + analysis.getJobId() + "  not in cache");
 		} else {
-			job.setRedisKey(datamatrix.getRedisKey());
+			// a pending or approximate result is not the final one
+			job.setRedisKey(datamatrix.isPending() || datamatrix.isApproximate() ? null : datamatrix.getRedisKey());
 			long stop = System.currentTimeMillis();
 			logger.info("task=" + this.getClass().getName() + " method=compute" + " jobid="
 					+ job.getId().getAnalysisJobId() + " duration=" + (stop - start));
@@ -3467,6 +3938,15 @@ public class AnalyticsServiceBaseImpl implements AnalyticsServiceConstants {
 	
 	// Execution management
 	
+	/**
+	 * push the query state to the websocket session that started it, so it
+	 * doesn't have to poll the status
+	 */
+	private void notifyQuery(AppContext userContext, ProjectAnalysisJob job, JobMessage.Status status, String error) {
+		NotificationWebsocket.notifyJob(userContext, new JobMessage(userContext.getSessionId(),
+				job.getId().getProjectId(), job.getId().getObjectId(), status, error));
+	}
+
 	/**
 	 * list the execution status for a given analysis. Note: an analysis can spam multiple queries.
 	 * @param request
@@ -40,6 +40,7 @@ public interface AnalyticsServiceConstants {
 
 	public static final String PARENT_PARAM = "parent";
 	public static final String LAZY_PARAM = "lazy";
+	public static final String APPROXIMATE_PARAM = "approximate";
 	public static final String START_INDEX_PARAM = "startIndex";
 	public static final String MAX_RESULTS_PARAM = "maxResults";
 	public static final String DATA_PARAM = "data";
@@ -34,6 +34,8 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
@@ -46,6 +48,7 @@ import org.slf4j.LoggerFactory;
 
 import com.squid.core.expression.scope.ScopeException;
 import com.squid.kraken.v4.api.core.APIException;
+import com.squid.kraken.v4.api.core.BaseServiceRest;
 import com.squid.kraken.v4.api.core.InvalidIdAPIException;
 import com.squid.kraken.v4.api.core.InvalidTokenAPIException;
 import com.squid.kraken.v4.api.core.customer.CoreAuthenticatedServiceRest;
@@ -311,7 +314,7 @@ public class AnalyticsServiceRest  extends CoreAuthenticatedServiceRest implemen
 	@POST
 	@Path("/analytics/{" + BBID_PARAM_NAME + "}/query")
 	@ApiOperation(value = "Run a new Analysis based on the Bookmark scope")
-	public Response postAnalysis(
+	public void postAnalysis(
 			@Context HttpServletRequest request, 
 			@ApiParam(value="the analysis query definition", required=true) AnalyticsQuery query,
 			// data
@@ -332,16 +335,47 @@ public class AnalyticsServiceRest  extends CoreAuthenticatedServiceRest implemen
 			@ApiParam(value = "response timeout in milliseconds. If no timeout set, the method will return according to current job status.") 
 			@QueryParam(TIMEOUT_PARAM) Integer timeout,
 			// state
-			@QueryParam("state") String state
+			@QueryParam("state") String state,
+			@Suspended final AsyncResponse asyncResponse
 			) throws ComputingException, ScopeException, InterruptedException {
 		AppContext userContext = getUserContext(request);
-		return delegate(userContext).runAnalysis(userContext, BBID, state, query, getDataLayout(data), applyFormatting, envelope, timeout);
+		BaseServiceRest.resume(asyncResponse, delegate(userContext).runAnalysisAsync(userContext, BBID, state, query, getDataLayout(data), applyFormatting, envelope, timeout, null));
+	}
+
+	@POST
+	@Path("/analytics/{" + BBID_PARAM_NAME + "}/batch")
+	@ApiOperation(value = "Run a batch of Analysis based on the Bookmark scope, results are streamed as soon as they are ready")
+	public Response postAnalysisBatch(
+			@Context HttpServletRequest request, 
+			@ApiParam(value="the list of analysis query definitions", required=true) List<AnalyticsQuery> queries,
+			// data
+			@PathParam(BBID_PARAM_NAME) String BBID,
+			@ApiParam(
+					value="define the analysis data format.",
+					allowableValues="LEGACY,SQL,RECORDS,TABLE")
+			@QueryParam(DATA_PARAM) String data,
+			// apply formatting
+			@ApiParam(
+					value="apply formatting to the output data")
+			@QueryParam(APPLY_FORMATTING_PARAM) boolean applyFormatting,
+			// envelope
+			@ApiParam(
+					value="define the result envelope",
+					allowableValues="ALL,RESULT,DATA")
+			@QueryParam(ENVELOPE_PARAM) String envelope,
+			@ApiParam(value = "timeout in milliseconds shared by the whole batch. If no timeout set, the method will wait for every analysis.") 
+			@QueryParam(TIMEOUT_PARAM) Integer timeout,
+			// state
+			@QueryParam("state") String state
+			) {
+		AppContext userContext = getUserContext(request);
+		return delegate(userContext).runAnalysisBatch(userContext, BBID, state, queries, getDataLayout(data), applyFormatting, envelope, timeout);
 	}
 
 	@GET
 	@Path("/analytics/{" + BBID_PARAM_NAME + "}/query")
 	@ApiOperation(value = "Compute an analysis for the subject")
-	public Response runAnalysis(
+	public void runAnalysis(
 			@Context HttpServletRequest request, 
 			@PathParam(BBID_PARAM_NAME) String BBID,
 			// groupBy parameter
@@ -396,6 +430,9 @@ public class AnalyticsServiceRest  extends CoreAuthenticatedServiceRest implemen
 			// lazy
 			@ApiParam(value = "if true, get the analysis only if already in cache, else throw a NotInCacheException; if noError returns a null result if the analysis is not in cache ; else regular analysis", defaultValue = "false") 
 			@QueryParam(LAZY_PARAM) String lazy,
+			// approximate
+			@ApiParam(value = "if true and the exact result is not in cache, answer from a sample of the rows (additive metrics are scaled) and compute the exact result in the background", defaultValue = "false") 
+			@QueryParam(APPROXIMATE_PARAM) Boolean approximate,
 			// data
 			@ApiParam(
 					value="define the analysis data output format.",
@@ -419,11 +456,13 @@ public class AnalyticsServiceRest  extends CoreAuthenticatedServiceRest implemen
 			@ApiParam(value = "response timeout in milliseconds. If no timeout set, the method will return according to current job status.") 
 			@QueryParam(TIMEOUT_PARAM) Integer timeout,
 			// state
-			@QueryParam("state") String state
+			@QueryParam("state") String state,
+			@Suspended final AsyncResponse asyncResponse
 			) throws ComputingException, ScopeException, InterruptedException {
 		AppContext userContext = getUserContext(request);
 		AnalyticsQuery analysis = createAnalysisFromParams(null, BBID, groupBy, metrics, filterExpressions, period, timeframe, compareframe, orderExpressions, rollupExpressions, limit, offset, beyondLimit, maxResults, startIndex, lazy, computeStyle(style));
-		return delegate(userContext).runAnalysis(userContext, BBID, state, analysis, getDataLayout(data), applyFormatting, envelope, timeout);
+		if (approximate!=null) analysis.setApproximate(approximate);
+		BaseServiceRest.resume(asyncResponse, delegate(userContext).runAnalysisAsync(userContext, BBID, state, analysis, getDataLayout(data), applyFormatting, envelope, timeout, request.getHeader("If-None-Match")));
 	}
 
 	@GET
@@ -55,6 +55,7 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.Optional;
 import com.squid.kraken.v4.KrakenConfig;
 import com.squid.kraken.v4.api.core.APIException;
+import com.squid.kraken.v4.api.core.AccessTokenSigner;
 import com.squid.kraken.v4.api.core.EmailHelper;
 import com.squid.kraken.v4.api.core.GenericServiceImpl;
 import com.squid.kraken.v4.api.core.InvalidCredentialsAPIException;
@@ -106,7 +107,7 @@ public class AuthServiceImpl extends
 	public void initGC() {
 		modelGC = Executors.newSingleThreadScheduledExecutor();
 		ModelGC<AccessToken, AccessTokenPK> gc = new ModelGC<AccessToken, AccessTokenPK>(
-				0, this, AccessToken.class);
+				0, AccessToken.class);
 		modelGCThread = modelGC
 				.scheduleWithFixedDelay(gc, 0, 1, TimeUnit.HOURS);
 	}
@@ -494,6 +495,15 @@ public class AuthServiceImpl extends
 		for (AccessToken token : findByUser) {
 			dao.delete(ctx, token.getId());
 		}
+		// the signed tokens are not stored
+		AccessTokenSigner signer = AccessTokenSigner.getInstance();
+		if (signer.isEnabled()) {
+			if (ctx.getToken() != null && signer.isSigned(ctx.getToken().getId())) {
+				dao.delete(ctx, ctx.getToken().getId());
+			}
+			// revoke the other tokens issued to the user
+			dao.delete(ctx, signer.logout(ctx.getCustomerId(), ctx.getUser().getId().getUserId()));
+		}
 	}
 
 	private void verifyClient(ClientPK clientId, String redirectUrl,
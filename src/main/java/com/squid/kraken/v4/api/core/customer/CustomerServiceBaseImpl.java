@@ -25,8 +25,10 @@ package com.squid.kraken.v4.api.core.customer;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.UUID;
@@ -38,6 +40,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.squid.kraken.v4.KrakenConfig;
+import com.squid.kraken.v4.ESIndexFacade.ESIndexFactory;
 import com.squid.kraken.v4.api.core.APIException;
 import com.squid.kraken.v4.api.core.AccessRightsUtils;
 import com.squid.kraken.v4.api.core.CoreConstants;
@@ -47,6 +50,7 @@ import com.squid.kraken.v4.api.core.GenericServiceImpl;
 import com.squid.kraken.v4.api.core.InvalidCredentialsAPIException;
 import com.squid.kraken.v4.api.core.ServiceUtils;
 import com.squid.kraken.v4.api.core.user.UserServiceBaseImpl;
+import com.squid.kraken.v4.core.analysis.engine.query.aggregate.AggregateManager;
 import com.squid.kraken.v4.model.AccessRight;
 import com.squid.kraken.v4.model.AccessRight.Role;
 import com.squid.kraken.v4.model.AccessToken;
@@ -63,6 +67,8 @@ import com.squid.kraken.v4.model.UserGroupPK;
 import com.squid.kraken.v4.model.UserPK;
 import com.squid.kraken.v4.persistence.AppContext;
 import com.squid.kraken.v4.persistence.DAOFactory;
+import com.squid.kraken.v4.persistence.DataStoreEventBus;
+import com.squid.kraken.v4.runtime.DeflaterPool;
 
 public class CustomerServiceBaseImpl extends
 		GenericServiceImpl<Customer, CustomerPK> {
@@ -145,6 +151,29 @@ public class CustomerServiceBaseImpl extends
 		return ctx.getUser();
 	}
 
+	/**
+	 * read the server runtime statistics; only available to super users
+	 * 
+	 * @param ctx
+	 * @return
+	 */
+	public Map<String, Object> readStatistics(AppContext ctx) {
+		if (!ctx.getUser().isSuperUser()) {
+			throw new InvalidCredentialsAPIException("only a super user can read the server statistics",
+					ctx.isNoError());
+		}
+		Map<String, Object> stats = new LinkedHashMap<>();
+		try {
+			stats.put("bulkIndexing", ESIndexFactory.getInstance().getBulkIndexingStatistics());
+		} catch (IllegalStateException e) {
+			// ES is not initialized
+		}
+		stats.put("eventBus", DataStoreEventBus.getInstance().getStatistics());
+		stats.put("gzip", DeflaterPool.INSTANCE.getStatistics());
+		stats.put("aggregates", AggregateManager.INSTANCE.getStatistics());
+		return stats;
+	}
+
 	// non REST API methods
 
 	/**
@@ -23,6 +23,7 @@
  *******************************************************************************/
 package com.squid.kraken.v4.api.core.customer;
 
+import java.util.Map;
 import java.util.Set;
 
 import javax.servlet.http.HttpServletRequest;
@@ -534,4 +535,17 @@ public class CustomerServiceRest extends CoreAuthenticatedServiceRest {
 		return res;
 	}
 
+	/**
+	 * Retrieve the server runtime statistics (super user only).
+	 * 
+	 * @return the statistics by component
+	 */
+	@Path("/status/statistics")
+	@GET
+	@ApiOperation(value = "Get the server runtime statistics.")
+	public Map<String, Object> statistics(@Context HttpServletRequest request) {
+		AppContext userContext = getUserContext(request);
+		return delegate.readStatistics(userContext);
+	}
+
 }
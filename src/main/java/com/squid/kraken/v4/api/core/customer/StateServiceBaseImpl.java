@@ -67,7 +67,7 @@ public class StateServiceBaseImpl extends GenericServiceImpl<State, StatePK> {
 	public void initGC(int maxAgeInSeconds) {
 		modelGC = Executors.newSingleThreadScheduledExecutor();
 		ModelGC<State, StatePK> gc = new ModelGC<State, StatePK>(
-				maxAgeInSeconds, this, State.class);
+				maxAgeInSeconds, State.class);
 		modelGCThread = modelGC
 				.scheduleWithFixedDelay(gc, 0, 1, TimeUnit.HOURS);
 	}
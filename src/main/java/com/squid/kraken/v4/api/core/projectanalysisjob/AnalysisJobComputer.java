@@ -122,6 +122,10 @@ public class AnalysisJobComputer implements JobComputer<ProjectAnalysisJob, Proj
 		} catch (Exception e) {
 			throw new ComputingException(e);
 		}
+		// answer the page as soon as it is available
+		if (maxResults != null) {
+			analysis.setPageRows((startIndex != null ? startIndex : 0) + maxResults);
+		}
 
 		// run the analysis
 		DataMatrix datamatrix = ComputingService.INSTANCE.glitterAnalysis(analysis, null);
@@ -129,7 +133,8 @@ public class AnalysisJobComputer implements JobComputer<ProjectAnalysisJob, Proj
 			throw new NotInCacheException("Lazy preview, analysis " + analysis.getJobId() + "  not in cache");
 		} else {
 
-			job.setRedisKey(datamatrix.getRedisKey());
+			// a pending result is not the final one
+			job.setRedisKey(datamatrix.isPending() ? null : datamatrix.getRedisKey());
 
 			long stop = System.currentTimeMillis();
 
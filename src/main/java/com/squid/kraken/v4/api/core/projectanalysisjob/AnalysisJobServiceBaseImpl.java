@@ -25,12 +25,17 @@ package com.squid.kraken.v4.api.core.projectanalysisjob;
 
 import java.util.List;
 
+import javax.ws.rs.core.EntityTag;
+
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringEscapeUtils;
 
 import com.squid.core.expression.scope.ScopeException;
 import com.squid.core.sql.model.SQLScopeException;
 import com.squid.core.sql.render.RenderingException;
 import com.squid.kraken.v4.api.core.JobServiceBaseImpl;
+import com.squid.kraken.v4.caching.redis.RedisCacheManager;
+import com.squid.kraken.v4.core.analysis.engine.cache.MetaModelObserver;
 import com.squid.kraken.v4.core.analysis.engine.processor.ComputingException;
 import com.squid.kraken.v4.model.DataTable;
 import com.squid.kraken.v4.model.ProjectAnalysisJob;
@@ -104,4 +109,21 @@ public class AnalysisJobServiceBaseImpl
 		}
 	}
 
+	/**
+	 * the ETag of the job results: the redis key of the job result, plus a
+	 * digest of the request shape (paging, lazy, compression)
+	 * 
+	 * @return the ETag, or null if the job has no current result
+	 */
+	public EntityTag computeETag(AppContext ctx, ProjectAnalysisJobPK jobId, String requestKey) {
+		// the generation check must reflect the pending model changes
+		MetaModelObserver.getInstance().flush(new ProjectPK(jobId.getCustomerId(), jobId.getProjectId()));
+		String redisKey = read(ctx, jobId).getRedisKey();
+		if (redisKey == null || !RedisCacheManager.getInstance().isCurrent(redisKey)) {
+			return null;
+		}
+		String shape = DigestUtils.sha256Hex(requestKey);
+		return new EntityTag(redisKey + "." + shape.substring(0, 16));
+	}
+
 }
@@ -29,10 +29,13 @@ import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 import javax.ws.rs.DELETE;
 import javax.ws.rs.FormParam;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
@@ -40,6 +43,9 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
@@ -123,22 +129,71 @@ public class AnalysisJobServiceRest extends BaseServiceRest {
 	 *         or has failed.<br>
 	 *         If format or compression are not json/none then the returned data
 	 *         will be set as "Content-Disposition",
-	 *         "attachment; filename=+[job-]+jobId.[extension]".
+	 *         "attachment; filename=+[job-]+jobId.[extension]".<br>
+	 *         The response is suspended while the job is computing.
 	 */
 	@GET
 	@Path("{" + PARAM_NAME + "}" + "/results")
 	@ApiOperation(value = "Gets an AnalysisJobs' results as a DataTable")
-	public Response getResults(@PathParam("projectId") String projectId, @PathParam(PARAM_NAME) String jobId,
+	public void getResults(@PathParam("projectId") String projectId, @PathParam(PARAM_NAME) String jobId,
 			@ApiParam(value = "response timeout in milliseconds in case the job is not yet computed. If no timeout set, the method will return according to current job status.") @QueryParam("timeout") Integer timeout,
 			@ApiParam(value = "paging size") @QueryParam("maxResults") Integer maxResults,
 			@ApiParam(value = "paging start index") @QueryParam("startIndex") Integer startIndex,
 			@ApiParam(value = "if true, get the analysis only if already in cache, else throw a NotInCacheException; if noError returns a null result if the analysis is not in cache ; else regular analysis", defaultValue = "false") @QueryParam("lazy") String lazy,
 			@ApiParam(value = "output format", allowableValues = "json,csv,vxls", defaultValue = "json") @QueryParam("format") String format,
-			@ApiParam(value = "output compression", allowableValues = "gzip, none, null", defaultValue = "none") @QueryParam("compression") String compression) {
+			@ApiParam(value = "output compression", allowableValues = "gzip, none, null", defaultValue = "none") @QueryParam("compression") String compression,
+			@HeaderParam("If-None-Match") String ifNoneMatch,
+			@Suspended final AsyncResponse asyncResponse) {
 
 		final ProjectAnalysisJobPK id = new ProjectAnalysisJobPK(userContext.getCustomerId(), projectId, jobId);
 		final ProjectAnalysisJob job = new ProjectAnalysisJob(id);
-		return getResults(projectId, job, timeout, maxResults, startIndex, lazy, format, compression, true);
+		resume(asyncResponse, getResultsAsync(projectId, job, timeout, maxResults, startIndex, lazy, format, compression, ifNoneMatch));
+	}
+
+	/**
+	 * The JSON results are read without blocking the request thread; the
+	 * exports are streamed from the query by the container thread.<br>
+	 * The JSON results are tagged with an ETag, so a client can revalidate
+	 * its copy with If-None-Match.
+	 */
+	private CompletableFuture<Response> getResultsAsync(String projectId, final ProjectAnalysisJob job,
+			final Integer timeout, final Integer maxResults, final Integer startIndex, final String lazy,
+			String format, String compression, final String ifNoneMatch) {
+		final OutputFormat outFormat = (format == null) ? OutputFormat.JSON : OutputFormat.valueOf(format.toUpperCase());
+		final OutputCompression outCompression = (compression == null) ? OutputCompression.NONE
+				: OutputCompression.valueOf(compression.toUpperCase());
+		if (outFormat != OutputFormat.JSON) {
+			return CompletableFuture.completedFuture(
+					getResults(projectId, job, timeout, maxResults, startIndex, lazy, format, compression, true));
+		}
+		final String requestKey = maxResults + "/" + startIndex + "/" + lazy + "/" + outCompression;
+		if (ifNoneMatch != null) {
+			// conditional request: check the client copy without reading the
+			// results
+			EntityTag current = delegate.computeETag(userContext, job.getId(), requestKey);
+			if (current != null && matchETag(ifNoneMatch, current)) {
+				return CompletableFuture.completedFuture(Response.notModified(current).build());
+			}
+		}
+		return delegate.readResultsAsync(userContext, job.getId(), timeout, true, maxResults, startIndex, lazy, 1000)
+				.thenApply(new Function<DataTable, Response>() {
+					@Override
+					public Response apply(final DataTable results) {
+						// the job is updated with the result key once computed
+						EntityTag etag = delegate.computeETag(userContext, job.getId(), requestKey);
+						if (etag != null && ifNoneMatch != null && matchETag(ifNoneMatch, etag)) {
+							return Response.notModified(etag).build();
+						}
+						StreamingOutput stream = new StreamingOutput() {
+							@Override
+							public void write(OutputStream os) throws IOException, WebApplicationException {
+								delegate.writeResults(os, results, outCompression);
+							}
+						};
+						Response response = createResponse(job, stream, outFormat, outCompression, true);
+						return etag != null ? Response.fromResponse(response).tag(etag).build() : response;
+					}
+				});
 	}
 
 	@GET
@@ -365,7 +420,11 @@ public class AnalysisJobServiceRest extends BaseServiceRest {
 				}
 			}
 		};
+		return createResponse(job, stream, outFormat, outCompression, setFileName);
+	}
 
+	private Response createResponse(ProjectAnalysisJob job, StreamingOutput stream, OutputFormat outFormat,
+			OutputCompression outCompression, boolean setFileName) {
 		// build the response
 		ResponseBuilder response;
 		String fileName = "job-" + job.getOid();
@@ -27,6 +27,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -37,6 +39,8 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
@@ -53,6 +57,7 @@ import com.squid.kraken.v4.model.AccessRight;
 import com.squid.kraken.v4.model.DataTable;
 import com.squid.kraken.v4.model.Facet;
 import com.squid.kraken.v4.model.FacetSearchResult;
+import com.squid.kraken.v4.model.FacetSelection;
 import com.squid.kraken.v4.model.ProjectFacetJob;
 import com.squid.kraken.v4.model.ProjectFacetJobPK;
 import com.squid.kraken.v4.persistence.AppContext;
@@ -152,13 +157,52 @@ public class FacetJobServiceRest extends BaseServiceRest {
 	@GET
 	@Path("{" + PARAM_NAME + "}"+"/results")
 	@ApiOperation(value = "Gets FacetJob' results as a DataTable")
-	public Response getResults(@PathParam("projectId") String projectId,
+	public void getResults(@PathParam("projectId") String projectId,
 			@PathParam(PARAM_NAME) String jobId,
 			@QueryParam("timeout") Integer timeout,
 			@QueryParam("maxResults") Integer maxResults,
 			@QueryParam("startIndex") Integer startIndex,
 			@QueryParam("format") String format,
-			@QueryParam("compression") String compression) {
+			@QueryParam("compression") String compression,
+			@Suspended final AsyncResponse asyncResponse) {
+		final OutputCompression outCompression = (compression == null) ? OutputCompression.NONE
+				: OutputCompression.valueOf(compression.toUpperCase());
+		if ((format == null) || (OutputFormat.valueOf(format.toUpperCase()) == OutputFormat.JSON)) {
+			// JSON: don't block the request thread while the job is computing
+			CompletableFuture<Response> response = delegate
+					.readResultsAsync(userContext,
+							new ProjectFacetJobPK(userContext.getCustomerId(), projectId, jobId), timeout, true,
+							maxResults, startIndex, null, 1000)
+					.thenApply(new Function<FacetSelection, Response>() {
+						@Override
+						public Response apply(final FacetSelection results) {
+							StreamingOutput stream = new StreamingOutput() {
+								@Override
+								public void write(OutputStream os) throws IOException, WebApplicationException {
+									delegate.writeResults(os, results, outCompression);
+								}
+							};
+							if (outCompression == OutputCompression.GZIP) {
+								return Response.ok(stream, MediaType.APPLICATION_OCTET_STREAM_TYPE)
+										.header("Content-Disposition", "attachment; filename=job-" + jobId + ".json.gz")
+										.build();
+							} else if ((format != null) || (compression != null)) {
+								return Response.ok(stream, MediaType.APPLICATION_JSON_TYPE)
+										.header("Content-Disposition", "attachment; filename=job-" + jobId + ".json")
+										.build();
+							}
+							return Response.ok(stream, MediaType.APPLICATION_JSON_TYPE).build();
+						}
+					});
+			resume(asyncResponse, response);
+		} else {
+			asyncResponse.resume(getResultsAsStream(projectId, jobId, timeout, maxResults, startIndex, format,
+					compression));
+		}
+	}
+
+	private Response getResultsAsStream(String projectId, String jobId, Integer timeout, Integer maxResults,
+			Integer startIndex, String format, String compression) {
 
 		final ProjectFacetJob job = new ProjectFacetJob(new ProjectFacetJobPK(
 				userContext.getCustomerId(), projectId, jobId));
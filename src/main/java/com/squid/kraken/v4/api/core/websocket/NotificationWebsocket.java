@@ -34,12 +34,17 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.websocket.EncodeException;
 import javax.websocket.OnClose;
 import javax.websocket.OnError;
 import javax.websocket.OnMessage;
 import javax.websocket.OnOpen;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
 import javax.websocket.Session;
 import javax.websocket.server.ServerEndpoint;
 
@@ -65,6 +70,11 @@ public class NotificationWebsocket {
 	private static final Logger logger = LoggerFactory.getLogger(NotificationWebsocket.class);
 	private static final Set<Session> sessions = Collections.synchronizedSet(new HashSet<Session>());
 	private static final SetMultimap<String, Session> sessionsByToken = HashMultimap.create();
+	private static final SetMultimap<String, Session> sessionsById = Multimaps
+			.synchronizedSetMultimap(HashMultimap.<String, Session> create());
+
+	// max number of messages waiting to be sent to a session
+	private static final int MAX_QUEUED = 1000;
 
 	static public Set<Session> getSessions() {
 		return Collections.unmodifiableSet(sessions);
@@ -74,6 +84,123 @@ public class NotificationWebsocket {
 		return sessionsByToken.get(tokenId);
 	}
 
+	/**
+	 * push a job state transition to the websocket session that started the
+	 * job, if it is connected to this server. The session is identified by
+	 * the bouquetSessionId the client sends back in its API calls.
+	 * 
+	 * @param ctx
+	 *            the context the job was started with
+	 * @param message
+	 */
+	static public void notifyJob(AppContext ctx, JobMessage message) {
+		if (ctx == null || ctx.getSessionId() == null) {
+			return;
+		}
+		Session[] targets;
+		synchronized (sessionsById) {
+			Set<Session> set = sessionsById.get(ctx.getSessionId());
+			targets = set.toArray(new Session[set.size()]);
+		}
+		for (Session session : targets) {
+			if (session.isOpen()) {
+				send(session, message);
+			}
+		}
+	}
+
+	/**
+	 * send a message to the session without blocking. The container doesn't
+	 * allow concurrent async sends on a session, so the messages are queued and
+	 * sent one at a time.
+	 * 
+	 * @param session
+	 * @param message
+	 */
+	static public void send(Session session, Object message) {
+		SessionSender sender = (SessionSender) session.getUserProperties().get("sender");
+		if (sender == null) {
+			synchronized (session) {
+				sender = (SessionSender) session.getUserProperties().get("sender");
+				if (sender == null) {
+					sender = new SessionSender(session);
+					session.getUserProperties().put("sender", sender);
+				}
+			}
+		}
+		sender.send(message);
+	}
+
+	/**
+	 * the send queue of a session
+	 */
+	private static class SessionSender implements SendHandler {
+
+		private final Session session;
+
+		private final ConcurrentLinkedQueue<Object> queue = new ConcurrentLinkedQueue<Object>();
+
+		private final AtomicInteger size = new AtomicInteger();
+
+		private final AtomicBoolean sending = new AtomicBoolean(false);
+
+		public SessionSender(Session session) {
+			this.session = session;
+		}
+
+		public void send(Object message) {
+			if (size.incrementAndGet() > MAX_QUEUED) {
+				size.decrementAndGet();
+				logger.info("Message sending failed : too many messages queued for session " + session.getId());
+				return;
+			}
+			queue.add(message);
+			sendNext();
+		}
+
+		private void sendNext() {
+			while (!queue.isEmpty() && sending.compareAndSet(false, true)) {
+				Object message = queue.poll();
+				if (message == null) {
+					// taken by another thread
+					sending.set(false);
+					continue;
+				}
+				size.decrementAndGet();
+				if (!session.isOpen()) {
+					queue.clear();
+					size.set(0);
+					sending.set(false);
+					return;
+				}
+				try {
+					session.getAsyncRemote().sendObject(message, this);
+					return;
+				} catch (IllegalStateException e) {
+					logger.info("Message sending failed : " + e.getMessage());
+					sending.set(false);
+				}
+			}
+		}
+
+		@Override
+		public void onResult(SendResult result) {
+			if (!result.isOK()) {
+				logger.info("Message sending failed : " + result.getException().getMessage());
+				if (result.getException() instanceof IOException) {
+					try {
+						session.close();
+					} catch (IOException e) {
+						// Ignore
+					}
+				}
+			}
+			sending.set(false);
+			sendNext();
+		}
+
+	}
+
 	public NotificationWebsocket() {
 	}
 
@@ -94,12 +221,13 @@ public class NotificationWebsocket {
 			session.getUserProperties().put("ctx", userContext);
 			// keep this session
 			sessions.add(session);
+			sessionsById.put(bouquetSessionId, session);
 			Multimaps.synchronizedSetMultimap(sessionsByToken).put(tokenId, session);
 			logger.info("Session added with ID : " + session.getId() + " uuid : " + bouquetSessionId);
 		} catch (InvalidTokenAPIException | TokenExpiredException | InvalidCredentialsAPIException e) {
 			// send a logout message
 			logger.info("Invalid or expired token : " + tokenId);
-			session.getBasicRemote().sendObject(new SessionMessage(bouquetSessionId, true, true));
+			send(session, new SessionMessage(bouquetSessionId, true, true));
 		}
 	}
 
@@ -115,24 +243,19 @@ public class NotificationWebsocket {
 		if ((userContext != null) && (userContext.getToken() != null)) {
 			sessionsByToken.remove(userContext.getToken().getOid(), session);
 		}
+		if ((userContext != null) && (userContext.getSessionId() != null)) {
+			sessionsById.remove(userContext.getSessionId(), session);
+		}
 	}
 
 	@OnMessage
 	public void onMessage(Session session, String msg, boolean last) throws EncodeException {
-		try {
-			if (session.isOpen()) {
-				// send back the welcome message
-				AppContext userContext = (AppContext) session.getUserProperties().get("ctx");
-				String bouquetSessionId = userContext!=null?userContext.getSessionId():"";
-				logger.debug("Welcome session : " + session.getId() + " uuid : " + bouquetSessionId);
-				session.getBasicRemote().sendObject(new SessionMessage(bouquetSessionId));
-			}
-		} catch (IOException e) {
-			try {
-				session.close();
-			} catch (IOException e1) {
-				// Ignore
-			}
+		if (session.isOpen()) {
+			// send back the welcome message
+			AppContext userContext = (AppContext) session.getUserProperties().get("ctx");
+			String bouquetSessionId = userContext!=null?userContext.getSessionId():"";
+			logger.debug("Welcome session : " + session.getId() + " uuid : " + bouquetSessionId);
+			send(session, new SessionMessage(bouquetSessionId));
 		}
 	}
 
@@ -177,6 +300,57 @@ public class NotificationWebsocket {
 		}
 	}
 
+	/**
+	 * A job (or analytics query) state transition. It doesn't carry the
+	 * results: the client reads them once, when the job is DONE.
+	 */
+	@SuppressWarnings("serial")
+	public static class JobMessage implements Serializable {
+
+		public enum Status {
+			QUEUED, EXECUTING, DONE, ERROR
+		}
+
+		private final String bouquetSessionId;
+		private final String projectId;
+		private final String jobId;
+		private final Status status;
+		private final String error;
+
+		public JobMessage(String bouquetSessionId, String projectId, String jobId, Status status) {
+			this(bouquetSessionId, projectId, jobId, status, null);
+		}
+
+		public JobMessage(String bouquetSessionId, String projectId, String jobId, Status status, String error) {
+			super();
+			this.bouquetSessionId = bouquetSessionId;
+			this.projectId = projectId;
+			this.jobId = jobId;
+			this.status = status;
+			this.error = error;
+		}
+
+		public String getBouquetSessionId() {
+			return bouquetSessionId;
+		}
+
+		public String getProjectId() {
+			return projectId;
+		}
+
+		public String getJobId() {
+			return jobId;
+		}
+
+		public Status getStatus() {
+			return status;
+		}
+
+		public String getError() {
+			return error;
+		}
+	}
+
 	public static AppContext buildUserContext(String tokenId, String sessionId) throws TokenExpiredException {
 		AccessToken token = null;
 		AppContext ctx = null;
@@ -71,6 +71,12 @@ public class NotificationWebsocketMetaModelObserver implements
 
 	@Override
 	public void notifyEvent(DataStoreEvent event) {
+		if (event.isBatch()) {
+			for (DataStoreEvent item : event.split()) {
+				notifyEvent(item);
+			}
+			return;
+		}
 		try {
 			if (acceptEvent(event)) {
 				Object sourceEvent = event.getSource();
@@ -136,13 +142,8 @@ public class NotificationWebsocketMetaModelObserver implements
 		// do not send back events to emitter
 		if (emitter == null
 				|| (!ctx.getSessionId().equals(emitter.getSessionId()))) {
-			// send
-			try {
-				s.getAsyncRemote().sendObject(object);
-			} catch (IllegalStateException e) {
-				// T1562 getAsyncRemote appears not to be thread-safe but I prefer to ignore than locking
-				logger.info("Message sending failed : "+e.getMessage());
-			}
+			// send, T1562 the async sends are queued per session
+			NotificationWebsocket.send(s, object);
 		}
 	}
 
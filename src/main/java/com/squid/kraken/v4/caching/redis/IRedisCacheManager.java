@@ -70,12 +70,16 @@ public interface IRedisCacheManager {
 	
 	public boolean isValid(RedisKey key);
 
+	public boolean isCurrent(String key);
+
 	public boolean inCache(RedisKey key);
 
 	public boolean inCache(String key);
 
 	public RawMatrix getRawMatrix(String k);
 
+	public RawMatrix getRawMatrix(String k, long minRows);
+
 	public String addCacheReference(String sqlNoLimit, List<String> dependencies, String referencedKey);
 
 	public IQueriesServer getQueryServer();
@@ -23,6 +23,8 @@
  *******************************************************************************/
 package com.squid.kraken.v4.caching.redis;
 
+import java.util.List;
+
 import com.squid.kraken.v4.caching.redis.datastruct.RawMatrix;
 import com.squid.kraken.v4.caching.redis.datastruct.RedisCacheValue;
 import com.squid.kraken.v4.caching.redis.generationalkeysserver.RedisKey;
@@ -39,6 +41,12 @@ public interface IRedisCacheProxy {
 
 	public RawMatrix getRawMatrix(String key);
 
+	/**
+	 * get the matrix, but if it is still being computed, return as soon as
+	 * the first minRows are available (the matrix is then flagged as pending)
+	 */
+	public RawMatrix getRawMatrix(String key, long minRows);
+
 	public byte[] get(String key);
 
 	public boolean inCache(RedisKey k);
@@ -52,4 +60,26 @@ public interface IRedisCacheProxy {
 	public void setTTL(String key, int ttl);
 
 	public RedisCacheValue getRawOrList(String key );
+
+	/**
+	 * read the counters; a missing counter is atomically initialized with its
+	 * seed
+	 * 
+	 * @param keys
+	 * @param seeds
+	 *            one seed per key
+	 * @return the counters values, in the keys order
+	 */
+	public long[] getCounters(List<String> keys, List<String> seeds);
+
+	/**
+	 * atomically increment the counters; a missing counter is initialized
+	 * with its seed before being incremented
+	 * 
+	 * @param keys
+	 * @param seeds
+	 *            one seed per key
+	 * @return the new counters values, in the keys order
+	 */
+	public long[] incrCounters(List<String> keys, List<String> seeds);
 }
\ No newline at end of file
@@ -33,6 +33,9 @@ import org.apache.commons.codec.digest.DigestUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.squid.kraken.v4.KrakenConfig;
 import com.squid.kraken.v4.caching.redis.datastruct.RawMatrix;
 import com.squid.kraken.v4.caching.redis.datastruct.RedisCacheReference;
 import com.squid.kraken.v4.caching.redis.datastruct.RedisCacheValue;
@@ -58,6 +61,11 @@ public class RedisCacheManager implements IRedisCacheManager {
 	private IQueriesServer queriesServ;
 	private IGenerationalKeysServer genkeysServ;
 
+	// the keys issued by buildCacheKey(), so that a result key can be
+	// validated without reading the value
+	private final Cache<String, RedisKey> issuedKeys = CacheBuilder.newBuilder()
+			.maximumSize(Long.parseLong(KrakenConfig.getProperty("kraken.cache.issuedKeys", "10000"))).build();
+
 	// constructors
 
 	public RedisCacheManager() {
@@ -255,9 +263,24 @@ public class RedisCacheManager implements IRedisCacheManager {
 		key += "-" + DigestUtils.sha256Hex(SQLQuery);
 		//
 		RedisKey rk = getKey(key, dependencies);
+		issuedKeys.put(rk.getStringKey(), rk);
 		return rk.getStringKey();
 	}
 
+	/**
+	 * check that a result key is still the current one, without reading the
+	 * value: the key must have been issued by this server, still be valid and
+	 * still in cache
+	 * 
+	 * @param key
+	 *            the string key, as returned by buildCacheKey()
+	 * @return false if it can't be checked
+	 */
+	public boolean isCurrent(String key) {
+		RedisKey rk = issuedKeys.getIfPresent(key);
+		return rk != null && isValid(rk) && inCache(key);
+	}
+
 	public void clear() {
 		logger.info("Clearing SQL cache");
 		this.redis.clear();
@@ -305,7 +328,7 @@ public class RedisCacheManager implements IRedisCacheManager {
 	 */
 	public boolean isValid(RedisKey key) {
 		RedisKey check = getKey(key);
-		return check.getVersion() == key.getVersion() && check.getUniqueID() == key.getUniqueID();
+		return check.getVersion() == key.getVersion() && check.getUniqueID().equals(key.getUniqueID());
 	}
 
 	public boolean inCache(RedisKey key) {
@@ -326,6 +349,10 @@ public class RedisCacheManager implements IRedisCacheManager {
 		RawMatrix r = this.redis.getRawMatrix(k);
 		return r;
 	}
+
+	public RawMatrix getRawMatrix(String k, long minRows) {
+		return this.redis.getRawMatrix(k, minRows);
+	}
 	
 	@Override
 	public IQueriesServer getQueryServer() {
@@ -142,7 +142,12 @@ public class RedisCacheManagerMock implements IRedisCacheManager {
 
 	public boolean isValid(RedisKey key) {
 		RedisKey check = getKey(key);
-		return check.getVersion() == key.getVersion() && check.getUniqueID() == key.getUniqueID();
+		return check.getVersion() == key.getVersion() && check.getUniqueID().equals(key.getUniqueID());
+	}
+
+	public boolean isCurrent(String key) {
+		// not tracking the issued keys
+		return false;
 	}
 
 	public boolean inCache(RedisKey key) {
@@ -164,6 +169,10 @@ public class RedisCacheManagerMock implements IRedisCacheManager {
 		return r;
 	}
 
+	public RawMatrix getRawMatrix(String k, long minRows) {
+		return this.redis.getRawMatrix(k, minRows);
+	}
+
 	@Override
 	public RawMatrix getDataLazy(String SQLQuery, List<String> dependencies, String RSjdbcURL, String username,
 			String pwd, int TTLinSec) throws InterruptedException {
@@ -25,6 +25,7 @@ package com.squid.kraken.v4.caching.redis;
 
 import java.io.IOException;
 import java.util.HashSet;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -53,6 +54,24 @@ public class RedisCacheProxy implements IRedisCacheProxy {
 	private JedisPool pool;
 	
 	private int maxSizeInByte = 52428800 ;  //50Megabytes
+
+	// KEYS are the counters, ARGV the seeds
+	private static final String GET_COUNTERS_SCRIPT = 
+			"local res = {} "
+			+ "for i, k in ipairs(KEYS) do "
+			+ "  local v = redis.call('get', k) "
+			+ "  if not v then redis.call('set', k, ARGV[i]) v = ARGV[i] end "
+			+ "  res[i] = v "
+			+ "end "
+			+ "return res";
+
+	private static final String INCR_COUNTERS_SCRIPT = 
+			"local res = {} "
+			+ "for i, k in ipairs(KEYS) do "
+			+ "  if redis.call('exists', k) == 0 then redis.call('set', k, ARGV[i]) end "
+			+ "  res[i] = tostring(redis.call('incr', k)) "
+			+ "end "
+			+ "return res";
 	
 	public static void setMock(){
 		isMock = true;
@@ -141,6 +160,10 @@ public class RedisCacheProxy implements IRedisCacheProxy {
 	//GET
 
 	public RawMatrix getRawMatrix(String key){
+		return getRawMatrix(key, -1);
+	}
+
+	public RawMatrix getRawMatrix(String key, long minRows){
 		try {
 			RedisCacheValue rcv = this.getRawOrList(key);
 			if (rcv == null){
@@ -150,7 +173,7 @@ public class RedisCacheProxy implements IRedisCacheProxy {
 					return (RawMatrix) rcv;
 				}else{
 					if (rcv instanceof RedisCacheValuesList){
-						return this.buildChunkedRawMatrix(key, (RedisCacheValuesList) rcv) ;
+						return this.buildChunkedRawMatrix(key, (RedisCacheValuesList) rcv, minRows) ;
 					}else{
 						throw new ComputingException();
 					}
@@ -212,7 +235,12 @@ public class RedisCacheProxy implements IRedisCacheProxy {
 	
 	
 	
-	private RawMatrix buildChunkedRawMatrix (String key, RedisCacheValuesList refList ) throws ComputingException, ClassNotFoundException, IOException{
+	/**
+	 * @param minRows
+	 *            if positive, stop as soon as we have that many rows even if
+	 *            the list is still ongoing
+	 */
+	private RawMatrix buildChunkedRawMatrix (String key, RedisCacheValuesList refList, long minRows ) throws ComputingException, ClassNotFoundException, IOException{
 		try (Jedis jedis  = getResourceFromPool()){	
 			
 			logger.info("Rebuilding chunked matrix from cache");
@@ -233,6 +261,11 @@ public class RedisCacheProxy implements IRedisCacheProxy {
 				}
 				if (currRef.isDone()){
 					done = true;
+				}else if (minRows>0 && res!=null && res.getRows().size()>=minRows){
+					logger.info("Returning the first "+res.getRows().size()+" rows, the query is still ongoing");
+					res.setMoreData(true);
+					res.setPending(true);
+					done = true;
 				}else{
 					byte[] serialized = jedis.get(key.getBytes());
 					size+=serialized.length;
@@ -304,6 +337,30 @@ public class RedisCacheProxy implements IRedisCacheProxy {
 		} 
 	}
 
+	// COUNTERS
+
+	public long[] getCounters(List<String> keys, List<String> seeds) {
+		return this.evalCounters(GET_COUNTERS_SCRIPT, keys, seeds);
+	}
+
+	public long[] incrCounters(List<String> keys, List<String> seeds) {
+		return this.evalCounters(INCR_COUNTERS_SCRIPT, keys, seeds);
+	}
+
+	private long[] evalCounters(String script, List<String> keys, List<String> seeds) {
+		try(Jedis jedis  = getResourceFromPool()) {
+			List<?> values = (List<?>) jedis.eval(script, keys, seeds);
+			long[] res = new long[values.size()];
+			for (int i = 0; i < res.length; i++) {
+				res[i] = Long.parseLong(values.get(i).toString());
+			}
+			return res;
+		} catch (RuntimeException e) {
+			logger.error("failed to eval counters on keys="+keys);
+			throw new RuntimeException("Jedis: eval counters failed on keys="+keys, e);
+		}
+	}
+
 	private Jedis getResourceFromPool() {
 		try {
 			return pool.getResource();
@@ -26,6 +26,7 @@ package com.squid.kraken.v4.caching.redis;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
@@ -69,6 +70,10 @@ public class RedisCacheProxyMock implements IRedisCacheProxy{
 		return true;
 	}
 
+	public RawMatrix getRawMatrix(String key, long minRows) {
+		return getRawMatrix(key);
+	}
+
 	public RawMatrix getRawMatrix(String key) {
 		byte[] serialized = cache.get(ByteBuffer.wrap(key.getBytes()));
 		try {
@@ -107,6 +112,28 @@ public class RedisCacheProxyMock implements IRedisCacheProxy{
 		// jedis.expire(key.getBytes(), ttl);
 	}
 
+	public synchronized long[] getCounters(List<String> keys, List<String> seeds) {
+		long[] res = new long[keys.size()];
+		for (int i = 0; i < res.length; i++) {
+			byte[] value = this.get(keys.get(i));
+			if (value == null) {
+				value = seeds.get(i).getBytes();
+				this.put(keys.get(i), value);
+			}
+			res[i] = Long.parseLong(new String(value));
+		}
+		return res;
+	}
+
+	public synchronized long[] incrCounters(List<String> keys, List<String> seeds) {
+		long[] current = this.getCounters(keys, seeds);
+		for (int i = 0; i < current.length; i++) {
+			current[i]++;
+			this.put(keys.get(i), Long.toString(current[i]));
+		}
+		return current;
+	}
+
 	@Override
 	public RedisCacheValue getRawOrList(String key) {
 		// TODO Auto-generated method stub
@@ -56,6 +56,7 @@ public class RawMatrix extends RedisCacheValue {
 	private transient ArrayList<Integer> colTypes;
 	private transient ArrayList<String> colNames;
 	private transient boolean moreData;
+	private transient boolean pending;// only the first rows of an ongoing query, never serialized
 
 	private transient Date executionDate = new Date();
 
@@ -142,6 +143,14 @@ public class RawMatrix extends RedisCacheValue {
 		this.moreData = moreData;
 	}
 
+	public boolean isPending() {
+		return pending;
+	}
+
+	public void setPending(boolean pending) {
+		this.pending = pending;
+	}
+
 	public void setColTypes(ArrayList<Integer> colTypes) {
 		this.colTypes = colTypes;
 	}
@@ -23,22 +23,41 @@
  *******************************************************************************/
 package com.squid.kraken.v4.caching.redis.generationalkeysserver;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.squid.kraken.v4.KrakenConfig;
 import com.squid.kraken.v4.caching.redis.IRedisCacheProxy;
 import com.squid.kraken.v4.caching.redis.ServerID;
 
 /**
  * abstract version to be used by both actual and mockup
+ * <p>
+ * Each name has a generation counter in Redis, which is incremented
+ * atomically by refresh(). A key is computed from the generation vector of
+ * its name and dependencies: the uniqueID is derived from the dependencies
+ * generations and the version is the name own generation, so no key record
+ * has to be written. A missing counter is initialized with a random seed, so
+ * an evicted counter can't go back to a previous generation.
+ * <p>
+ * Computed keys are kept in a bounded local cache for a short time
+ * (kraken.genkeys.cacheTtlMs), which bounds how long a refresh on another
+ * node may be ignored.
+ * 
  * @author sergefantino
  *
  */
@@ -50,44 +69,42 @@ public abstract class GenerationalKeysServerStandard implements IGenerationalKey
 	public static final String REDISKEY_VERSION = "";// use it as a kill switch to clear any cache when releasing a new version
     public static final String REDISKEY_PREFIX = "rediskey" + REDISKEY_VERSION + "-";
 
+    public static final String GENERATION_PREFIX = REDISKEY_PREFIX + "gen-";
+
+    private static final long CACHE_SIZE = Long
+            .parseLong(KrakenConfig.getProperty("kraken.genkeys.cacheSize", "10000"));
+
+    private static final long CACHE_TTL_MS = Long
+            .parseLong(KrakenConfig.getProperty("kraken.genkeys.cacheTtlMs", "1000"));
+
     private IRedisCacheProxy redis;
 
-    private ConcurrentHashMap<String, RedisKey> keys;
+    // the computed keys by name
+    private Cache<String, RedisKey> keys;
 
     public GenerationalKeysServerStandard(ServerID redisID) {
-        this.keys = new ConcurrentHashMap<String, RedisKey>();
+        this.keys = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE)
+                .expireAfterWrite(CACHE_TTL_MS, TimeUnit.MILLISECONDS).build();
         this.redis = initRedisService(redisID);
     }
     
     protected abstract IRedisCacheProxy initRedisService(ServerID redisID);
 
     public void start() {
-        logger.info("starting  Generational Keys Server V2");
+        logger.info("starting  Generational Keys Server V3");
     }
 
     public String hello() {
-        return "Hello Generational Keys Server V2";
+        return "Hello Generational Keys Server V3";
     }
 
     public RedisKey getKey(String id, Collection<String> dependencies) {
-        try {
-            RedisKey k = this.getExistingKey(id);
-            if (k == null) {
-            	k = this.createKey(id, dependencies);
-                return k;
-            }
-            if (isDependenciesChanged(k,dependencies)) {
-            	// create a new key
-            	k = this.createKey(id, dependencies);
-                return k;
-            }
-            if (!this.isFresh(k)) {
-                k = this.updateKey(k);
-            }
-            return k;
-        } catch (GenKeyException e) {
-            throw new RuntimeException(e);
+        RedisKey k = this.keys.getIfPresent(id);
+        if (k == null || isDependenciesChanged(k, dependencies)) {
+            k = this.computeKey(id, dependencies);
+            this.keys.put(id, k);
         }
+        return k;
     }
     
     private boolean isDependenciesChanged(RedisKey k, Collection<String> dependencies) {
@@ -115,155 +132,55 @@ public abstract class GenerationalKeysServerStandard implements IGenerationalKey
     
     @Override
     public boolean refresh(Collection<String> dependencies) {
-        for (String name : dependencies) {
-        	RedisKey k = this.getExistingKey(name);
-        	if (k ==null){
-        		try {
-					k = this.createKey(name, null);
-				} catch (GenKeyException e) {
-					logger.error("failed to refresh key for " + name +" with error:" + e.toString());
-					continue;
-				}
-            } else {
-                k.increaseVersion();;
-            }
-            this.saveKeyToRedis(k);
-            //logger.info("refreshed key for " + name + ": " + k.getStringKey());
+        List<String> names = new ArrayList<String>(new TreeSet<String>(dependencies));
+        if (names.isEmpty()) {
+            return true;
         }
+        this.redis.incrCounters(counters(names), seeds(names.size()));
+        // the keys computed from these generations are now obsolete
+        this.keys.invalidateAll();
         return true;
     }
-    
-    private RedisKey getExistingKey(String name){
-    	RedisKey k = this.keys.get(name);
-    	if (k!=null) {// got a key
-    		if (!k.getName().equals(name)) {
-    			// alert, it's not valid
-    			logger.error("inconsistent genkey found for key=" + name);
-    			return null;
-    		} else {
-    			// the normal way
-    			return k;
-    		}
-    	} else if (redis.inCache(REDISKEY_PREFIX + name)) { // k==null
-    		// the key is in Redis
-    		try {
-    			// got it
-				return this.retrieveKeyFromRedis(name);
-			} catch (GenKeyException e) {
-				// some error
-				logger.error("cannot retrieve genkey found for key=" + name, e);
-				return null;
-			}
-    	} else {
-    		// unknown key
-    		return null;
-    	}
-    }
-    
-    private HashMap<String, Integer> getGenDeps(Collection<String> names) throws GenKeyException {
-    	if (names == null)
-    		return null;
-        
-    	HashMap<String, Integer> res = new HashMap<String, Integer>();
-        
-    	if (names!=null) {
-	        HashSet<String> doneDeps = new HashSet<String>(names);
-	        for (String name: names) {
-	        	doneDeps.add(name);
-	        	RedisKey dep = this.getExistingKey(name);
-	        	if (dep == null)
-	        	{
-	                dep = this.createKey(name, null) ;
-	            }
-	        	res.put(name, new Integer(dep.getVersion())); 
-	        }
-    	}
-        
-        return res;
-    }
 
-    private void saveKeyToRedis(RedisKey toSave) {
-        String key = REDISKEY_PREFIX + toSave.getName();
-        try {
-            this.redis.put(key, toSave.toJson());
-        } catch (JsonProcessingException e) {
-            logger.error("failed to save key to redis: " + e.getMessage());
-            throw new RuntimeException(e);
+    /**
+     * compute the key from the current generations of its name and
+     * dependencies
+     */
+    private RedisKey computeKey(String id, Collection<String> dependencies) {
+        List<String> names = new ArrayList<String>();
+        names.add(id);
+        if (dependencies != null) {
+            // sorted, so that the vector doesn't depend on the collection
+            for (String dep : new TreeSet<String>(dependencies)) {
+                names.add(dep);
+            }
         }
-
-    }
-    
-    //private ConcurrentHashMap<String, RedisKey> reverseCheck = new ConcurrentHashMap<>();
-
-    private RedisKey retrieveKeyFromRedis(String name) throws GenKeyException {
-        String key = REDISKEY_PREFIX + name;
-        byte[] b = this.redis.get(key);
-        if (b != null) {
-        	RedisKey k = RedisKey.fromJson(new String(b)) ;
-        	this.keys.put(name, k);
-        	/*
-        	RedisKey check = reverseCheck.get(k.getStringKey());
-        	if (check!=null && !check.getName().equals(name)) {
-        	    logger.error("inconsistent genKey: we have a collision with " + check.getName());
-        	} else {
-        	    reverseCheck.put(k.getStringKey(), k);
-        	    logger.info("create genKey=" + k.getStringKey());
-        	}
-        	*/
-            return k;
-        } else {
-            throw new GenKeyException("cannot find redisKey '" + name +"'");
+        long[] generations = this.redis.getCounters(counters(names), seeds(names.size()));
+        HashMap<String, Integer> depGen = new HashMap<String, Integer>();
+        StringBuilder vector = new StringBuilder(REDISKEY_PREFIX).append(id);
+        for (int i = 1; i < names.size(); i++) {
+            depGen.put(names.get(i), (int) generations[i]);
+            vector.append('|').append(names.get(i)).append('=').append(generations[i]);
         }
+        UUID uniqueID = UUID.nameUUIDFromBytes(vector.toString().getBytes(StandardCharsets.UTF_8));
+        return new RedisKey(id, uniqueID, (int) generations[0], depGen);
     }
 
-    public boolean isFresh(RedisKey k) throws GenKeyException {
-    	//System.out.println("to check " +k.toString());
-    	RedisKey local = this.getExistingKey(k.getName());
-    	if (local == null){// SFA: can we ever go there?
-    		this.keys.put(k.getName(), k);
-    		return true;
-    	}else{
-    		//System.out.println("local copy " + local.toString());
-    		if (k.getVersion() != local.getVersion()){
-    			return false;
-    		}else{
-    			if (k.getDepGen() == null){
-    				return true;
-    			}else{
-    				for (String name : k.getDepGen().keySet()) {
-    					RedisKey dep = this.getExistingKey(name);
-    					if (dep == null){
-    						//throw new GenKeyException("dependency " + name + " cannot be found");
-    					    return false;
-    					}else{
-    						//System.out.println(dep.toString());
-    						if( ! k.getDepGen().get(name).equals(dep.getVersion())) {
-    							return false;
-    						}		
-    					}
-    				}
-    				return true;
-    			}
-    		}
-    	}
-    }
-
-    private RedisKey updateKey(RedisKey old) throws GenKeyException {
-    	HashMap<String, Integer> depVersions = this.getGenDeps(old.getDepGen().keySet());
-  
-        RedisKey newKey = new RedisKey(old.getName(), old.getUniqueID(), old.getVersion() + 1, depVersions);
-        this.keys.put(old.getName(), newKey);
-        this.saveKeyToRedis(newKey);
-        return newKey;
+    private List<String> counters(List<String> names) {
+        List<String> counters = new ArrayList<String>(names.size());
+        for (String name : names) {
+            counters.add(GENERATION_PREFIX + name);
+        }
+        return counters;
     }
 
-    private RedisKey createKey(String id, Collection<String> dependencies) throws GenKeyException {
-        UUID uniqueID = UUID.randomUUID();
-        HashMap<String, Integer> depVersions = this.getGenDeps(dependencies);
-        RedisKey newKey = new RedisKey(id, uniqueID, 0, depVersions);
-        this.keys.put(id, newKey);
-        this.saveKeyToRedis(newKey);
-        return newKey;
+    private List<String> seeds(int size) {
+        List<String> seeds = new ArrayList<String>(size);
+        for (int i = 0; i < size; i++) {
+            // keep some room for the increments
+            seeds.add(Integer.toString(ThreadLocalRandom.current().nextInt(1 << 30)));
+        }
+        return seeds;
     }
 
 }
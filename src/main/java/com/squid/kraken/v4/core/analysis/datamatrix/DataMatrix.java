@@ -23,6 +23,8 @@
  *******************************************************************************/
 package com.squid.kraken.v4.core.analysis.datamatrix;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -49,6 +51,7 @@ import com.squid.kraken.v4.caching.redis.datastruct.RawRow;
 import com.squid.kraken.v4.core.analysis.engine.hierarchy.DimensionIndex;
 import com.squid.kraken.v4.core.analysis.engine.hierarchy.DimensionMember;
 import com.squid.kraken.v4.core.analysis.engine.processor.ComputingException;
+import com.squid.kraken.v4.core.analysis.engine.processor.DataMatrixTransformScale;
 import com.squid.kraken.v4.core.analysis.engine.processor.DateExpressionAssociativeTransformationExtractor;
 import com.squid.kraken.v4.core.analysis.engine.query.mapping.AxisMapping;
 import com.squid.kraken.v4.core.analysis.engine.query.mapping.MeasureMapping;
@@ -84,6 +87,8 @@ public class DataMatrix {
 
 	// private int size = 0;
 	private boolean fullset = false;// only true if we read all the data
+	private boolean pending = false;// true if the query is still producing the data
+	private double sampleRate = 0;// if positive, the data are estimated from a sample of the rows
 	private boolean isSorted = false;// true when sorted
 
 	private Database database = null;// keep an eye on the database to check if
@@ -158,6 +163,8 @@ public class DataMatrix {
 		this.fromCache = parent.fromCache;
 		this.executionDate = parent.executionDate;
 		this.fullset = parent.fullset;
+		this.pending = parent.pending;
+		this.sampleRate = parent.sampleRate;
 		this.propertyToAlias = parent.propertyToAlias;
 		this.propertyToType = parent.propertyToType;
 		this.axesIndirection = parent.axesIndirection;
@@ -177,6 +184,7 @@ public class DataMatrix {
 		this.setExecutionDate(rawMatrix.getExecutionDate());
 		this.setRedisKey(rawMatrix.getRedisKey());
 		this.setFullset(!rawMatrix.hasMoreData());
+		this.setPending(rawMatrix.isPending());
 
 		// init mappings
 		axesIndirection = new int[mapper.getAxisMapping().size()];
@@ -319,6 +327,37 @@ public class DataMatrix {
 		this.fullset = fullset;
 	}
 
+	/**
+	 * @return true if this is only the first rows of a result still being
+	 *         computed
+	 */
+	public boolean isPending() {
+		return pending;
+	}
+
+	public void setPending(boolean pending) {
+		this.pending = pending;
+	}
+
+	/**
+	 * @return true if the data are estimated from a sample of the rows
+	 */
+	public boolean isApproximate() {
+		return sampleRate > 0;
+	}
+
+	/**
+	 * @return the fraction of the rows used to estimate the data, or 0 if the
+	 *         data are exact
+	 */
+	public double getSampleRate() {
+		return sampleRate;
+	}
+
+	public void setSampleRate(double sampleRate) {
+		this.sampleRate = sampleRate;
+	}
+
 	public boolean add(Measure data) {
 		return measures.add(new MeasureValues(data));
 	}
@@ -509,6 +548,55 @@ public class DataMatrix {
 												// view
 	}
 
+	/**
+	 * scale the additive measures (SUM and COUNT) of a sampled result by
+	 * 1/sampleRate; other measures are left as is (MIN, MAX, AVG are already
+	 * estimates)
+	 * 
+	 * @param sampleRate
+	 * @return a new approximate matrix
+	 */
+	public DataMatrix scale(double sampleRate) {
+		DataMatrix result = new DataMatrix(this);
+		result.setSampleRate(sampleRate);
+		List<Integer> additive = new ArrayList<>();
+		for (int i = 0; i < measures.size(); i++) {
+			if (DataMatrixTransformScale.isAdditive(measures.get(i).getMeasure().getDefinitionSafe())) {
+				additive.add(dataIndirection != null ? dataIndirection[i] : axes.size() + i);
+			}
+		}
+		double factor = 1 / sampleRate;
+		for (RawRow row : getRows()) {
+			if (additive.isEmpty()) {
+				result.pushRow(row);
+			} else {
+				// do not modify the row, it may be shared with the cache
+				Object[] data = row.data.clone();
+				for (int index : additive) {
+					data[index] = scaleValue(data[index], factor);
+				}
+				result.pushRow(new RawRow(data));
+			}
+		}
+		return result;
+	}
+
+	private Object scaleValue(Object value, double factor) {
+		if (value instanceof BigDecimal) {
+			return ((BigDecimal) value).multiply(BigDecimal.valueOf(factor));
+		} else if (value instanceof BigInteger) {
+			return new BigDecimal((BigInteger) value).multiply(BigDecimal.valueOf(factor)).toBigInteger();
+		} else if (value instanceof Long) {
+			return Math.round((Long) value * factor);
+		} else if (value instanceof Integer) {
+			return (int) Math.round((Integer) value * factor);
+		} else if (value instanceof Number) {
+			return ((Number) value).doubleValue() * factor;
+		} else {
+			return value;
+		}
+	}
+
 	/**
 	 * merge two matrix with different KPIs but must be on the same space
 	 * 
@@ -1128,6 +1216,8 @@ public class DataMatrix {
 		table.setFromSmartCache(isFromSmartCache());
 		table.setExecutionDate(getExecutionDate());
 		table.setFullset(this.fullset);
+		table.setPending(this.pending);
+		table.setSampleRate(this.sampleRate);
 
 		return table;
 	}
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright © Squid Solutions, 2016
+ *
+ * This file is part of Open Bouquet software.
+ *  
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ *
+ * There is a special FOSS exception to the terms and conditions of the 
+ * licenses as they are applied to this program. See LICENSE.txt in
+ * the directory of this program distribution.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * Squid Solutions also offers commercial licenses with additional warranties,
+ * professional functionalities or services. If you purchase a commercial
+ * license, then it supersedes and replaces any other agreement between
+ * you and Squid Solutions (above licenses and LICENSE.txt included).
+ * See http://www.squidsolutions.com/EnterpriseBouquet/
+ *******************************************************************************/
+package com.squid.kraken.v4.core.analysis.datamatrix;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.squid.kraken.v4.model.AnalyticsQuery;
+
+/**
+ * A converted DataMatrix page that is serialized by streaming the rows
+ * through the converter: the records are written straight to the response,
+ * without building the intermediate Object[] first.
+ */
+public class DataMatrixStream implements JsonSerializable {
+
+	private final IDataMatrixConverter<?> converter;
+
+	private final AnalyticsQuery query;
+
+	private final DataMatrix matrix;
+
+	public DataMatrixStream(IDataMatrixConverter<?> converter, AnalyticsQuery query, DataMatrix matrix) {
+		this.converter = converter;
+		this.query = query;
+		this.matrix = matrix;
+	}
+
+	/**
+	 * @return the number of records that will be written
+	 */
+	public int getSize() {
+		return converter.getSize(query, matrix);
+	}
+
+	@Override
+	public void serialize(JsonGenerator generator, SerializerProvider provider) throws IOException {
+		generator.writeStartArray();
+		converter.write(query, matrix, generator, provider);
+		generator.writeEndArray();
+	}
+
+	@Override
+	public void serializeWithType(JsonGenerator generator, SerializerProvider provider, TypeSerializer typeSer)
+			throws IOException {
+		serialize(generator, provider);
+	}
+
+	/**
+	 * the page first row index, according to the query startIndex
+	 */
+	public static int getStartIndex(AnalyticsQuery query) {
+		Integer startIndex = query.getStartIndex();
+		if (startIndex == null) {
+			startIndex = 0;
+		}
+		return Math.max(startIndex, 0);
+	}
+
+	/**
+	 * the page last row index (excluded), according to the query maxResults
+	 */
+	public static int getEndIndex(AnalyticsQuery query, DataMatrix matrix) {
+		int size = matrix.getRows().size();
+		Integer maxResults = query.getMaxResults();
+		if (maxResults == null) {
+			maxResults = size;
+		}
+		maxResults = Math.max(maxResults, 0);
+		return Math.min(size, getStartIndex(query) + maxResults);
+	}
+
+}
@@ -23,6 +23,10 @@
  *******************************************************************************/
 package com.squid.kraken.v4.core.analysis.datamatrix;
 
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
 import com.squid.kraken.v4.model.AnalyticsQuery;
 
 /**
@@ -39,5 +43,23 @@ public interface IDataMatrixConverter<Data> {
 	 * @return
 	 */
 	public Data convert(AnalyticsQuery query, DataMatrix matrix);
+	
+	/**
+	 * the number of records the conversion will output
+	 * @param query
+	 * @param matrix
+	 * @return
+	 */
+	public int getSize(AnalyticsQuery query, DataMatrix matrix);
+	
+	/**
+	 * write the converted records to the generator, one at a time, instead of building them in memory
+	 * @param query
+	 * @param matrix
+	 * @param generator
+	 * @param provider used to serialize the values
+	 * @throws IOException
+	 */
+	public void write(AnalyticsQuery query, DataMatrix matrix, JsonGenerator generator, SerializerProvider provider) throws IOException;
 
 }
@@ -237,6 +237,7 @@ public class Merger {
 		createMatrixAxes(merge);
 		createMatrixMeasures(merge);
 		merge.setFullset(left.isFullset() && right.isFullset());
+		merge.setSampleRate(Math.max(left.getSampleRate(), right.getSampleRate()));
 		return merge;
 	}
 	
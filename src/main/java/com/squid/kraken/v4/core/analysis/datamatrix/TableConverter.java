@@ -23,9 +23,12 @@
  *******************************************************************************/
 package com.squid.kraken.v4.core.analysis.datamatrix;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
 import com.squid.kraken.v4.caching.redis.datastruct.RawRow;
 import com.squid.kraken.v4.model.AnalyticsQuery;
 
@@ -75,4 +78,27 @@ public class TableConverter implements IDataMatrixConverter<Object[]> {
 		return records.toArray();
 	}
 
+	@Override
+	public int getSize(AnalyticsQuery query, DataMatrix matrix) {
+		return Math.max(0, DataMatrixStream.getEndIndex(query, matrix) - DataMatrixStream.getStartIndex(query));
+	}
+
+	@Override
+	public void write(AnalyticsQuery query, DataMatrix matrix, JsonGenerator generator, SerializerProvider provider)
+			throws IOException {
+		List<RawRow> rows = matrix.getRows();
+		int endIndex = DataMatrixStream.getEndIndex(query, matrix);
+		for (int rowIndex = DataMatrixStream.getStartIndex(query); rowIndex < endIndex; rowIndex++) {
+			RawRow row = rows.get(rowIndex);
+			generator.writeStartArray();
+			for (int i = 0; i < matrix.getAxes().size(); i++) {
+				provider.defaultSerializeValue(matrix.getAxisValue(i, row), generator);
+			}
+			for (int j = 0; j < matrix.getKPIs().size(); j++) {
+				provider.defaultSerializeValue(matrix.getDataValue(j, row), generator);
+			}
+			generator.writeEndArray();
+		}
+	}
+
 }
@@ -23,10 +23,13 @@
  *******************************************************************************/
 package com.squid.kraken.v4.core.analysis.datamatrix;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
 import com.squid.kraken.v4.caching.redis.datastruct.RawRow;
 import com.squid.kraken.v4.model.AnalyticsQuery;
 
@@ -98,4 +101,34 @@ public class TransposeConverter implements IDataMatrixConverter<Object[]> {
 		}
 		return records.toArray();
 	}
+
+	@Override
+	public int getSize(AnalyticsQuery query, DataMatrix matrix) {
+		int rows = Math.max(0, DataMatrixStream.getEndIndex(query, matrix) - DataMatrixStream.getStartIndex(query));
+		return rows * matrix.getKPIs().size();
+	}
+
+	@Override
+	public void write(AnalyticsQuery query, DataMatrix matrix, JsonGenerator generator, SerializerProvider provider)
+			throws IOException {
+		List<RawRow> rows = matrix.getRows();
+		int endIndex = DataMatrixStream.getEndIndex(query, matrix);
+		for (int rowIndex = DataMatrixStream.getStartIndex(query); rowIndex < endIndex; rowIndex++) {
+			RawRow row = rows.get(rowIndex);
+			int j = 0;
+			for (MeasureValues measure : matrix.getKPIs()) {
+				// one record per metric, repeating the axis values
+				generator.writeStartObject();
+				int i = 0;
+				for (AxisValues axis : matrix.getAxes()) {
+					generator.writeFieldName(axis.getAxis().getName());
+					provider.defaultSerializeValue(matrix.getAxisValue(i++, row), generator);
+				}
+				generator.writeStringField(metricSeriesColumn, measure.getMeasure().getName());
+				generator.writeFieldName(metricValueColumn);
+				provider.defaultSerializeValue(matrix.getDataValue(j++, row), generator);
+				generator.writeEndObject();
+			}
+		}
+	}
 }
@@ -49,6 +49,10 @@ public class BookmarkManager {
 	
 	public static final BookmarkManager INSTANCE = new BookmarkManager();
 	
+	// configured once, ObjectMapper is thread-safe for reading
+	private static final ObjectMapper mapper = new ObjectMapper()
+			.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+	
 	private BookmarkDAO delegate = (BookmarkDAO)DAOFactory.getDAOFactory().getDAO(Bookmark.class);
 	
 	private BookmarkManager() {
@@ -59,8 +63,6 @@ public class BookmarkManager {
 	
 	public BookmarkConfig readConfig(Bookmark bookmark) throws ScopeException {
 		if (bookmark==null) return null;
-		ObjectMapper mapper = new ObjectMapper();
-		mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 		try {
 			BookmarkConfig config = mapper.readValue(bookmark.getConfig(), BookmarkConfig.class);
 			return config;
@@ -71,8 +73,6 @@ public class BookmarkManager {
 	
 	public BookmarkConfig readConfig(State state) throws ScopeException {
 		if (state==null) return null;
-		ObjectMapper mapper = new ObjectMapper();
-		mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 		try {
 			BookmarkConfig config = mapper.readValue(state.getConfig(), BookmarkConfig.class);
 			return config;
@@ -85,8 +85,16 @@ public class BookmarkManager {
 		return delegate.read(userContext, bookmarkPk);
 	}
 	
+	/**
+	 * list the bookmarks under the parent path; the bookmarks are lightweight
+	 * views, the config is not loaded
+	 * 
+	 * @param userContext
+	 * @param parentPath
+	 * @return
+	 */
 	public List<Bookmark> findBookmarksByParent(AppContext userContext, String parentPath) {
-		return delegate.findByPath(userContext, parentPath);
+		return delegate.findViewByPath(userContext, parentPath);
 	}
 
 	public String getMyBookmarkPath(AppContext ctx) {
@@ -24,12 +24,24 @@
 package com.squid.kraken.v4.core.analysis.engine.cache;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.squid.core.expression.scope.ScopeException;
+import com.squid.kraken.v4.KrakenConfig;
 import com.squid.kraken.v4.api.core.ServiceUtils;
 import com.squid.kraken.v4.caching.redis.RedisCacheManager;
 import com.squid.kraken.v4.core.analysis.engine.hierarchy.DimensionIndex;
@@ -65,14 +77,39 @@ import com.squid.kraken.v4.persistence.DataStoreEventObserver;
 
 /**
  * Observes the Meta-Model and invalidates the impacted caches if needed.
+ * <p>
+ * Events are coalesced per project over a short window, so that a bulk model
+ * edit only refreshes each key once. The pending events for a project are
+ * flushed before its content, database or hierarchies are read, and before
+ * checking a cached result generation.
  */
 public class MetaModelObserver implements DataStoreEventObserver {
 
 	static final Logger logger = LoggerFactory
 			.getLogger(MetaModelObserver.class);
 
+	// the time window to coalesce the events, 0 to apply them synchronously
+	private static final long COALESCE_MS = Long
+			.parseLong(KrakenConfig.getProperty("kraken.metamodel.coalesceMs", "100"));
+
+	// don't get inherited PK
+	private static final Set<Class<?>> HANDLED = new HashSet<Class<?>>(Arrays.asList(ProjectPK.class,
+			RelationPK.class, DomainPK.class, DimensionPK.class, AttributePK.class, MetricPK.class));
+
 	private static MetaModelObserver instance;
 
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "MetaModelObserver-flush");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	// the pending events per project, in order, guarded by itself
+	private final Map<ProjectPK, Map<GenericPK, DataStoreEvent>> pending = new HashMap<ProjectPK, Map<GenericPK, DataStoreEvent>>();
+
 	public static synchronized MetaModelObserver getInstance() {
 		if (instance == null) {
 			instance = new MetaModelObserver();
@@ -107,6 +144,98 @@ public class MetaModelObserver implements DataStoreEventObserver {
 
 	@Override
 	public void notifyEvent(DataStoreEvent event) {
+		//
+		if (acceptEvent(event)) {
+			GenericPK sourcePk = getSourcePk(event);
+			if (!HANDLED.contains(sourcePk.getClass())) {
+				return;
+			}
+			if (COALESCE_MS <= 0) {
+				Set<String> refresh = new LinkedHashSet<String>();
+				apply(event, refresh);
+				refresh(refresh);
+				return;
+			}
+			// all the handled PKs are inheriting ProjectPK
+			ProjectPK projectPk = new ProjectPK(sourcePk.getCustomerId(), ((ProjectPK) sourcePk).getProjectId());
+			boolean schedule = false;
+			synchronized (pending) {
+				Map<GenericPK, DataStoreEvent> batch = pending.get(projectPk);
+				if (batch == null) {
+					batch = new LinkedHashMap<GenericPK, DataStoreEvent>();
+					pending.put(projectPk, batch);
+					schedule = true;
+				}
+				// only the last event for a given object matters
+				batch.remove(sourcePk);
+				batch.put(sourcePk, event);
+			}
+			if (schedule) {
+				final ProjectPK key = projectPk;
+				scheduler.schedule(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							flush(key);
+						} catch (Exception e) {
+							logger.error("failed to apply metamodel invalidations for project " + key, e);
+						}
+					}
+				}, COALESCE_MS, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	/**
+	 * apply the pending invalidations for the project right away, if any.
+	 * This must be called before reading the project content so that a
+	 * reader never sees the model as it was before a pending change.
+	 * 
+	 * @param projectPk
+	 */
+	public void flush(ProjectPK projectPk) {
+		Map<GenericPK, DataStoreEvent> batch;
+		synchronized (pending) {
+			if (pending.isEmpty()) {
+				return;
+			}
+			batch = pending.remove(new ProjectPK(projectPk.getCustomerId(), projectPk.getProjectId()));
+		}
+		if (batch != null) {
+			// the batch is removed before it is applied, so it's safe if
+			// applying it reads the project again
+			Set<String> refresh = new LinkedHashSet<String>();
+			for (DataStoreEvent event : batch.values()) {
+				apply(event, refresh);
+			}
+			refresh(refresh);
+			if (logger.isDebugEnabled()) {
+				logger.debug("applied " + batch.size() + " metamodel events for project " + projectPk + ", refreshing "
+						+ refresh.size() + " keys");
+			}
+		}
+	}
+
+	private void refresh(Set<String> refresh) {
+		if (!refresh.isEmpty()) {
+			RedisCacheManager.getInstance().refresh(new ArrayList<String>(refresh));
+		}
+	}
+
+	private GenericPK getSourcePk(DataStoreEvent event) {
+		Object sourceEvent = event.getSource();
+		if (sourceEvent instanceof Persistent) {
+			return ((Persistent<?>) sourceEvent).getId();
+		} else {
+			return (GenericPK) sourceEvent;
+		}
+	}
+
+	/**
+	 * apply the event: the invalidations that must be done right away are
+	 * performed, and the redis keys to refresh are collected
+	 */
+	private void apply(DataStoreEvent event, Set<String> refresh) {
 		//
 		if (acceptEvent(event)) {
 			DomainPK domainId = null;
@@ -139,7 +268,7 @@ public class MetaModelObserver implements DataStoreEventObserver {
 						}
 		        	} else {
 		        		// soft refresh ?
-				        RedisCacheManager.getInstance().refresh(projectPK.toUUID());
+				        refresh.add(projectPK.toUUID());
 		        	}
 	        	}
 			}
@@ -162,9 +291,7 @@ public class MetaModelObserver implements DataStoreEventObserver {
 	                if (relation!=null && relation.getRightId()!=null) {
 						refreshList.add(relation.getRightId().toUUID());
 	                }
-					if (!refreshList.isEmpty()) {
-		                RedisCacheManager.getInstance().refresh(refreshList);
-					}
+					refresh.addAll(refreshList);
 		        }
 			}
 
@@ -173,7 +300,7 @@ public class MetaModelObserver implements DataStoreEventObserver {
 				domainId = (DomainPK) sourcePk;
 		        Project project = peekProject(domainId.getParent(), sourceObject);
 		        if (project!=null) {
-		        	ProjectManager.INSTANCE.refreshDomain(domainId);
+		        	refresh.addAll(ProjectManager.INSTANCE.getRefreshDomainKeys(domainId));
 		        }
 			}
 			
@@ -211,7 +338,7 @@ public class MetaModelObserver implements DataStoreEventObserver {
 		        	}
 		        	//
 		        	// final refresh
-	        		RedisCacheManager.getInstance().refresh(refreshList);
+	        		refresh.addAll(refreshList);
 		        }
 			}
 
@@ -225,7 +352,9 @@ public class MetaModelObserver implements DataStoreEventObserver {
                 //
 				Project project = peekProject(domainId.getParent(), sourceObject);
 				if (project!=null) {
-					RedisCacheManager.getInstance().refresh(domainId.toUUID(), dim.toUUID(), attr.toUUID());
+					refresh.add(domainId.toUUID());
+					refresh.add(dim.toUUID());
+					refresh.add(attr.toUUID());
 				}
             }
 
@@ -238,7 +367,8 @@ public class MetaModelObserver implements DataStoreEventObserver {
             	Project project = peekProject(domainId.getParent(), sourceObject);
             	if (project!=null) {
             		// no need to update the domain
-            		RedisCacheManager.getInstance().refresh(domainId.toUUID(), id.toUUID());
+            		refresh.add(domainId.toUUID());
+            		refresh.add(id.toUUID());
             	}
             }
 		}
@@ -39,6 +39,7 @@ import com.squid.kraken.v4.ESIndexFacade.ESIndexFacadeException;
 import com.squid.kraken.v4.api.core.ServiceUtils;
 import com.squid.kraken.v4.api.core.attribute.AttributeServiceBaseImpl;
 import com.squid.kraken.v4.caching.redis.RedisCacheProxy;
+import com.squid.kraken.v4.core.analysis.engine.index.DimensionMemberIterator;
 import com.squid.kraken.v4.core.analysis.engine.index.DimensionStore;
 import com.squid.kraken.v4.core.analysis.engine.index.DimensionStoreException;
 import com.squid.kraken.v4.core.analysis.engine.index.DimensionStoreManagerFactory;
@@ -384,20 +385,41 @@ public class DimensionIndex {
 	}
 
     public DimensionMember getMemberByKey(String key) {
+        DimensionIndexUsage.INSTANCE.recordLookup(this);
         return this.getStore().getMemberByKey(key);
     }
 
+    /**
+     * resolve several members at once
+     * @param keys
+     * @return the members indexed by key; unknown keys are ignored
+     */
+    public Map<String, DimensionMember> getMembersByKeys(Collection<String> keys) {
+        DimensionIndexUsage.INSTANCE.recordLookup(this);
+        return this.getStore().getMembersByKeys(keys);
+    }
+
     public List<DimensionMember> getMembers(int offset, int size) {
+        DimensionIndexUsage.INSTANCE.recordLookup(this);
         return this.getStore().getMembers(offset,size);
     }
 
     public List<DimensionMember> getMembers(String filter, int offset, int size) {
+        DimensionIndexUsage.INSTANCE.recordLookup(this);
         return this.getStore().getMembers(filter, offset,size);
     }
 	
 	public List<DimensionMember> getMembers() {
 	    return this.getStore().getMembers();
 	}
+	
+	/**
+	 * walk the whole dimension in constant memory; the iterator must be closed if not exhausted
+	 * @return
+	 */
+	public DimensionMemberIterator iterateMembers() {
+	    return this.getStore().iterateMembers();
+	}
 
     public String index(List<DimensionMember> members, boolean wait) throws IndexationException{
         return this.getStore().index(members, wait);
@@ -429,6 +451,14 @@ public class DimensionIndex {
     public int getSize() {
         return this.getStore().getSize();
     }
+    
+    /**
+     * count the members without reading them
+     * @return
+     */
+    public long countMembers() {
+        return this.getStore().countMembers();
+    }
 
     public DimensionMember index(Object[] raw) {
         return this.getStore().index(raw);
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright © Squid Solutions, 2016
+ *
+ * This file is part of Open Bouquet software.
+ *  
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ *
+ * There is a special FOSS exception to the terms and conditions of the 
+ * licenses as they are applied to this program. See LICENSE.txt in
+ * the directory of this program distribution.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * Squid Solutions also offers commercial licenses with additional warranties,
+ * professional functionalities or services. If you purchase a commercial
+ * license, then it supersedes and replaces any other agreement between
+ * you and Squid Solutions (above licenses and LICENSE.txt included).
+ * See http://www.squidsolutions.com/EnterpriseBouquet/
+ *******************************************************************************/
+package com.squid.kraken.v4.core.analysis.engine.hierarchy;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.squid.kraken.v4.model.DimensionPK;
+
+/**
+ * Keep track of how often each dimension is actually used (member lookups,
+ * facet requests), so that the DomainHierarchyCompute can build the most
+ * demanded indexes first.
+ * <p>
+ * The statistics are keyed by DimensionPK so they survive the hierarchy
+ * invalidation on model changes.
+ */
+public class DimensionIndexUsage {
+
+	public static final DimensionIndexUsage INSTANCE = new DimensionIndexUsage();
+
+	// a facet request is a stronger signal than a single member lookup
+	public static final int FACET_WEIGHT = 10;
+
+	private final ConcurrentHashMap<DimensionPK, AtomicLong> usage = new ConcurrentHashMap<DimensionPK, AtomicLong>();
+
+	private DimensionIndexUsage() {
+	}
+
+	public void recordLookup(DimensionIndex index) {
+		record(index, 1);
+	}
+
+	public void recordFacet(DimensionIndex index) {
+		record(index, FACET_WEIGHT);
+	}
+
+	public long getUsage(DimensionPK dimension) {
+		AtomicLong counter = usage.get(dimension);
+		return counter != null ? counter.get() : 0;
+	}
+
+	/**
+	 * order dimensions by decreasing usage; the usage of the dimensions is
+	 * read once when creating the comparator, since the live counters may
+	 * change while sorting and break the comparator contract
+	 * 
+	 * @param dimensions
+	 *            the dimensions to sort
+	 */
+	public Comparator<DimensionPK> byDemand(Collection<DimensionPK> dimensions) {
+		final HashMap<DimensionPK, Long> snapshot = new HashMap<DimensionPK, Long>();
+		for (DimensionPK dimension : dimensions) {
+			snapshot.put(dimension, getUsage(dimension));
+		}
+		return new Comparator<DimensionPK>() {
+			@Override
+			public int compare(DimensionPK o1, DimensionPK o2) {
+				return Long.compare(getSnapshot(o2), getSnapshot(o1));
+			}
+
+			private long getSnapshot(DimensionPK dimension) {
+				Long value = snapshot.get(dimension);
+				return value != null ? value : 0;
+			}
+		};
+	}
+
+	private void record(DimensionIndex index, int weight) {
+		if (index instanceof DimensionIndexProxy) {
+			// the source index is the one to build
+			index = ((DimensionIndexProxy) index).getSourceIndex();
+		}
+		if (index == null || index.getDimension() == null) {
+			return;
+		}
+		DimensionPK pk = index.getDimension().getId();
+		AtomicLong counter = usage.get(pk);
+		if (counter == null) {
+			AtomicLong previous = usage.putIfAbsent(pk, counter = new AtomicLong());
+			if (previous != null) {
+				counter = previous;
+			}
+		}
+		counter.addAndGet(weight);
+	}
+
+}
@@ -37,6 +37,7 @@ import java.util.concurrent.TimeoutException;
 import com.squid.core.domain.IDomain;
 import com.squid.core.expression.scope.ScopeException;
 import com.squid.kraken.v4.core.analysis.engine.hierarchy.DimensionIndex.Status;
+import com.squid.kraken.v4.core.analysis.engine.index.DimensionMemberIterator;
 import com.squid.kraken.v4.core.analysis.engine.processor.ComputingException;
 import com.squid.kraken.v4.core.analysis.model.DashboardSelection;
 import com.squid.kraken.v4.core.analysis.universe.Axis;
@@ -97,6 +98,7 @@ public class DomainFacetCompute extends FacetBuilder {
 		//
 		DomainHierarchy hierarchy = universe.getDomainHierarchy(domain, true);
 		DimensionIndex index = hierarchy.getDimensionIndex(axis);
+		DimensionIndexUsage.INSTANCE.recordFacet(index);
 		DomainHierarchyManager.INSTANCE.computeIndex(domain.getId(), index);
 		//
 		if (index.getStatus() == Status.STALE) {
@@ -262,8 +264,18 @@ public class DomainFacetCompute extends FacetBuilder {
 		}
 		if (selections.isEmpty()) {
 			if (index.getDimension().getType() == com.squid.kraken.v4.model.Dimension.Type.CONTINUOUS) {
-				List<DimensionMember> all = index.getMembers();
-				return all;
+				// iterate only up to the requested page
+				List<DimensionMember> page = new ArrayList<>();
+				try (DimensionMemberIterator members = index.iterateMembers()) {
+					int position = 0;
+					while (page.size() < size && members.hasNext()) {
+						DimensionMember member = members.next();
+						if (position++ >= offset) {
+							page.add(member);
+						}
+					}
+				}
+				return page;
 			} else {
 				if (filter == null || filter == "") { // T61: turn off for now
 					return index.getMembers(offset, size);
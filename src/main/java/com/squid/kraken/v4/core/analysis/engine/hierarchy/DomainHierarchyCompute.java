@@ -24,6 +24,7 @@
 package com.squid.kraken.v4.core.analysis.engine.hierarchy;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -39,6 +40,7 @@ import org.slf4j.LoggerFactory;
 import com.squid.core.concurrent.ExecutionManager;
 import com.squid.core.expression.scope.ScopeException;
 import com.squid.core.sql.model.SQLScopeException;
+import com.squid.kraken.v4.KrakenConfig;
 import com.squid.kraken.v4.caching.redis.queryworkerserver.QueryWorkerJobStatus;
 import com.squid.kraken.v4.core.analysis.engine.hierarchy.DimensionIndex.Status;
 import com.squid.kraken.v4.core.analysis.engine.query.HierarchyQuery;
@@ -56,9 +58,18 @@ public class DomainHierarchyCompute extends DomainHierarchyQueryGenerator {
 
 	private DomainHierarchy hierarchy;
 
+	// max number of eager index builds running at the same time for a
+	// domain
+	private static final int MAX_CONCURRENT_EAGER = Integer
+			.parseInt(KrakenConfig.getProperty("kraken.hierarchy.maxConcurrentEager", "2"));
+
 	private HashMap<DimensionPK, ExecuteHierarchyQuery> jobLookup;
 	private List<ExecuteHierarchyQuery> ongoingQueries;
 
+	// eager indexes not yet submitted, guarded by itself
+	private final ArrayList<DimensionPK> pendingEager = new ArrayList<DimensionPK>();
+	private int runningEager = 0;
+
 	public DomainHierarchyCompute(DomainHierarchy hierarchy) {
 		super(hierarchy);
 
@@ -117,17 +128,75 @@ public class DomainHierarchyCompute extends DomainHierarchyQueryGenerator {
 		}
 	}
 
+	/**
+	 * start computing the eager indexes, the most used dimensions first; at
+	 * most MAX_CONCURRENT_EAGER builds are running at the same time, the
+	 * remaining ones are submitted as the previous complete or when a user is
+	 * waiting for them.
+	 */
 	public void computeEagerIndexes() {
-		for (DimensionPK di : this.eagerIndexing) {
-			this.computeIndex(di);
+		ArrayList<DimensionPK> ordered = new ArrayList<DimensionPK>(this.eagerIndexing);
+		Collections.sort(ordered, DimensionIndexUsage.INSTANCE.byDemand(ordered));
+		synchronized (pendingEager) {
+			pendingEager.addAll(ordered);
 		}
+		submitPendingEager();
 	}
 
 	public boolean computeIndex(DimensionIndex index) {
-		return this.computeIndex(index.getDimension().getId());
+		DimensionPK pk = index.getDimension().getId();
+		synchronized (pendingEager) {
+			// promote: a user needs it now
+			pendingEager.remove(pk);
+		}
+		this.computeIndex(pk, false);
+		return this.hierarchy.getState() != DomainHierarchy.State.CANCELLED;
+	}
+
+	/**
+	 * submit the pending eager indexes, by order of demand, up to the
+	 * concurrency limit
+	 */
+	private void submitPendingEager() {
+		while (true) {
+			DimensionPK next;
+			synchronized (pendingEager) {
+				if (pendingEager.isEmpty() || runningEager >= MAX_CONCURRENT_EAGER) {
+					return;
+				}
+				// re-sort since the usage may have changed meanwhile
+				Collections.sort(pendingEager, DimensionIndexUsage.INSTANCE.byDemand(pendingEager));
+				next = pendingEager.remove(0);
+				runningEager++;
+			}
+			boolean submitted = false;
+			try {
+				submitted = this.computeIndex(next, true);
+			} finally {
+				if (!submitted) {
+					// already computed with another dimension
+					releaseEagerSlot();
+				}
+			}
+		}
 	}
 
-	private boolean computeIndex(DimensionPK index) {
+	private void releaseEagerSlot() {
+		synchronized (pendingEager) {
+			runningEager--;
+		}
+	}
+
+	/**
+	 * submit the query for that dimension
+	 * 
+	 * @param index
+	 * @param eager
+	 *            if true, the query holds an eager slot that will be released
+	 *            on completion
+	 * @return true if a new query has been submitted
+	 */
+	private boolean computeIndex(DimensionPK index, boolean eager) {
 		if (this.hierarchy.getState() == DomainHierarchy.State.CANCELLED) {
 			// if prepareQueries() fails...
 			return false;
@@ -139,7 +208,7 @@ public class DomainHierarchyCompute extends DomainHierarchyQueryGenerator {
 		synchronized (this.queries) {
 			hq = this.queries.remove(index);
 			if (hq == null) {
-				return true;
+				return false;
 			} else {
 
 				ArrayList<DimensionPK> diList = new ArrayList<DimensionPK>(this.queries.keySet());
@@ -153,6 +222,15 @@ public class DomainHierarchyCompute extends DomainHierarchyQueryGenerator {
 		}
 		String customerId = hq.getSelect().getUniverse().getProject().getCustomerId();
 		ExecuteHierarchyQuery newQuery = new ExecuteHierarchyQuery(hq);
+		if (eager) {
+			newQuery.setOnCompletion(new Runnable() {
+				@Override
+				public void run() {
+					releaseEagerSlot();
+					submitPendingEager();
+				}
+			});
+		}
 		Future<ExecuteHierarchyQueryResult> future = ExecutionManager.INSTANCE.submit(customerId, newQuery);
 		// keep an eye on it
 		newQuery.setJob(future);
@@ -178,6 +256,11 @@ public class DomainHierarchyCompute extends DomainHierarchyQueryGenerator {
 	public boolean isDone(Integer timeoutMs) throws InterruptedException, TimeoutException, ExecutionException {
 		if (this.queries == null)
 			return false;
+		if (timeoutMs == null || timeoutMs > 0) {
+			// the user is blocking on the whole hierarchy, don't hold back
+			// the pending eager indexes
+			promotePendingEager();
+		}
 		if (!this.queries.isEmpty()) {
 			return false;
 		} else {
@@ -218,8 +301,15 @@ public class DomainHierarchyCompute extends DomainHierarchyQueryGenerator {
 			return false;
 
 		ExecuteHierarchyQuery ehq = jobLookup.get(index.getDimension().getId());
-		if (ehq == null)
+		if (ehq == null && timeoutMs != null && timeoutMs == 0)
 			return false;
+		if (ehq == null) {
+			// the user is waiting for it: promote the index if still pending
+			computeIndex(index);
+			ehq = jobLookup.get(index.getDimension().getId());
+			if (ehq == null)
+				return false;
+		}
 
 		Future<ExecuteHierarchyQueryResult> job = ehq.getJob();
 		if (job == null)
@@ -240,10 +330,24 @@ public class DomainHierarchyCompute extends DomainHierarchyQueryGenerator {
 		return (index.getStatus() == Status.DONE || index.getStatus() == Status.ERROR);
 	}
 
+	private void promotePendingEager() {
+		ArrayList<DimensionPK> promoted;
+		synchronized (pendingEager) {
+			promoted = new ArrayList<DimensionPK>(pendingEager);
+			pendingEager.clear();
+		}
+		for (DimensionPK pk : promoted) {
+			this.computeIndex(pk, false);
+		}
+	}
+
 	/**
 	 * cancel the jobs execution
 	 */
 	public void cancel() {
+		synchronized (pendingEager) {
+			pendingEager.clear();
+		}
 		if (ongoingQueries != null) {
 			for (ExecuteHierarchyQuery query : ongoingQueries) {
 				if (query.getJob() != null)
@@ -35,6 +35,7 @@ import org.slf4j.LoggerFactory;
 import com.squid.core.expression.scope.ScopeException;
 import com.squid.kraken.v4.api.core.ServiceUtils;
 import com.squid.kraken.v4.caching.redis.queryworkerserver.QueryWorkerJobStatus;
+import com.squid.kraken.v4.core.analysis.engine.cache.MetaModelObserver;
 import com.squid.kraken.v4.core.analysis.engine.index.DimensionStoreManagerFactory;
 import com.squid.kraken.v4.core.analysis.engine.processor.ComputingException;
 import com.squid.kraken.v4.core.analysis.engine.project.ProjectManager;
@@ -160,6 +161,8 @@ public class DomainHierarchyManager {
 	 */
 	protected DomainHierarchy getHierarchy(ProjectPK projectPk, Domain domain, int timeoutMs, boolean lazy)
 			throws ComputingException, InterruptedException {
+		// apply the pending metamodel invalidations first
+		MetaModelObserver.getInstance().flush(projectPk);
 		try {
 			DomainHierarchy hierarchy = hierarchies.get(domain.getId());
 			ReentrantLock lock = null;
@@ -30,7 +30,6 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
@@ -44,7 +43,6 @@ import com.squid.core.sql.render.RenderingException;
 import com.squid.kraken.v4.caching.redis.RedisCacheManager;
 import com.squid.kraken.v4.caching.redis.queryworkerserver.QueryWorkerJobStatus;
 import com.squid.kraken.v4.core.analysis.datamatrix.AxisValues;
-import com.squid.kraken.v4.core.analysis.engine.index.IndexationException;
 import com.squid.kraken.v4.core.analysis.engine.query.HierarchyQuery;
 import com.squid.kraken.v4.core.analysis.engine.query.mapping.DimensionMapping;
 import com.squid.kraken.v4.core.analysis.engine.query.mapping.SimpleMapping;
@@ -71,10 +69,14 @@ public class ExecuteHierarchyQuery implements CancellableCallable<ExecuteHierarc
 
 	private ExecuteQueryTask executeQueryTask;
 
+	private volatile HierarchyIndexingPipeline pipeline;
+
 	public State state;
 
 	private Future<ExecuteHierarchyQueryResult> job;
 
+	private volatile Runnable onCompletion;
+
 	// to fill in the Status
 	private int itemId = -1;
 	private long metter_start;
@@ -106,6 +108,14 @@ public class ExecuteHierarchyQuery implements CancellableCallable<ExecuteHierarc
 		this.job = job;
 	}
 
+	/**
+	 * set a callback to run once the query is completed, whatever the outcome
+	 * @param onCompletion
+	 */
+	public void setOnCompletion(Runnable onCompletion) {
+		this.onCompletion = onCompletion;
+	}
+
 	public Future<ExecuteHierarchyQueryResult> getJob() {
 		return job;
 	}
@@ -123,6 +133,9 @@ public class ExecuteHierarchyQuery implements CancellableCallable<ExecuteHierarc
 		if (executeQueryTask != null) {
 			executeQueryTask.cancel();
 		}
+		if (pipeline != null) {
+			pipeline.cancel();
+		}
 	}
 
 	public boolean isOngoing() {
@@ -164,15 +177,13 @@ public class ExecuteHierarchyQuery implements CancellableCallable<ExecuteHierarc
 	public ExecuteHierarchyQueryResult call() throws Exception {
 		//
 
-		HashMap<DimensionIndex, String> lastIndexedDimension = new HashMap<DimensionIndex, String>();
-		HashMap<DimensionIndex, String> lastIndexedCorrelation = new HashMap<DimensionIndex, String>();
-
 		this.state = State.ONGOING_EXECUTION;
 		ExecutionManager.INSTANCE.registerTask(this);
 		//
 		List<DimensionMapping> dx_map = query.getDimensionMapping();
 		long metter_start = (new Date()).getTime();
 		IExecutionItem item = null;
+		HierarchyIndexingPipeline pipeline = null;
 		//
 		try {
 			SelectUniversal select = query.getSelect();
@@ -219,6 +230,11 @@ public class ExecuteHierarchyQuery implements CancellableCallable<ExecuteHierarc
 				pos.add(i);// add the child
 				type.add(index);
 			}
+			// start the indexing lanes: this thread is now only reading the
+			// resultset
+			pipeline = new HierarchyIndexingPipeline(dx_map, hierarchies_pos, hierarchies_type);
+			this.pipeline = pipeline;
+			pipeline.start();
 			//
 			this.count = 0;
 			int maxRecords = -1;
@@ -226,8 +242,12 @@ public class ExecuteHierarchyQuery implements CancellableCallable<ExecuteHierarc
 			ArrayList<DimensionMember[]> rowBuffer = new ArrayList<>(bufferCommitSize);
 			@SuppressWarnings("unchecked")
 			ArrayList<DimensionMember>[] indexBuffer = new ArrayList[dx_map.size()];
+			// the last full buffer is kept pending until we know if it is the
+			// last one, because the store only tracks completion for the
+			// batches pushed with wait=true (first & last)
+			ArrayList<DimensionMember[]> pendingRowBuffer = null;
+			ArrayList<DimensionMember>[] pendingIndexBuffer = null;
 
-			long timeSpentInLoopWithES = 0;
 			long timeSpentInLoopWithBD = 0;
 			
 			// to detected proper end of indexation;
@@ -249,10 +269,10 @@ public class ExecuteHierarchyQuery implements CancellableCallable<ExecuteHierarc
 					// count + "items, still running at "+speed+ "row/s");
 					logger.info("reading SQLQuery#" + item.getID() + " proceeded " + count + "items, still running at "
 							+ speed + "row/s" + " method=executeQuery" + " duration= " + " speed=" + speed
-							+ "ES Time =" + timeSpentInLoopWithES 
+							+ "ES Time =" + pipeline.getTimeSpentInStore()
 							+"ms, DB Time ="+timeSpentInLoopWithBD
-							+ "ms, time ratio ES/DB =" +( ((double)timeSpentInLoopWithES)/((double) timeSpentInLoopWithBD)  )
-							+ " error=false status=reading queryid=" + item.getID() + " task="
+							+"ms, Stall Time ="+pipeline.getTimeSpentWaiting()
+							+ "ms error=false status=reading queryid=" + item.getID() + " task="
 							+ this.getClass().getName());
 
 				}
@@ -301,39 +321,40 @@ public class ExecuteHierarchyQuery implements CancellableCallable<ExecuteHierarc
 				
 				// flush buffer ?
 				if (rowBuffer.size() == bufferCommitSize) {
-					long startES = new Date().getTime();
-					// commit the index buffers
-					this.flushDimensionBuffer(dx_map, indexBuffer, lastIndexedDimension, wait);
-					// map the correlation
-
-					this.flushCorrelationBuffer(dx_map, hierarchies_pos, hierarchies_type, rowBuffer, indexBuffer,
-							lastIndexedCorrelation, wait);
-					
-					// only check ES state for the first batch
-					if (wait) {
-						wait = false;
+					if (pendingRowBuffer != null) {
+						// hand over the previous buffer to the indexing lanes
+						pipeline.push(pendingRowBuffer, pendingIndexBuffer, wait);
+						// only check ES state for the first batch
+						if (wait) {
+							wait = false;
+						}
 					}
-					// clear buffers
-					rowBuffer.clear();
+					// the lanes own the buffers now, so allocate new ones
+					pendingRowBuffer = rowBuffer;
+					pendingIndexBuffer = indexBuffer;
+					rowBuffer = new ArrayList<>(bufferCommitSize);
 					indexBuffer = new ArrayList[dx_map.size()];
-					long endES = new Date().getTime();					
-					timeSpentInLoopWithES += (endES -startES);
 				}
 				// end of while loop
 			}
 
-			// flush last buffer ?
+			// flush last buffers ?
+			if (pendingRowBuffer != null) {
+				// check ES state for the last batch
+				pipeline.push(pendingRowBuffer, pendingIndexBuffer, wait || rowBuffer.isEmpty());
+			}
 			if (!rowBuffer.isEmpty()) {
 				// check ES state for the last batch
-				// commit the index buffers
-				this.flushDimensionBuffer(dx_map, indexBuffer, lastIndexedDimension, true);
-				// map the correlation
-				this.flushCorrelationBuffer(dx_map, hierarchies_pos, hierarchies_type, rowBuffer, indexBuffer,
-						lastIndexedCorrelation, true);
+				pipeline.push(rowBuffer, indexBuffer, true);
 			}
 
 			item.close();
 
+			// wait for the lanes to complete
+			pipeline.finish();
+			HashMap<DimensionIndex, String> lastIndexedDimension = pipeline.getLastIndexedDimension();
+			HashMap<DimensionIndex, String> lastIndexedCorrelation = pipeline.getLastIndexedCorrelation();
+
 			// check and set Indexes status
 			this.waitForIndexationCompletion(lastIndexedDimension, lastIndexedCorrelation, 5);
 			// check also empty dimensionIndexes
@@ -349,10 +370,10 @@ public class ExecuteHierarchyQuery implements CancellableCallable<ExecuteHierarc
 			logger.info("complete SQLQuery#" + item.getID() + " reads " + count + " row(s) in "
 					+ (metter_finish - metter_start) + " ms." + " method=executeQuery" + " duration="
 					+ (metter_finish - metter_start) 
-					+ "ES Time=" + timeSpentInLoopWithES 
+					+ "ES Time=" + pipeline.getTimeSpentInStore()
 					+"ms, DB Time ="+timeSpentInLoopWithBD
-					+ "ms, time ratio ES/DB =" +( ((double)timeSpentInLoopWithES)/((double) timeSpentInLoopWithBD)  )
-					+ " error=false status=complete queryid=" + item.getID() + "task="
+					+"ms, Stall Time ="+pipeline.getTimeSpentWaiting()
+					+ "ms error=false status=complete queryid=" + item.getID() + "task="
 					+ this.getClass().getName());
 
 			//
@@ -361,11 +382,14 @@ public class ExecuteHierarchyQuery implements CancellableCallable<ExecuteHierarc
 
 		} catch (Exception e) {
 			this.state = State.ERROR;
+			if (pipeline != null) {
+				pipeline.cancel();
+			}
 			for (DimensionMapping m : dx_map) {
 				m.getDimensionIndex().setPermanentError(e.getMessage());
 			}
 			if (!abort) {
-				logger.info("failed SQLQuery#" + item.getID() + " method=executeQuery" + " duration="
+				logger.info("failed SQLQuery#" + (item != null ? item.getID() : "?") + " method=executeQuery" + " duration="
 						+ " error=true status=failed queryid=" + (item != null ? item.getID() : "?") + " "
 						+ e.getLocalizedMessage() + "task=" + this.getClass().getName());
 			}
@@ -381,6 +405,9 @@ public class ExecuteHierarchyQuery implements CancellableCallable<ExecuteHierarc
 
 			// unregister
 			ExecutionManager.INSTANCE.unregisterTask(this);
+			if (onCompletion != null) {
+				onCompletion.run();
+			}
 		}
 	}
 
@@ -413,48 +440,4 @@ public class ExecuteHierarchyQuery implements CancellableCallable<ExecuteHierarc
 
 	}
 
-	private void flushDimensionBuffer(List<DimensionMapping> dx_map, ArrayList<DimensionMember>[] indexBuffer,
-			HashMap<DimensionIndex, String> lastIndexed, boolean wait) throws IndexationException {
-
-		int j = 0;
-		for (DimensionMapping m : dx_map) {
-			if (indexBuffer[j] != null && m.isOption(DimensionMapping.COMPUTE_INDEX)) {// it
-																						// may
-																						// not
-																						// have
-																						// been
-																						// initialized
-				String id = m.getDimensionIndex().index(indexBuffer[j], wait);
-				if (wait) {
-					lastIndexed.put(m.getDimensionIndex(), id);
-				}
-			}
-			j++;
-		}
-	}
-
-	private void flushCorrelationBuffer(List<DimensionMapping> dx_map,
-			Map<DimensionIndex, List<Integer>> hierarchies_pos,
-			Map<DimensionIndex, List<DimensionIndex>> hierarchies_type, ArrayList<DimensionMember[]> rowBuffer,
-			ArrayList<DimensionMember>[] indexBuffer, HashMap<DimensionIndex, String> lastIndexed, boolean wait)
-					throws IndexationException {
-
-		for (Entry<DimensionIndex, List<Integer>> entry : hierarchies_pos.entrySet()) {
-			if (entry.getValue().size() > 1) {
-				ArrayList<List<DimensionMember>> batch = new ArrayList<>(rowBuffer.size());
-				for (DimensionMember[] row : rowBuffer) {
-					List<DimensionMember> values = new ArrayList<>(entry.getValue().size());
-					for (Integer pos : entry.getValue()) {
-						values.add(row[pos]);
-					}
-					batch.add(values);
-				}
-				String id = entry.getKey().indexCorrelations(hierarchies_type.get(entry.getKey()), batch, wait);
-				if (wait) {
-					lastIndexed.put(entry.getKey(), id);
-				}
-			}
-		}
-	}
-
 }
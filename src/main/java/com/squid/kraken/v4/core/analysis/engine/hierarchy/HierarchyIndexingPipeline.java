@@ -0,0 +1,403 @@
+/*******************************************************************************
+ * Copyright © Squid Solutions, 2016
+ *
+ * This file is part of Open Bouquet software.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ *
+ * There is a special FOSS exception to the terms and conditions of the
+ * licenses as they are applied to this program. See LICENSE.txt in
+ * the directory of this program distribution.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * Squid Solutions also offers commercial licenses with additional warranties,
+ * professional functionalities or services. If you purchase a commercial
+ * license, then it supersedes and replaces any other agreement between
+ * you and Squid Solutions (above licenses and LICENSE.txt included).
+ * See http://www.squidsolutions.com/EnterpriseBouquet/
+ *******************************************************************************/
+package com.squid.kraken.v4.core.analysis.engine.hierarchy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.squid.kraken.v4.KrakenConfig;
+import com.squid.kraken.v4.core.analysis.engine.index.IndexationException;
+import com.squid.kraken.v4.core.analysis.engine.query.mapping.DimensionMapping;
+
+/**
+ * Staged indexing pipeline used by the ExecuteHierarchyQuery: the JDBC reader
+ * thread only reads and dedups the rows, then hands the batches over to one
+ * indexing lane per DimensionIndex and to a single correlation lane.
+ * <p>
+ * Lanes are connected to the reader by bounded queues, so the reader is
+ * back-pressured when the store can't keep up, but the JDBC fetch and the
+ * store indexing now run concurrently. Each lane processes its batches in
+ * order, so the lastIndexedDimension/lastIndexedCorrelation tracking keeps
+ * the same semantic as the sequential implementation.
+ * <p>
+ * The lane threads are shared by all the pipelines and bounded by
+ * kraken.hierarchy.pipeline.threads; when none is available, the lane runs
+ * inline in the reader thread, as in the sequential implementation.
+ */
+public class HierarchyIndexingPipeline {
+
+	static final Logger logger = LoggerFactory.getLogger(HierarchyIndexingPipeline.class);
+
+	// max number of pending batches per lane before the reader blocks
+	private static final int QUEUE_SIZE = Integer
+			.parseInt(KrakenConfig.getProperty("kraken.hierarchy.pipeline.queue", "4"));
+
+	private static final long OFFER_TIMEOUT_MS = 100;
+
+	// max number of lanes running concurrently, over all the pipelines
+	private static final int MAX_THREADS = Integer
+			.parseInt(KrakenConfig.getProperty("kraken.hierarchy.pipeline.threads", "32"));
+
+	private static final ExecutorService lanesExecutor = createLanesExecutor();
+
+	private static ExecutorService createLanesExecutor() {
+		// no queue: a lane is either running or inlined
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 60, TimeUnit.SECONDS,
+				new SynchronousQueue<Runnable>(), new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "HierarchyIndexingPipeline-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	private static final Batch END = new Batch(null, null, false);
+
+	private final List<DimensionMapping> dx_map;
+
+	private final Map<DimensionIndex, List<Integer>> hierarchies_pos;
+
+	private final Map<DimensionIndex, List<DimensionIndex>> hierarchies_type;
+
+	// the store may return null ids, so we can't use a ConcurrentHashMap
+	private final Map<DimensionIndex, String> lastIndexedDimension = Collections
+			.synchronizedMap(new HashMap<DimensionIndex, String>());
+
+	private final Map<DimensionIndex, String> lastIndexedCorrelation = Collections
+			.synchronizedMap(new HashMap<DimensionIndex, String>());
+
+	private final List<Lane> lanes = new ArrayList<>();
+
+	private final List<Future<?>> futures = new ArrayList<>();
+
+	private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+	private volatile boolean aborted = false;
+
+	// time spent by the lanes in the store (cumulated over lanes)
+	private final AtomicLong timeSpentInStore = new AtomicLong();
+
+	// time the reader spent blocked on full queues
+	private long timeSpentWaiting = 0;
+
+	public HierarchyIndexingPipeline(List<DimensionMapping> dx_map,
+			Map<DimensionIndex, List<Integer>> hierarchies_pos,
+			Map<DimensionIndex, List<DimensionIndex>> hierarchies_type) {
+		this.dx_map = dx_map;
+		this.hierarchies_pos = hierarchies_pos;
+		this.hierarchies_type = hierarchies_type;
+	}
+
+	/**
+	 * start the indexing lanes
+	 */
+	public void start() {
+		int j = 0;
+		for (DimensionMapping m : dx_map) {
+			if (m.isOption(DimensionMapping.COMPUTE_INDEX)) {
+				lanes.add(new DimensionLane(j, m.getDimensionIndex()));
+			}
+			j++;
+		}
+		for (List<Integer> pos : hierarchies_pos.values()) {
+			if (pos.size() > 1) {
+				lanes.add(new CorrelationLane());
+				break;
+			}
+		}
+		for (Lane lane : lanes) {
+			try {
+				futures.add(lanesExecutor.submit(lane));
+			} catch (RejectedExecutionException e) {
+				// no thread available: the reader will run this lane
+				lane.inline = true;
+			}
+		}
+	}
+
+	/**
+	 * push a batch of rows to the lanes; this will block if one of the lanes
+	 * is lagging behind, or process the batch for the inline lanes
+	 *
+	 * @param rowBuffer
+	 * @param indexBuffer
+	 * @param wait
+	 *            if true, the store will track completion for that batch
+	 * @throws Exception
+	 *             if one of the lanes failed
+	 */
+	public void push(ArrayList<DimensionMember[]> rowBuffer, ArrayList<DimensionMember>[] indexBuffer, boolean wait)
+			throws Exception {
+		Batch batch = new Batch(rowBuffer, indexBuffer, wait);
+		for (Lane lane : lanes) {
+			if (lane.accept(batch)) {
+				if (lane.inline) {
+					try {
+						lane.execute(batch);
+					} catch (IndexationException e) {
+						fail(e);
+						throw e;
+					}
+				} else {
+					offer(lane, batch);
+				}
+			}
+		}
+		checkFailure();
+	}
+
+	/**
+	 * signal the end of the stream and wait for the lanes to complete
+	 *
+	 * @throws Exception
+	 *             if one of the lanes failed
+	 */
+	public void finish() throws Exception {
+		for (Lane lane : lanes) {
+			if (!lane.inline) {
+				offer(lane, END);
+			}
+		}
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				// lanes are reporting their errors through the failure
+				// reference
+			}
+		}
+		checkFailure();
+	}
+
+	/**
+	 * abort the pipeline: pending batches are discarded
+	 */
+	public void cancel() {
+		aborted = true;
+		for (Lane lane : lanes) {
+			lane.queue.clear();
+			lane.queue.offer(END);
+		}
+		for (Future<?> future : futures) {
+			future.cancel(true);
+		}
+	}
+
+	public HashMap<DimensionIndex, String> getLastIndexedDimension() {
+		synchronized (lastIndexedDimension) {
+			return new HashMap<>(lastIndexedDimension);
+		}
+	}
+
+	public HashMap<DimensionIndex, String> getLastIndexedCorrelation() {
+		synchronized (lastIndexedCorrelation) {
+			return new HashMap<>(lastIndexedCorrelation);
+		}
+	}
+
+	public long getTimeSpentInStore() {
+		return timeSpentInStore.get();
+	}
+
+	public long getTimeSpentWaiting() {
+		return timeSpentWaiting;
+	}
+
+	private void offer(Lane lane, Batch batch) throws Exception {
+		long start = System.currentTimeMillis();
+		try {
+			while (!lane.queue.offer(batch, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+				checkFailure();
+				if (aborted) {
+					throw new InterruptedException("cancelled while indexing query results");
+				}
+			}
+		} finally {
+			timeSpentWaiting += System.currentTimeMillis() - start;
+		}
+	}
+
+	private void checkFailure() throws Exception {
+		Exception e = failure.get();
+		if (e != null) {
+			throw e;
+		}
+	}
+
+	private void fail(Exception e) {
+		if (failure.compareAndSet(null, e)) {
+			// stop the other lanes, they will drain their queue
+			aborted = true;
+		}
+	}
+
+	private static class Batch {
+
+		private final ArrayList<DimensionMember[]> rowBuffer;
+
+		private final ArrayList<DimensionMember>[] indexBuffer;
+
+		private final boolean wait;
+
+		public Batch(ArrayList<DimensionMember[]> rowBuffer, ArrayList<DimensionMember>[] indexBuffer,
+				boolean wait) {
+			this.rowBuffer = rowBuffer;
+			this.indexBuffer = indexBuffer;
+			this.wait = wait;
+		}
+
+	}
+
+	private abstract class Lane implements Runnable {
+
+		private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+
+		// if true the reader thread processes the batches, set before the
+		// first push
+		private boolean inline = false;
+
+		protected abstract boolean accept(Batch batch);
+
+		protected abstract void process(Batch batch) throws IndexationException;
+
+		protected void execute(Batch batch) throws IndexationException {
+			long start = System.currentTimeMillis();
+			process(batch);
+			timeSpentInStore.addAndGet(System.currentTimeMillis() - start);
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					Batch batch = queue.take();
+					if (batch == END) {
+						return;
+					}
+					if (!aborted) {
+						execute(batch);
+					}
+				}
+			} catch (InterruptedException e) {
+				if (!aborted) {
+					fail(e);
+				}
+			} catch (Exception e) {
+				logger.error("indexing lane failed: " + e.getMessage());
+				fail(e);
+			}
+		}
+
+	}
+
+	/**
+	 * index the members of a single DimensionIndex
+	 */
+	private class DimensionLane extends Lane {
+
+		private final int pos;
+
+		private final DimensionIndex index;
+
+		public DimensionLane(int pos, DimensionIndex index) {
+			this.pos = pos;
+			this.index = index;
+		}
+
+		@Override
+		protected boolean accept(Batch batch) {
+			// it may not have been initialized
+			return batch.indexBuffer[pos] != null;
+		}
+
+		@Override
+		protected void process(Batch batch) throws IndexationException {
+			String id = index.index(batch.indexBuffer[pos], batch.wait);
+			if (batch.wait) {
+				lastIndexedDimension.put(index, id);
+			}
+		}
+
+	}
+
+	/**
+	 * map the correlations for every hierarchy
+	 */
+	private class CorrelationLane extends Lane {
+
+		@Override
+		protected boolean accept(Batch batch) {
+			return !batch.rowBuffer.isEmpty();
+		}
+
+		@Override
+		protected void process(Batch batch) throws IndexationException {
+			for (Entry<DimensionIndex, List<Integer>> entry : hierarchies_pos.entrySet()) {
+				if (entry.getValue().size() > 1) {
+					ArrayList<List<DimensionMember>> correlations = new ArrayList<>(batch.rowBuffer.size());
+					for (DimensionMember[] row : batch.rowBuffer) {
+						List<DimensionMember> values = new ArrayList<>(entry.getValue().size());
+						for (Integer pos : entry.getValue()) {
+							values.add(row[pos]);
+						}
+						correlations.add(values);
+					}
+					String id = entry.getKey().indexCorrelations(hierarchies_type.get(entry.getKey()), correlations,
+							batch.wait);
+					if (batch.wait) {
+						lastIndexedCorrelation.put(entry.getKey(), id);
+					}
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright © Squid Solutions, 2016
+ *
+ * This file is part of Open Bouquet software.
+ *  
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ *
+ * There is a special FOSS exception to the terms and conditions of the 
+ * licenses as they are applied to this program. See LICENSE.txt in
+ * the directory of this program distribution.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * Squid Solutions also offers commercial licenses with additional warranties,
+ * professional functionalities or services. If you purchase a commercial
+ * license, then it supersedes and replaces any other agreement between
+ * you and Squid Solutions (above licenses and LICENSE.txt included).
+ * See http://www.squidsolutions.com/EnterpriseBouquet/
+ *******************************************************************************/
+package com.squid.kraken.v4.core.analysis.engine.index;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.squid.kraken.v4.KrakenConfig;
+import com.squid.kraken.v4.core.analysis.engine.hierarchy.DimensionMember;
+
+/**
+ * A bounded LRU cache of the dimension members resolved by key. The cache is
+ * bound to the dimension generation: it is flushed as soon as the generation
+ * changes, or when all the caches are flushed by {@link #invalidateAll()}.
+ */
+public class DimensionMemberCache {
+
+	private static final long CACHE_SIZE = Long
+			.parseLong(KrakenConfig.getProperty("kraken.dimension.memberCacheSize", "5000"));
+
+	// incremented to flush all the caches
+	private static final AtomicLong EPOCH = new AtomicLong();
+
+	private Cache<String, DimensionMember> cache;
+
+	private volatile String generation = null;
+
+	private volatile long epoch = EPOCH.get();
+
+	public DimensionMemberCache() {
+		cache = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+	}
+
+	/**
+	 * lookup a member; return null if not in cache
+	 * 
+	 * @param generation
+	 *            the current dimension generation
+	 * @param key
+	 * @return
+	 */
+	public DimensionMember get(String generation, String key) {
+		checkGeneration(generation);
+		return cache.getIfPresent(key);
+	}
+
+	/**
+	 * lookup several members; return only the ones in cache
+	 * 
+	 * @param generation
+	 *            the current dimension generation
+	 * @param keys
+	 * @return
+	 */
+	public Map<String, DimensionMember> getAll(String generation, Collection<String> keys) {
+		checkGeneration(generation);
+		return cache.getAllPresent(keys);
+	}
+
+	public void put(String generation, String key, DimensionMember member) {
+		checkGeneration(generation);
+		cache.put(key, member);
+	}
+
+	public void invalidate() {
+		cache.invalidateAll();
+	}
+
+	/**
+	 * flush all the caches, e.g. when some events from the other servers were
+	 * missed; each cache is flushed on its next access
+	 */
+	public static void invalidateAll() {
+		EPOCH.incrementAndGet();
+	}
+
+	private void checkGeneration(String generation) {
+		if (this.generation == null || !this.generation.equals(generation) || this.epoch != EPOCH.get()) {
+			synchronized (this) {
+				long current = EPOCH.get();
+				if (this.generation == null || !this.generation.equals(generation) || this.epoch != current) {
+					cache.invalidateAll();
+					this.generation = generation;
+					this.epoch = current;
+				}
+			}
+		}
+	}
+
+}
@@ -21,32 +21,27 @@
  * you and Squid Solutions (above licenses and LICENSE.txt included).
  * See http://www.squidsolutions.com/EnterpriseBouquet/
  *******************************************************************************/
-package com.squid.kraken.v4.ESIndexFacade;
+package com.squid.kraken.v4.core.analysis.engine.index;
 
-import org.elasticsearch.action.bulk.BulkProcessor;
-import org.elasticsearch.action.bulk.BulkRequest;
-import org.elasticsearch.action.bulk.BulkResponse;
+import java.io.Closeable;
+import java.util.Iterator;
 
-public class SimpleIndexingListener implements BulkProcessor.Listener{
-	
-	public boolean withError ;
+import com.squid.kraken.v4.core.analysis.engine.hierarchy.DimensionMember;
 
-	@Override
-	public void beforeBulk(long executionId, BulkRequest request) {
-		// TODO Auto-generated method stub
-		
-	}
-
-	@Override
-	public void afterBulk(long executionId, BulkRequest request,
-			BulkResponse response) {
-		withError = false;
-	}
+/**
+ * A lazy iterator over all the members of a dimension. The store may hold
+ * some resources (e.g. a ES scroll context) until the iterator is exhausted,
+ * so it must be closed if the caller stops early.
+ * 
+ * @author sergefantino
+ *
+ */
+public interface DimensionMemberIterator extends Iterator<DimensionMember>, Closeable {
 
+	/**
+	 * release the resources; does not throw
+	 */
 	@Override
-	public void afterBulk(long executionId, BulkRequest request,
-			Throwable failure) {
-		withError = true;
-	}
+	void close();
 
 }
@@ -26,9 +26,11 @@ package com.squid.kraken.v4.core.analysis.engine.index;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
@@ -74,6 +76,11 @@ public class DimensionStore extends DimensionStoreAbstract {
         return size;
     }
     
+    @Override
+    public long countMembers() {
+        return size;
+    }
+    
     @Override
     public String index(List<DimensionMember> members, boolean wait) {
         synchronized (this) {
@@ -166,6 +173,34 @@ public class DimensionStore extends DimensionStoreAbstract {
         return Collections.unmodifiableList(members);
     }
     
+    @Override
+    public DimensionMemberIterator iterateMembers() {
+        // only iterates over the members indexed so far
+        final int max = size;
+        return new DimensionMemberIterator() {
+            private int index = 0;
+            @Override
+            public boolean hasNext() {
+                return index<max;
+            }
+            @Override
+            public DimensionMember next() {
+                if (index>=max) {
+                    throw new NoSuchElementException();
+                }
+                return members.get(index++);
+            }
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+            @Override
+            public void close() {
+                index = max;
+            }
+        };
+    }
+    
     @Override
     public List<DimensionMember> getMembers(int offset, int size) {
         if (!members.isEmpty()) {
@@ -222,6 +257,18 @@ public class DimensionStore extends DimensionStoreAbstract {
        return IDs.get(key);
     }
     
+    @Override
+    public Map<String, DimensionMember> getMembersByKeys(Collection<String> keys) {
+        Map<String, DimensionMember> result = new HashMap<>();
+        for (String key : keys) {
+            DimensionMember member = IDs.get(key);
+            if (member!=null) {
+                result.put(key, member);
+            }
+        }
+        return result;
+    }
+    
     @Override
     public String indexCorrelations(List<DimensionIndex> types, List<DimensionMember> values) {
         ArrayList<DimensionMember> accu = new ArrayList<>();
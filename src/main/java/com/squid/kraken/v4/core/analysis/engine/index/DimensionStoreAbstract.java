@@ -47,6 +47,16 @@ public abstract class DimensionStoreAbstract implements IDimensionStore {
         return RedisCacheManager.getInstance().getKey("", Collections.singletonList("I/"+dimension.getId().toUUID())).getStringKey();
     }
 
+    /**
+     * return the generational key for the Dimension members: it changes when the dimension or its domain is refreshed
+     * @return
+     */
+    protected String getMembersGeneration() {
+        Dimension dimension = getDimensionIndex().getDimension();
+        String uuid = dimension.getId().toUUID();
+        return RedisCacheManager.getInstance().getKey("I/"+uuid, uuid, dimension.getId().getParent().toUUID()).getStringKey();
+    }
+
     public DimensionIndex getDimensionIndex() {
         return index;
     }
@@ -25,10 +25,13 @@ package com.squid.kraken.v4.core.analysis.engine.index;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.codec.digest.DigestUtils;
@@ -39,6 +42,7 @@ import com.squid.core.domain.IDomain;
 import com.squid.core.expression.ExpressionAST;
 import com.squid.core.expression.parser.ParseException;
 import com.squid.core.expression.scope.ScopeException;
+import com.squid.kraken.v4.ESIndexFacade.DimensionMembersScroll;
 import com.squid.kraken.v4.ESIndexFacade.ESIndexFacade;
 import com.squid.kraken.v4.ESIndexFacade.ESIndexFacade.MappingState;
 import com.squid.kraken.v4.ESIndexFacade.ESIndexFacadeException;
@@ -65,6 +69,9 @@ public class DimensionStoreES extends DimensionStoreAbstract {
 	public static final String ESIndexPrefix = "ESI/";
 	public static final String ESHierarchyPrefix = "ESH/";
 
+	// number of members fetched per scroll round-trip
+	private static final int SCROLL_PAGE_SIZE = 1000;
+
 	private ESIndexFacade master;
 
 	// the ES index name
@@ -99,6 +106,9 @@ public class DimensionStoreES extends DimensionStoreAbstract {
 	private String idName_mapping = idName;// this is the actual name we will
 	// use to lookup the ID
 
+	// cache the members resolved by key
+	private DimensionMemberCache memberCache = new DimensionMemberCache();
+
 	public DimensionStoreES(ESIndexFacade master, String indexES, DimensionIndex index) throws ESIndexFacadeException {
 		super(index);
 		this.master = master;
@@ -342,8 +352,18 @@ public class DimensionStoreES extends DimensionStoreAbstract {
 		return size.get();
 	}
 
+	@Override
+	public long countMembers() {
+		if (this.mappingInitialized) {
+			return master.getCountType(indexName, dimensionTypeName);
+		} else {
+			return 0;
+		}
+	}
+
 	@Override
 	public String index(List<DimensionMember> members, boolean wait) throws IndexationException {
+		memberCache.invalidate();
 		try {
 			ArrayList<HashMap<String, Object>> data = new ArrayList<>();
 			for (DimensionMember member : members) {
@@ -643,25 +663,91 @@ public class DimensionStoreES extends DimensionStoreAbstract {
 
 	@Override
 	public List<DimensionMember> getMembers() {
+		ArrayList<DimensionMember> members = new ArrayList<>();
+		try (DimensionMemberIterator iter = iterateMembers()) {
+			while (iter.hasNext()) {
+				members.add(iter.next());
+			}
+		}
+		return members;
+	}
+
+	@Override
+	public DimensionMemberIterator iterateMembers() {
 		try {
 			if (this.mappingInitialized) {
-				ArrayList<Map<String, Object>> elements = master.getNDimensionMembers(indexName, dimensionTypeName,
-						this.idName_mapping, 0, 10000, this.mapping);
-				return readMembers(elements);
+				DimensionMembersScroll scroll = master.scrollDimensionMembers(indexName, dimensionTypeName,
+						this.idName_mapping, SCROLL_PAGE_SIZE, this.mapping);
+				return new ScrollMemberIterator(scroll);
 			} else {
-				return new ArrayList<DimensionMember>();
+				return new ScrollMemberIterator(null);
 			}
-
 		} catch (ESIndexFacadeException e) {
-			logger.error("failed to get members page from ES: " + e.getMessage());
+			logger.error("failed to scroll members from ES: " + e.getMessage());
 			throw new RuntimeException(e);
 		}
 	}
 
+	/**
+	 * iterate over the scroll pages, converting only one page at a time
+	 */
+	private class ScrollMemberIterator implements DimensionMemberIterator {
+
+		private DimensionMembersScroll scroll;
+
+		private Iterator<DimensionMember> page = Collections.emptyIterator();
+
+		public ScrollMemberIterator(DimensionMembersScroll scroll) {
+			this.scroll = scroll;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (!page.hasNext() && scroll != null) {
+				try {
+					List<Map<String, Object>> elements = scroll.next();
+					if (elements.isEmpty()) {
+						close();
+					} else {
+						page = readMembers(elements).iterator();
+					}
+				} catch (ESIndexFacadeException e) {
+					close();
+					logger.error("failed to scroll members from ES: " + e.getMessage());
+					throw new RuntimeException(e);
+				}
+			}
+			return page.hasNext();
+		}
+
+		@Override
+		public DimensionMember next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return page.next();
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+			if (scroll != null) {
+				scroll.close();
+				scroll = null;
+			}
+		}
+
+	}
+
 	@Override
 	public DimensionMember getMember(int index) {
-		// TODO Auto-generated method stub
-		return null;
+		// a single member page, sorted like getMembers()
+		List<DimensionMember> members = getMembers(index, 1);
+		return members.isEmpty() ? null : members.get(0);
 	}
 
 	@Override
@@ -682,18 +768,15 @@ public class DimensionStoreES extends DimensionStoreAbstract {
 	public DimensionMember getMemberByKey(String key) {
 		try {
 			if (this.mappingInitialized) {
+				String generation = getMembersGeneration();
+				DimensionMember member = memberCache.get(generation, key);
+				if (member != null) {
+					return member;
+				}
 				Map<String, Object> map = master.getDimensionValue(indexName, dimensionTypeName, key);
 				if (map != null) {
-					Object value = map.get(idName_mapping);
-					DimensionMember member = new DimensionMember(0, value, getAttributeCount());
-					int i = 0;
-					for (Attribute attr : getAttributes()) {
-						Object v = map.get(attr.getId().getAttributeId());
-						if (v != null) {
-							member.setAttribute(i, v);
-						}
-						i++;
-					}
+					member = readMemberByKey(map);
+					memberCache.put(generation, key, member);
 					return member;
 				} else {
 					return null;
@@ -707,6 +790,50 @@ public class DimensionStoreES extends DimensionStoreAbstract {
 		}
 	}
 
+	@Override
+	public Map<String, DimensionMember> getMembersByKeys(Collection<String> keys) {
+		Map<String, DimensionMember> result = new HashMap<>();
+		if (!this.mappingInitialized || keys.isEmpty()) {
+			return result;
+		}
+		String generation = getMembersGeneration();
+		result.putAll(memberCache.getAll(generation, keys));
+		ArrayList<String> missing = new ArrayList<>();
+		for (String key : keys) {
+			if (!result.containsKey(key)) {
+				missing.add(key);
+			}
+		}
+		if (!missing.isEmpty()) {
+			try {
+				Map<String, Map<String, Object>> values = master.getDimensionValues(indexName, dimensionTypeName,
+						missing);
+				for (Map.Entry<String, Map<String, Object>> entry : values.entrySet()) {
+					DimensionMember member = readMemberByKey(entry.getValue());
+					memberCache.put(generation, entry.getKey(), member);
+					result.put(entry.getKey(), member);
+				}
+			} catch (ESIndexFacadeException e) {
+				logger.error(e.toString());
+			}
+		}
+		return result;
+	}
+
+	private DimensionMember readMemberByKey(Map<String, Object> map) {
+		Object value = map.get(idName_mapping);
+		DimensionMember member = new DimensionMember(0, value, getAttributeCount());
+		int i = 0;
+		for (Attribute attr : getAttributes()) {
+			Object v = map.get(attr.getId().getAttributeId());
+			if (v != null) {
+				member.setAttribute(i, v);
+			}
+			i++;
+		}
+		return member;
+	}
+
 	@Override
 	public String indexCorrelations(List<DimensionIndex> types, List<DimensionMember> values)
 			throws IndexationException {
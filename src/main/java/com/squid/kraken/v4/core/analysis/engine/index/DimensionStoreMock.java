@@ -27,6 +27,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 import com.squid.kraken.v4.ESIndexFacade.ESIndexFacadeException;
 import com.squid.kraken.v4.core.analysis.engine.hierarchy.DimensionIndex;
@@ -45,6 +46,11 @@ public class DimensionStoreMock implements IDimensionStore {
 		return 0;
 	}
 
+	@Override
+	public long countMembers() {
+		return 0;
+	}
+
 	@Override
 	public String index(List<DimensionMember> members, boolean wait) {
 		// TODO Auto-generated method stub
@@ -62,6 +68,30 @@ public class DimensionStoreMock implements IDimensionStore {
 		return Collections.emptyList();
 	}
 
+	@Override
+	public DimensionMemberIterator iterateMembers() {
+		return new DimensionMemberIterator() {
+			@Override
+			public boolean hasNext() {
+				return false;
+			}
+
+			@Override
+			public DimensionMember next() {
+				throw new NoSuchElementException();
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+	}
+
 	@Override
 	public DimensionMember getMember(int index) {
 		// TODO Auto-generated method stub
@@ -126,6 +156,11 @@ public class DimensionStoreMock implements IDimensionStore {
 		return null;
 	}
 
+	@Override
+	public Map<String, DimensionMember> getMembersByKeys(Collection<String> keys) {
+		return Collections.emptyMap();
+	}
+
 	@Override
 	public String indexCorrelations(List<DimensionIndex> types,
 			List<DimensionMember> values) {
@@ -36,12 +36,39 @@ public interface IDimensionStore {
 
 	int getSize();
 
+	/**
+	 * count the members using the store count API, without reading them
+	 * 
+	 * @return
+	 */
+	long countMembers();
+
 	String index(List<DimensionMember> members, boolean wait) throws IndexationException;
 
 	void index(DimensionMember member);
 
+	/**
+	 * return all the members as a list; prefer iterateMembers() for large
+	 * dimensions since the whole dimension is materialized
+	 * 
+	 * @return
+	 */
 	List<DimensionMember> getMembers();
 
+	/**
+	 * return a lazy iterator over all the members of the dimension. The
+	 * iterator must be closed if not exhausted.
+	 * 
+	 * @return
+	 */
+	DimensionMemberIterator iterateMembers();
+
+	/**
+	 * return the member at that position in the store order, or null
+	 * 
+	 * @param index
+	 * @return
+	 */
 	DimensionMember getMember(int index);
 
 	DimensionMember getMemberByID(Object iD);
@@ -101,6 +128,15 @@ public interface IDimensionStore {
 	 */
 	DimensionMember getMemberByKey(String key);
 
+	/**
+	 * return several members by their keys, in a single lookup if the store
+	 * supports it
+	 * 
+	 * @param keys
+	 * @return the members indexed by key; unknown keys are ignored
+	 */
+	Map<String, DimensionMember> getMembersByKeys(Collection<String> keys);
+
 	/**
 	 * register the correlations
 	 * 
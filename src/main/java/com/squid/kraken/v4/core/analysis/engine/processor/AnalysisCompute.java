@@ -39,6 +39,7 @@ import com.squid.kraken.v4.api.core.PerfDB;
 import com.squid.kraken.v4.api.core.SQLStats;
 import com.squid.kraken.v4.caching.NotInCacheException;
 import com.squid.kraken.v4.caching.redis.RedisCacheException;
+import com.squid.kraken.v4.caching.redis.datastruct.RawRow;
 
 import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
@@ -49,8 +50,10 @@ import org.slf4j.LoggerFactory;
 
 import com.squid.core.concurrent.ExecutionManager;
 import com.squid.core.domain.IDomain;
+import com.squid.core.domain.analytics.AnalyticDomain;
 import com.squid.core.domain.set.SetDomain;
 import com.squid.core.expression.ExpressionAST;
+import com.squid.core.expression.scope.ExpressionMaker;
 import com.squid.core.expression.scope.ScopeException;
 import com.squid.core.sql.model.SQLScopeException;
 import com.squid.core.sql.render.IOrderByPiece.ORDERING;
@@ -59,6 +62,7 @@ import com.squid.core.sql.render.RenderingException;
 import com.squid.kraken.v4.core.analysis.datamatrix.AxisValues;
 import com.squid.kraken.v4.core.analysis.datamatrix.CompareMerger;
 import com.squid.kraken.v4.core.analysis.datamatrix.DataMatrix;
+import com.squid.kraken.v4.core.analysis.datamatrix.MeasureValues;
 import com.squid.kraken.v4.core.analysis.engine.hierarchy.DimensionMember;
 import com.squid.kraken.v4.core.analysis.engine.query.QueryRunner;
 import com.squid.kraken.v4.core.analysis.engine.query.SimpleQuery;
@@ -70,6 +74,7 @@ import com.squid.kraken.v4.core.analysis.model.DashboardSelection;
 import com.squid.kraken.v4.core.analysis.model.DomainSelection;
 import com.squid.kraken.v4.core.analysis.model.ExpressionInput;
 import com.squid.kraken.v4.core.analysis.model.GroupByAxis;
+import com.squid.kraken.v4.core.analysis.model.Intervalle;
 import com.squid.kraken.v4.core.analysis.model.IntervalleObject;
 import com.squid.kraken.v4.core.analysis.model.MeasureGroup;
 import com.squid.kraken.v4.core.analysis.model.OrderBy;
@@ -105,6 +110,10 @@ public class AnalysisCompute {
 	private static final boolean SUPPORT_SOFT_FILTERS = new Boolean(
 			KrakenConfig.getProperty("feature.softfilters", "false"));
 
+	// turn to false to always compute the compareTo present & past with two queries
+	private static final boolean SUPPORT_COMPARETO_SINGLE_PASS = new Boolean(
+			KrakenConfig.getProperty("feature.compareto.singlepass", "true"));
+
 	public AnalysisCompute(Universe universe) {
 		this.universe = universe;
 	}
@@ -152,6 +161,7 @@ public class AnalysisCompute {
 		if (groups.isEmpty()) {
 			SimpleQuery query = this.genSimpleQuery(analysis);
 			PreviewWriter qw = new PreviewWriter();
+			qw.setPageRows(getPageRows(analysis, query));
 			QueryRunner runner = new QueryRunner(universe.getContext(), query, analysis.isLazy(), qw,
 					analysis.getJobId());
 			runner.run();
@@ -374,22 +384,39 @@ public class AnalysisCompute {
 			compareToAnalysis.add(compareToKpi);
 		}
 
-		// compute present & past in //
-		Future<DataMatrix> future = ExecutionManager.INSTANCE.submit(universe.getContext().getCustomerId(),
-				new Callable<DataMatrix>() {
-					@Override
-					public DataMatrix call() throws Exception {
-						DataMatrix present = computeAnalysisSimple(currentAnalysis, false);
-						present.orderBy(fixed);
-						return present;
-					}
-				});
+		// try to compute present & past with a single query
+		DataMatrix[] periods = null;
+		if (SUPPORT_COMPARETO_SINGLE_PASS) {
+			periods = computeCompareToSinglePass(currentAnalysis, compareToAnalysis, joinAxis, pastSelection);
+		}
+		// else compute present & past in //
+		Future<DataMatrix> future = null;
+		if (periods == null) {
+			future = ExecutionManager.INSTANCE.submit(universe.getContext().getCustomerId(),
+					new Callable<DataMatrix>() {
+						@Override
+						public DataMatrix call() throws Exception {
+							DataMatrix present = computeAnalysisSimple(currentAnalysis, false);
+							present.orderBy(fixed);
+							return present;
+						}
+					});
+		}
 		try {
-			// compute past
-			DataMatrix past = computeAnalysisSimple(compareToAnalysis, false, true);
-			past.orderBy(fixed);
-			// wait for present
-			DataMatrix present = future.get();
+			DataMatrix present = null;
+			DataMatrix past = null;
+			if (periods != null) {
+				present = periods[0];
+				present.orderBy(fixed);
+				past = periods[1];
+				past.orderBy(fixed);
+			} else {
+				// compute past
+				past = computeAnalysisSimple(compareToAnalysis, false, true);
+				past.orderBy(fixed);
+				// wait for present
+				present = future.get();
+			}
 
 			//
 			final Period offset = computeOffset(present, joinAxis, presentInterval, pastInterval);
@@ -694,6 +721,237 @@ public class AnalysisCompute {
 		}
 	}
 
+	/**
+	 * compute the present and past matrices of a compareTo analysis with a
+	 * single query: the query covers both periods and is grouped by an extra
+	 * flag telling whether a row belongs to the present period. The result is
+	 * then split into the two matrices expected by the CompareMerger.
+	 * <p>
+	 * This is only applicable if the periods are disjoint and if computing
+	 * them together doesn't change the values, i.e. no limit, rollup or
+	 * analytic functions.
+	 * 
+	 * @param currentAnalysis
+	 * @param compareToAnalysis
+	 * @param joinAxis
+	 * @param pastSelection
+	 * @return the present and past matrices, or null if not applicable
+	 */
+	private DataMatrix[] computeCompareToSinglePass(DashboardAnalysis currentAnalysis,
+			DashboardAnalysis compareToAnalysis, Axis joinAxis, DashboardSelection pastSelection)
+			throws ComputingException, InterruptedException, RenderingException {
+		if (currentAnalysis.hasLimit() || currentAnalysis.hasOffset() || currentAnalysis.hasRollup()
+				|| currentAnalysis.hasBeyondLimit()) {
+			return null;
+		}
+		DashboardSelection presentSelection = currentAnalysis.getSelection();
+		DomainSelection compare = presentSelection.getCompareToSelection();
+		if (compare.getFilters().size() != 1 || compare.hasConditions()) {
+			return null;
+		}
+		// analytic functions would be computed over both periods
+		for (Measure kpi : currentAnalysis.getKpis()) {
+			ExpressionAST definition = kpi.getDefinitionSafe();
+			if (definition == null || definition.getImageDomain().isInstanceOf(AnalyticDomain.DOMAIN)) {
+				return null;
+			}
+		}
+		for (DomainSelection selection : presentSelection.get()) {
+			if (selection.hasConditions()) {
+				for (ExpressionInput condition : selection.getConditions()) {
+					if (condition.getExpression().getImageDomain().isInstanceOf(AnalyticDomain.DOMAIN)) {
+						return null;
+					}
+				}
+			}
+		}
+		try {
+			Axis filter = compare.getFilters().iterator().next();
+			Collection<DimensionMember> presentMembers = presentSelection.getMembers(filter);
+			Collection<DimensionMember> pastMembers = pastSelection.getMembers(filter);
+			if (!isDisjoint(presentMembers, pastMembers)) {
+				return null;
+			}
+			ExpressionAST predicate = createMembersPredicate(filter.getDefinition(), presentMembers);
+			Axis period = predicate != null ? universe.asAxis(predicate) : null;
+			if (period == null) {
+				return null;
+			}
+			period.setName(filter.getName() + " [period]");
+			// the combined analysis, grouped by the period flag
+			DashboardAnalysis combined = new DashboardAnalysis(universe);
+			for (GroupByAxis groupBy : currentAnalysis.getGrouping()) {
+				combined.add(groupBy);
+			}
+			combined.add(period);
+			for (Measure kpi : currentAnalysis.getKpis()) {
+				combined.add(kpi);
+			}
+			DashboardSelection selection = new DashboardSelection(presentSelection);
+			selection.clear(filter);
+			selection.add(filter, presentMembers);
+			selection.add(filter, pastMembers);
+			combined.setSelection(selection);
+			combined.lazy(currentAnalysis.isLazy());
+			combined.setJobId(currentAnalysis.getJobId());
+			combined.setSampleRate(currentAnalysis.getSampleRate());
+			DataMatrix dm = computeAnalysisSimple(combined, false);
+			if (dm == null) {
+				return null;
+			}
+			return splitComparePeriods(dm, currentAnalysis, compareToAnalysis, joinAxis);
+		} catch (ScopeException | SQLScopeException e) {
+			logger.info("unable to compute the compareTo with a single query, using two queries: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * split the combined matrix into the present & past matrices, the last
+	 * axis being the present period flag
+	 */
+	private DataMatrix[] splitComparePeriods(DataMatrix dm, DashboardAnalysis currentAnalysis,
+			DashboardAnalysis compareToAnalysis, Axis joinAxis) {
+		List<GroupByAxis> pastGrouping = compareToAnalysis.getGrouping();
+		int size = pastGrouping.size();
+		if (dm.getAxesSize() != size + 1) {
+			return null;
+		}
+		DataMatrix present = new DataMatrix(dm.getDatabase());
+		DataMatrix past = new DataMatrix(dm.getDatabase());
+		// the past rows are restricted to the present ones on the other axes,
+		// like the two queries version does with the beyondLimit
+		List<Integer> keys = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			present.add(new AxisValues(dm.getAxes().get(i)));
+			past.add(new AxisValues(pastGrouping.get(i).getAxis()));
+			if (!currentAnalysis.getGrouping().get(i).getAxis().equals(joinAxis)) {
+				keys.add(i);
+			}
+		}
+		for (MeasureValues kpi : dm.getKPIs()) {
+			int index = currentAnalysis.getKpis().indexOf(kpi.getMeasure());
+			if (index < 0) {
+				return null;
+			}
+			present.getKPIs().add(kpi);
+			past.add(compareToAnalysis.getKpis().get(index));
+		}
+		HashSet<List<Object>> presentKeys = new HashSet<>();
+		List<RawRow> pastRows = new ArrayList<>();
+		for (RawRow row : dm.getRows()) {
+			Object[] data = new Object[present.getRowSize()];
+			for (int i = 0; i < size; i++) {
+				data[i] = dm.getAxisValue(i, row);
+			}
+			for (int j = 0; j < dm.getDataSize(); j++) {
+				data[size + j] = dm.getDataValue(j, row);
+			}
+			// the flag is null for the past period
+			if (dm.getAxisValue(size, row) != null) {
+				present.pushRow(new RawRow(data));
+				presentKeys.add(getRowKey(data, keys));
+			} else {
+				pastRows.add(new RawRow(data));
+			}
+		}
+		for (RawRow row : pastRows) {
+			if (keys.isEmpty() || presentKeys.contains(getRowKey(row.data, keys))) {
+				past.pushRow(row);
+			}
+		}
+		for (DataMatrix matrix : new DataMatrix[] { present, past }) {
+			matrix.setFromCache(dm.isFromCache());
+			matrix.setFromSmartCache(dm.isFromSmartCache());
+			matrix.setExecutionDate(dm.getExecutionDate());
+			matrix.setFullset(dm.isFullset());
+			matrix.setSampleRate(dm.getSampleRate());
+		}
+		return new DataMatrix[] { present, past };
+	}
+
+	private List<Object> getRowKey(Object[] data, List<Integer> keys) {
+		List<Object> key = new ArrayList<>(keys.size());
+		for (int i : keys) {
+			key.add(data[i]);
+		}
+		return key;
+	}
+
+	/**
+	 * check that the members bounds don't overlap; returns false if that can't
+	 * be decided
+	 */
+	private boolean isDisjoint(Collection<DimensionMember> first, Collection<DimensionMember> second)
+			throws ScopeException {
+		if (first.isEmpty() || second.isEmpty()) {
+			return false;
+		}
+		for (DimensionMember member : first) {
+			if (member.getID() == null) {
+				return false;
+			}
+		}
+		for (DimensionMember member : second) {
+			if (member.getID() == null) {
+				return false;
+			}
+		}
+		IntervalleObject a = computeMinMax(first);
+		IntervalleObject b = computeMinMax(second);
+		return isBefore(a, b) || isBefore(b, a);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private boolean isBefore(IntervalleObject a, IntervalleObject b) {
+		Object upper = a.getUpperBound();
+		Object lower = b.getLowerBound();
+		if (upper instanceof Comparable && lower != null && (upper.getClass().isAssignableFrom(lower.getClass())
+				|| lower.getClass().isAssignableFrom(upper.getClass()))) {
+			try {
+				return ((Comparable) upper).compareTo(lower) < 0;
+			} catch (ClassCastException e) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * create the predicate matching the members, the same way the query
+	 * filters on them; returns null if not supported
+	 */
+	private ExpressionAST createMembersPredicate(ExpressionAST expr, Collection<DimensionMember> members)
+			throws ScopeException {
+		if (expr.getImageDomain().isInstanceOf(IDomain.CONDITIONAL)) {
+			return null;
+		}
+		ExpressionAST predicate = null;
+		List<Object> values = new ArrayList<>();
+		for (DimensionMember member : members) {
+			Object value = member.getID();
+			if (value instanceof Intervalle) {
+				ExpressionAST lower = ((Intervalle) value).getLowerBoundExpression();
+				ExpressionAST upper = ((Intervalle) value).getUpperBoundExpression();
+				if (lower == null || upper == null) {
+					return null;
+				}
+				ExpressionAST where = ExpressionMaker.GROUP(ExpressionMaker.AND(
+						ExpressionMaker.GREATER(expr, lower, false), ExpressionMaker.LESS(expr, upper, false)));
+				predicate = (predicate == null) ? where : ExpressionMaker.OR(predicate, where);
+			} else {
+				values.add(value);
+			}
+		}
+		if (!values.isEmpty()) {
+			ExpressionAST where = (values.size() == 1)
+					? ExpressionMaker.EQUAL(expr, ExpressionMaker.CONSTANT(values.get(0)))
+					: ExpressionMaker.IN(expr, ExpressionMaker.CONSTANTS(values));
+			predicate = (predicate == null) ? where : ExpressionMaker.OR(predicate, where);
+		}
+		return predicate;
+	}
+
 	private IntervalleObject computeMinMax(Collection<DimensionMember> members) throws ScopeException {
 		IntervalleObject result = null;
 		for (DimensionMember member : members) {
@@ -753,6 +1011,22 @@ public class AnalysisCompute {
 		return computeAnalysisSimple(analysis, optimize, false);
 	}
 
+	/**
+	 * the number of rows to wait for if the query result is still being
+	 * computed, or -1 to wait for the full result. Only simple analyses can be
+	 * answered from the first rows: no rollup, compareTo, beyondLimit or
+	 * in-memory post-processing.
+	 */
+	private long getPageRows(DashboardAnalysis analysis, SimpleQuery query) {
+		if (analysis.getPageRows() > 0 && analysis.getGroups().size() <= 1 && !analysis.hasRollup()
+				&& !analysis.hasBeyondLimit() && !analysis.getSelection().hasCompareToSelection()
+				&& query.getPostProcessing().isEmpty()) {
+			return analysis.getPageRows();
+		} else {
+			return -1;
+		}
+	}
+
 	private DataMatrix runQuery(SimpleQuery query, boolean lazy, DashboardAnalysis analysis, PreviewWriter qw)
 			throws ComputingException {
 		QueryRunner runner = new QueryRunner(universe.getContext(), query, lazy, qw, analysis.getJobId());
@@ -831,21 +1105,33 @@ public class AnalysisCompute {
 		// generate the query
 		PreviewWriter qw = new PreviewWriter();
 		SimpleQuery query = this.genAnalysisQueryCachable(analysis, group, optimize, forceBeyondLimit);
+		// approximate mode: read a sample of the rows
+		// - only if the result can be scaled back
+		if (analysis.getSampleRate() > 0 && !analysis.hasRollup() && !analysis.hasBeyondLimit()
+				&& !forceBeyondLimit && DataMatrixTransformScale.canSample(analysis)) {
+			query.sample(analysis.getSampleRate());
+		}
 		// compute the signature: do it after generating the query to take into
 		// account side-effects
-		boolean smartCache = SUPPORT_SMART_CACHE && !analysis.hasRollup();
+		// - a sampled result must not be used to answer an exact analysis
+		boolean smartCache = SUPPORT_SMART_CACHE && !analysis.hasRollup() && !query.isSampled();
 		AnalysisSmartCacheRequest smartCacheRequest = smartCache
 				? new AnalysisSmartCacheRequest(universe, analysis, group, query) : null;
 		boolean temporarySignature = false;
 		try {
 			// run the query using 1/ first the lazy, 2/ the smart cache (if
 			// allowed) 3/ direct execution if not lazy
+			// if the query is still running, only wait for the requested page
+			long pageRows = getPageRows(analysis, query);
 			try {
 				// always try lazy first
+				qw.setPageRows(pageRows);
 				runQuery(query, true/* lazy */, analysis, qw);
 			} catch (NotInCacheException e) {
 				if (smartCacheRequest != null) {
 					try {
+						// the smart cache must read the full result
+						qw.setPageRows(-1);
 						return computeAnalysisSimpleForGroupFromSmartCache(analysis, query, smartCacheRequest, qw,
 								optimize);
 					} catch (NotInCacheException ee) {
@@ -860,6 +1146,7 @@ public class AnalysisCompute {
 					if (smartCacheRequest != null) {
 						temporarySignature = AnalysisSmartCache.INSTANCE.put(smartCacheRequest);
 					}
+					qw.setPageRows(pageRows);
 					runQuery(query, false, analysis, qw);
 				} else {
 					throw e;// throw the NotInCache exception
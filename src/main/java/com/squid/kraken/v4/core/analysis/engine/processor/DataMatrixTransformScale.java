@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright © Squid Solutions, 2016
+ *
+ * This file is part of Open Bouquet software.
+ *  
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ *
+ * There is a special FOSS exception to the terms and conditions of the 
+ * licenses as they are applied to this program. See LICENSE.txt in
+ * the directory of this program distribution.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * Squid Solutions also offers commercial licenses with additional warranties,
+ * professional functionalities or services. If you purchase a commercial
+ * license, then it supersedes and replaces any other agreement between
+ * you and Squid Solutions (above licenses and LICENSE.txt included).
+ * See http://www.squidsolutions.com/EnterpriseBouquet/
+ *******************************************************************************/
+package com.squid.kraken.v4.core.analysis.engine.processor;
+
+import com.squid.core.domain.IDomain;
+import com.squid.core.domain.aggregate.AggregateDomain;
+import com.squid.core.domain.analytics.AnalyticDomain;
+import com.squid.core.domain.operators.IntrinsicOperators;
+import com.squid.core.expression.Compose;
+import com.squid.core.expression.ExpressionAST;
+import com.squid.core.expression.Operator;
+import com.squid.kraken.v4.core.analysis.datamatrix.DataMatrix;
+import com.squid.kraken.v4.core.analysis.model.DashboardAnalysis;
+import com.squid.kraken.v4.core.analysis.model.DomainSelection;
+import com.squid.kraken.v4.core.analysis.model.ExpressionInput;
+import com.squid.kraken.v4.core.analysis.scope.MeasureExpression;
+import com.squid.kraken.v4.core.analysis.universe.Measure;
+
+/**
+ * scale the additive measures of a sampled query
+ */
+public class DataMatrixTransformScale implements DataMatrixTransform {
+	
+	private double sampleRate;
+
+	public DataMatrixTransformScale(double sampleRate) {
+		this.sampleRate = sampleRate;
+	}
+	
+	@Override
+	public DataMatrix apply(DataMatrix input) {
+		return input.scale(sampleRate);
+	}
+
+	/**
+	 * check if the analysis result can be computed on a sample: every KPI
+	 * must be additive so it can be scaled back, and there must be no
+	 * condition on a metric since it would apply to the sampled values
+	 * 
+	 * @param analysis
+	 * @return
+	 */
+	public static boolean canSample(DashboardAnalysis analysis) {
+		for (Measure kpi : analysis.getKpis()) {
+			if (!isAdditive(kpi.getDefinitionSafe())) {
+				return false;
+			}
+		}
+		for (DomainSelection selection : analysis.getSelection().get()) {
+			if (selection.hasConditions()) {
+				for (ExpressionInput condition : selection.getConditions()) {
+					// HAVING or QUALIFY
+					IDomain image = condition.getExpression().getImageDomain();
+					if (image.isInstanceOf(AggregateDomain.DOMAIN) || image.isInstanceOf(AnalyticDomain.DOMAIN)) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * an additive measure is a SUM or COUNT, or a sum or difference of
+	 * additive measures; a metric reference is resolved to its definition
+	 * 
+	 * @param expr
+	 * @return
+	 */
+	public static boolean isAdditive(ExpressionAST expr) {
+		if (expr instanceof MeasureExpression) {
+			Measure measure = ((MeasureExpression) expr).getMeasure();
+			return measure != null && isAdditive(measure.getDefinitionSafe());
+		}
+		if (expr instanceof Compose) {
+			return isAdditive(((Compose) expr).getHead());
+		}
+		if (expr instanceof Operator) {
+			Operator op = (Operator) expr;
+			int id = op.getOperatorDefinition().getId();
+			if (id == IntrinsicOperators.SUM || id == IntrinsicOperators.COUNT) {
+				return true;
+			}
+			if (id == IntrinsicOperators.PLUS || id == IntrinsicOperators.SUBTRACTION) {
+				for (ExpressionAST argument : op.getArguments()) {
+					if (!isAdditive(argument)) {
+						return false;
+					}
+				}
+				return !op.getArguments().isEmpty();
+			}
+		}
+		return false;
+	}
+
+}
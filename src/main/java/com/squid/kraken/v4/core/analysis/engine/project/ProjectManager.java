@@ -45,6 +45,7 @@ import com.squid.kraken.v4.api.core.ObjectNotFoundAPIException;
 import com.squid.kraken.v4.api.core.ServiceUtils;
 import com.squid.kraken.v4.caching.redis.RedisCacheManager;
 import com.squid.kraken.v4.caching.redis.generationalkeysserver.RedisKey;
+import com.squid.kraken.v4.core.analysis.engine.cache.MetaModelObserver;
 import com.squid.kraken.v4.core.analysis.engine.cartography.Cartography;
 import com.squid.kraken.v4.core.analysis.engine.hierarchy.DomainContent;
 import com.squid.kraken.v4.core.analysis.engine.hierarchy.DomainHierarchyManager;
@@ -437,6 +438,8 @@ public class ProjectManager {
 			upgradeUserAccess(ctx, project);
 		}
 		//
+		// apply the pending metamodel invalidations first
+		MetaModelObserver.getInstance().flush(projectPk);
 		ProjectDynamicContent content = projects.get(projectPk);
 		// we use a special key to invalidate the project's domain, which in turn depend on the project key
 		String genkey = getProjectContentGenkey(projectPk);
@@ -467,10 +470,21 @@ public class ProjectManager {
 	 * @param domainId
 	 */
 	public void refreshDomain(DomainPK domainPk){
+		RedisCacheManager.getInstance().refresh(getRefreshDomainKeys(domainPk));
+	}
+
+	/**
+	 * the keys to refresh in order to refresh the domain
+	 * @param domainPk
+	 * @return
+	 */
+	public List<String> getRefreshDomainKeys(DomainPK domainPk) {
 		ProjectPK projectPk = new ProjectPK(domainPk.getCustomerId(),
 				domainPk.getProjectId());
-
-		RedisCacheManager.getInstance().refresh(domainPk.toUUID(), projectPk.toUUID()+"/domains");
+		ArrayList<String> refresh = new ArrayList<String>();
+		refresh.add(domainPk.toUUID());
+		refresh.add(projectPk.toUUID()+"/domains");
+		return refresh;
 	}
 
 	public void refreshDomain(DomainPK domainPk, ArrayList<DomainPK> domains){
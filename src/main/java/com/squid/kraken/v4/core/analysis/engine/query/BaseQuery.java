@@ -372,6 +372,17 @@ public class BaseQuery implements IQuery {
 			return filters;
 		}
 
+		/**
+		 * the filter condition on the axis definition, or null if there is
+		 * nothing to filter; this does not handle the predicate axes
+		 * 
+		 * @return
+		 * @throws ScopeException
+		 */
+		public ExpressionAST getCondition() throws ScopeException {
+			return createFilter(axis.getDefinition(), filters);
+		}
+
 		@Override
 		public String toString() {
 			return "Filter [" + type + " " + axis + "=" + filters + "]";
@@ -481,6 +492,51 @@ public class BaseQuery implements IQuery {
 			// else
 			return false;
 		}
+		ExpressionAST filterALL = createFilter(expr, filters);
+		if (filterALL != null) {
+			IWherePiece piece = select.where(filterALL);
+			piece.addComment("filtering on: " + axis.getName());
+		}
+		//
+		// handling constraint propagation...
+		if (select.getAnalyzer() != null) {
+			Column c = select.getAnalyzer().factorDimension(axis.getDefinition());
+			if (c != null) {
+				// Detect Time Constraint again (slight opti possible by putting
+				// in the above code)
+				// T129
+				DimensionMember timeFilter = null;
+				for (DimensionMember filter : filters) {
+					if (filter.getID() instanceof Intervalle) {
+						timeFilter = filter;
+					}
+				}
+				if (timeFilter != null) {
+					// make a copy, do not modify filters => it's global !
+					ArrayList<DimensionMember> copy = new ArrayList<DimensionMember>(filters);
+					copy.remove(timeFilter);
+					select.getAnalyzer().addConstraint(c, copy, timeFilter);
+				} else {
+					select.getAnalyzer().addConstraint(c, filters);
+				}
+
+			}
+		}
+		//
+		return filterALL != null;
+	}
+
+	/**
+	 * build the condition filtering the expression on the members: the
+	 * values, the intervals and the null member
+	 * 
+	 * @param expr
+	 * @param filters
+	 * @return the condition, or null if there is nothing to filter
+	 * @throws ScopeException
+	 */
+	protected ExpressionAST createFilter(ExpressionAST expr, Collection<DimensionMember> filters)
+			throws ScopeException {
 		boolean filter_by_null = false;// T1198
 		List<Object> filter_by_members = new ArrayList<Object>();
 		ExpressionAST filter_by_intervalle = null;
@@ -518,37 +574,7 @@ public class BaseQuery implements IQuery {
 		if (filter_by_intervalle != null) {
 			filterALL = (filterALL == null) ? filter_by_intervalle : ExpressionMaker.OR(filterALL, filter_by_intervalle);
 		}
-		if (filterALL != null) {
-			IWherePiece piece = select.where(filterALL);
-			piece.addComment("filtering on: " + axis.getName());
-		}
-		//
-		// handling constraint propagation...
-		if (select.getAnalyzer() != null) {
-			Column c = select.getAnalyzer().factorDimension(axis.getDefinition());
-			if (c != null) {
-				// Detect Time Constraint again (slight opti possible by putting
-				// in the above code)
-				// T129
-				DimensionMember timeFilter = null;
-				for (DimensionMember filter : filters) {
-					if (filter.getID() instanceof Intervalle) {
-						timeFilter = filter;
-					}
-				}
-				if (timeFilter != null) {
-					// make a copy, do not modify filters => it's global !
-					ArrayList<DimensionMember> copy = new ArrayList<DimensionMember>(filters);
-					copy.remove(timeFilter);
-					select.getAnalyzer().addConstraint(c, copy, timeFilter);
-				} else {
-					select.getAnalyzer().addConstraint(c, filters);
-				}
-
-			}
-		}
-		//
-		return filterALL != null;
+		return filterALL;
 	}
 
 	public void setComment(String comment) {
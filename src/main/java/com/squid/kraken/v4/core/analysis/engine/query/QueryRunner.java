@@ -37,13 +37,16 @@ import com.squid.kraken.v4.caching.redis.RedisCacheManager;
 import com.squid.kraken.v4.caching.redis.datastruct.RawMatrix;
 import com.squid.kraken.v4.caching.redis.datastruct.RedisCacheValue;
 import com.squid.kraken.v4.caching.redis.datastruct.RedisCacheValuesList;
+import com.squid.kraken.v4.core.analysis.engine.cache.MetaModelObserver;
 import com.squid.kraken.v4.core.analysis.engine.processor.ComputingException;
 import com.squid.kraken.v4.core.analysis.engine.processor.DataMatrixTransformOrderBy;
 import com.squid.kraken.v4.core.analysis.engine.processor.DataMatrixTransformTruncate;
+import com.squid.kraken.v4.core.analysis.engine.query.aggregate.AggregateManager;
 import com.squid.kraken.v4.core.sql.script.SQLScript;
 import com.squid.kraken.v4.model.Project;
 import com.squid.kraken.v4.model.ProjectPK;
 import com.squid.kraken.v4.persistence.AppContext;
+import com.squid.kraken.v4.writers.PreviewWriter;
 import com.squid.kraken.v4.writers.QueryWriter;
 
 public class QueryRunner {
@@ -68,6 +71,8 @@ public class QueryRunner {
 		try {
 
 			Project project = query.getUniverse().asRootUserContext().getProject();
+			// the dependencies generations must reflect the pending model changes
+			MetaModelObserver.getInstance().flush(project.getId());
 			//
 			List<String> deps = query.computeDependencies();// to override
 			//
@@ -122,14 +127,54 @@ public class QueryRunner {
 			} else {
 				// compute
 				ProjectPK projectPK = project.getId();
-				result = RedisCacheManager.getInstance().getRedisCacheValue(ctx.getUser().getOid(),
-						ctx.getUser().getLogin(), // T2324
-						projectPK, sql,
-						deps, jobId, url, user, pwd, -2, query.getSelect().getStatement().getLimitValue());
+				// check for a summary table to re-aggregate
+				AggregateManager.Rewrite aggregate = null;
+				if (query instanceof SimpleQuery && AggregateManager.INSTANCE.isEnabled()) {
+					aggregate = AggregateManager.INSTANCE.rewrite((SimpleQuery) query, deps);
+				}
+				if (aggregate != null) {
+					logger.info("Analysis " + jobId + " reading from summary table: " + aggregate.getSQL());
+					try {
+						result = RedisCacheManager.getInstance().getRedisCacheValue(ctx.getUser().getOid(),
+								ctx.getUser().getLogin(), projectPK, aggregate.getSQL(), deps, jobId, url, user, pwd, -2,
+								-1);
+					} catch (InterruptedException e) {
+						throw e;
+					} catch (Exception e) {
+						logger.warn("Analysis " + jobId + " failed to read from summary table: " + e.getMessage());
+						result = null;
+					}
+					if (result == null) {
+						// the summary table may have been dropped: run the original query
+						AggregateManager.INSTANCE.reject(query.getDatasource().getDBManager(), aggregate);
+						aggregate = null;
+					} else if (checkFullVersion) {
+						// the summary table read has no order by nor limit
+						if (writer instanceof PreviewWriter) {
+							// the post-processing needs all the rows
+							((PreviewWriter) writer).setPageRows(-1);
+						}
+						if (!query.getOrderBy().isEmpty()) {
+							query.addPostProcessing(new DataMatrixTransformOrderBy(query.getOrderBy()));
+						}
+						if (query.getSelect().getStatement().hasLimitValue()
+								|| query.getSelect().getStatement().hasOffsetValue()) {
+							query.addPostProcessing(
+									new DataMatrixTransformTruncate(query.getSelect().getStatement().getLimitValue(),
+											query.getSelect().getStatement().getOffsetValue()));
+						}
+					}
+				}
+				if (aggregate == null) {
+					result = RedisCacheManager.getInstance().getRedisCacheValue(ctx.getUser().getOid(),
+							ctx.getUser().getLogin(), // T2324
+							projectPK, sql,
+							deps, jobId, url, user, pwd, -2, query.getSelect().getStatement().getLimitValue());
+				}
 				if (result == null) {
 					throw new ComputingException("Failed to compute or retrieve the matrix for job " + jobId);
 				} else {
-					if (checkFullVersion && result instanceof RawMatrix) {
+					if (aggregate == null && checkFullVersion && result instanceof RawMatrix) {
 						// create a new reference
 						RawMatrix rm = (RawMatrix) result;
 						if (!rm.isMoreData()) {// only if the result is complete
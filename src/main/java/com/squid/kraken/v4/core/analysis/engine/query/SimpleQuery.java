@@ -58,6 +58,7 @@ import com.squid.core.sql.render.SubSelectReferencePiece;
 import com.squid.core.sql.render.WherePiece;
 import com.squid.core.sql.statements.FromSelectStatementPiece;
 import com.squid.kraken.v4.core.analysis.engine.hierarchy.DimensionMember;
+import com.squid.kraken.v4.core.analysis.engine.processor.DataMatrixTransformScale;
 import com.squid.kraken.v4.core.analysis.engine.query.mapping.AxisMapping;
 import com.squid.kraken.v4.core.analysis.engine.query.mapping.ContinuousAxisMapping;
 import com.squid.kraken.v4.core.analysis.engine.query.mapping.MeasureMapping;
@@ -90,6 +91,9 @@ public class SimpleQuery extends BaseQuery {
 	private List<GroupByAxis> rollup = null;
 	private boolean rollupGrandTotal = false;
 
+	// approximate mode: the fraction of the rows read, 0 for an exact query
+	private double sampleRate = 0;
+
 	public SimpleQuery(Space subject) throws ScopeException, SQLScopeException {
 		super(subject.getUniverse(), subject.getRoot());
 		this.subject = subject.getRoot();
@@ -99,6 +103,32 @@ public class SimpleQuery extends BaseQuery {
 		return subject;
 	}
 
+	/**
+	 * run the query on a random sample of the rows; the additive measures are
+	 * scaled back when the result is post-processed
+	 * 
+	 * @param rate
+	 *            the fraction of the rows to read
+	 * @return false if the database does not support sampling: the query
+	 *         stays exact
+	 */
+	public boolean sample(double rate) {
+		if (select.sample(rate) == null) {
+			return false;
+		}
+		this.sampleRate = rate;
+		addPostProcessing(new DataMatrixTransformScale(rate));
+		return true;
+	}
+
+	public boolean isSampled() {
+		return sampleRate > 0;
+	}
+
+	public double getSampleRate() {
+		return sampleRate;
+	}
+
 	public void select(Measure measure, ExpressionAST expr) throws SQLScopeException, ScopeException {
 		try {
 			ISelectPiece piece = select.select(expr, measure.getName());
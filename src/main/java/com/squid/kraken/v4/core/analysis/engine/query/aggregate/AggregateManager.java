@@ -0,0 +1,694 @@
+/*******************************************************************************
+  * Copyright © Squid Solutions, 2016
+ *
+ * This file is part of Open Bouquet software.
+ *  
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ *
+ * There is a special FOSS exception to the terms and conditions of the 
+ * licenses as they are applied to this program. See LICENSE.txt in
+ * the directory of this program distribution.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * Squid Solutions also offers commercial licenses with additional warranties,
+ * professional functionalities or services. If you purchase a commercial
+ * license, then it supersedes and replaces any other agreement between
+ * you and Squid Solutions (above licenses and LICENSE.txt included).
+ * See http://www.squidsolutions.com/EnterpriseBouquet/
+ *******************************************************************************/
+package com.squid.kraken.v4.core.analysis.engine.query.aggregate;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.squid.core.domain.IDomain;
+import com.squid.core.domain.associative.AssociativeDomainInformation;
+import com.squid.core.domain.operators.OperatorDefinition;
+import com.squid.core.domain.set.SetDomain;
+import com.squid.core.domain.vector.VectorDomain;
+import com.squid.core.expression.ExpressionAST;
+import com.squid.core.expression.scope.ScopeException;
+import com.squid.core.jdbc.engine.IExecutionItem;
+import com.squid.core.sql.Context;
+import com.squid.core.sql.model.IAlias;
+import com.squid.core.sql.model.SQLScopeException;
+import com.squid.core.sql.render.IPiece;
+import com.squid.core.sql.render.ISelectPiece;
+import com.squid.core.sql.render.OperatorPiece;
+import com.squid.core.sql.render.RenderingException;
+import com.squid.core.sql.render.SQLSkin;
+import com.squid.core.sql.render.SelectPieceReference;
+import com.squid.kraken.v4.KrakenConfig;
+import com.squid.kraken.v4.caching.redis.RedisCacheManager;
+import com.squid.kraken.v4.core.analysis.engine.query.BaseQuery.Filter;
+import com.squid.kraken.v4.core.analysis.engine.query.BaseQuery.FilterType;
+import com.squid.kraken.v4.core.analysis.engine.query.SimpleQuery;
+import com.squid.kraken.v4.core.analysis.engine.query.mapping.AxisMapping;
+import com.squid.kraken.v4.core.analysis.engine.query.mapping.ContinuousAxisMapping;
+import com.squid.kraken.v4.core.analysis.engine.query.mapping.MeasureMapping;
+import com.squid.kraken.v4.core.analysis.model.OrderBy;
+import com.squid.kraken.v4.core.analysis.universe.Axis;
+import com.squid.kraken.v4.core.analysis.universe.Measure;
+import com.squid.kraken.v4.core.database.impl.SimpleDatabaseManager;
+import com.squid.kraken.v4.core.sql.SelectUniversal;
+
+/**
+ * Aggregate awareness: the manager mines the analysis queries executed on
+ * the warehouse, materializes the hot ones as summary tables in a dedicated
+ * schema, and rewrites the matching queries to re-aggregate the summary table
+ * instead of reading the base tables.
+ * <p>
+ * An aggregate is identified by the domain, the axes and the measures of the
+ * query. The filtered axes are kept as columns of the summary table, so the
+ * same aggregate answers the query whatever the selected members. Only the
+ * simple queries with associative measures are eligible: they are
+ * re-aggregated with the associative operator, as for the rollup strategies.
+ * The ordering and limit are then applied in memory, as for the full-version
+ * cache reuse in the QueryRunner.
+ * <p>
+ * The aggregate is stamped with the cache generation of the domain
+ * dependencies when it is built; once the generation changes, or the table is
+ * older than kraken.aggregates.maxAgeHours, it is rebuilt in the background on
+ * the next hit. Each build creates a new table version, and the previous
+ * version is dropped after kraken.aggregates.dropDelaySeconds, so a query
+ * still reading it is not broken.
+ * <p>
+ * A rejected aggregate (too big, or failed to build or read) is forgotten
+ * after kraken.aggregates.windowHours so it can be mined again.
+ * <p>
+ * This is disabled unless the kraken.aggregates.schema is defined. Note that
+ * the registry is local to this server.
+ */
+public class AggregateManager {
+
+	static final Logger logger = LoggerFactory.getLogger(AggregateManager.class);
+
+	public static final AggregateManager INSTANCE = new AggregateManager();
+
+	// the schema where to create the summary tables
+	private static final String SCHEMA = KrakenConfig.getProperty("kraken.aggregates.schema", "");
+
+	// number of executions before we materialize a query
+	private static final int MIN_HITS = Integer.parseInt(KrakenConfig.getProperty("kraken.aggregates.minHits", "5"));
+
+	// the hits are forgotten after this delay, and the rejected aggregates
+	// can be mined again
+	private static final int WINDOW_HOURS = Integer
+			.parseInt(KrakenConfig.getProperty("kraken.aggregates.windowHours", "24"));
+
+	// the summary tables are rebuilt after this delay, even if the
+	// dependencies did not change
+	private static final int MAX_AGE_HOURS = Integer
+			.parseInt(KrakenConfig.getProperty("kraken.aggregates.maxAgeHours", "24"));
+
+	// summary tables above this size are dropped: they would not be faster
+	// to read than the query
+	private static final long MAX_ROWS = Long.parseLong(KrakenConfig.getProperty("kraken.aggregates.maxRows", "100000"));
+
+	private static final int MAX_TABLES = Integer
+			.parseInt(KrakenConfig.getProperty("kraken.aggregates.maxTables", "100"));
+
+	// a replaced summary table is dropped after this delay, so the queries
+	// still reading it can complete
+	private static final int DROP_DELAY_SECONDS = Integer
+			.parseInt(KrakenConfig.getProperty("kraken.aggregates.dropDelaySeconds", "3600"));
+
+	// the builds waiting for the builder; above that the build is postponed
+	// to the next hit
+	private static final int MAX_PENDING_BUILDS = Integer
+			.parseInt(KrakenConfig.getProperty("kraken.aggregates.maxPendingBuilds", "10"));
+
+	public enum State {
+		BUILDING, READY, REJECTED
+	}
+
+	private final Cache<String, AtomicInteger> hits = CacheBuilder.newBuilder().maximumSize(10000)
+			.expireAfterAccess(WINDOW_HOURS, TimeUnit.HOURS).build();
+
+	private final ConcurrentHashMap<String, Aggregate> aggregates = new ConcurrentHashMap<>();
+
+	// one build at a time, we don't want to overload the warehouse
+	private final ThreadPoolExecutor builder = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<Runnable>(MAX_PENDING_BUILDS), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "AggregateManager-build");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	// drops the summary tables not in use anymore
+	private final ScheduledExecutorService janitor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "AggregateManager-drop");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private AggregateManager() {
+	}
+
+	public boolean isEnabled() {
+		return !SCHEMA.equals("");
+	}
+
+	/**
+	 * record the query execution, and check if there is a summary table to
+	 * answer it
+	 * 
+	 * @param query
+	 *            the analysis query
+	 * @param dependencies
+	 *            the query dependencies, used to check the summary table is
+	 *            up to date
+	 * @return the query reading the summary table, or null if there is no
+	 *         summary table available for that query
+	 */
+	public Rewrite rewrite(SimpleQuery query, List<String> dependencies) {
+		if (!isEnabled()) {
+			return null;
+		}
+		Shape shape = Shape.analyze(query);
+		if (shape == null) {
+			// not eligible
+			return null;
+		}
+		SimpleDatabaseManager manager = query.getDatasource().getDBManager();
+		String signature = shape.getSignature(manager);
+		String generation = RedisCacheManager.getInstance().buildCacheKey(signature, dependencies);
+		Aggregate aggregate = aggregates.get(signature);
+		if (aggregate != null) {
+			if (aggregate.state == State.REJECTED) {
+				if (aggregate.isExpired()) {
+					// give it another chance
+					aggregates.remove(signature, aggregate);
+				}
+				return null;
+			}
+			// the current version is still readable while the next one is
+			// building, as long as it is up to date
+			Version current = aggregate.current;
+			boolean upToDate = current != null && current.generation.equals(generation);
+			if (upToDate) {
+				aggregate.hits.incrementAndGet();
+			}
+			if (!upToDate || current.isExpired()) {
+				// refresh it
+				synchronized (aggregate) {
+					if (aggregate.state == State.READY) {
+						build(manager, aggregate, generation);
+					}
+				}
+			}
+			if (!upToDate) {
+				return null;
+			}
+			try {
+				return new Rewrite(aggregate, current, render(query, aggregate, current));
+			} catch (ScopeException | SQLScopeException | RenderingException e) {
+				logger.warn("cannot read the summary table " + current.tableName + ": " + e.getMessage());
+				return null;
+			}
+		}
+		// mining
+		try {
+			AtomicInteger count = hits.get(signature, new Callable<AtomicInteger>() {
+				@Override
+				public AtomicInteger call() {
+					return new AtomicInteger();
+				}
+			});
+			if (count.incrementAndGet() >= MIN_HITS && purge() < MAX_TABLES) {
+				Aggregate candidate = create(query, shape, signature);
+				if (candidate != null && aggregates.putIfAbsent(signature, candidate) == null) {
+					hits.invalidate(signature);
+					build(manager, candidate, generation);
+				}
+			}
+		} catch (ExecutionException e) {
+			// ignore
+		}
+		return null;
+	}
+
+	/**
+	 * reject the aggregate because reading the summary table failed; the
+	 * caller should run the original query instead. This is ignored if the
+	 * summary table has been replaced in the meantime.
+	 * 
+	 * @param manager
+	 * @param rewrite
+	 */
+	public void reject(final SimpleDatabaseManager manager, Rewrite rewrite) {
+		Aggregate aggregate = rewrite.aggregate;
+		synchronized (aggregate) {
+			if (aggregate.state == State.READY && aggregate.current == rewrite.version) {
+				aggregate.reject();
+				dropLater(manager, rewrite.version);
+			}
+		}
+	}
+
+	public List<Map<String, Object>> getStatistics() {
+		List<Map<String, Object>> stats = new ArrayList<>();
+		for (Aggregate aggregate : aggregates.values()) {
+			Version current = aggregate.current;
+			Map<String, Object> stat = new LinkedHashMap<>();
+			stat.put("table", current != null ? current.tableName : null);
+			stat.put("state", aggregate.state);
+			stat.put("rows", current != null ? current.rows : -1);
+			stat.put("hits", aggregate.hits.get());
+			stat.put("buildTimeMs", aggregate.buildTime);
+			stat.put("builtAt", current != null ? current.builtAt : -1);
+			stat.put("definition", aggregate.definition);
+			stat.put("sql", aggregate.sql);
+			stats.add(stat);
+		}
+		return stats;
+	}
+
+	/**
+	 * forget the expired rejected aggregates
+	 * 
+	 * @return the number of summary tables in use or building
+	 */
+	private int purge() {
+		int count = 0;
+		Iterator<Aggregate> iter = aggregates.values().iterator();
+		while (iter.hasNext()) {
+			Aggregate aggregate = iter.next();
+			if (aggregate.state != State.REJECTED) {
+				count++;
+			} else if (aggregate.isExpired()) {
+				iter.remove();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * create the aggregate for the query shape: select the axes and the
+	 * measures from the domain, with no filter
+	 * 
+	 * @return the aggregate, or null if the summary query cannot be
+	 *         generated
+	 */
+	private Aggregate create(SimpleQuery query, Shape shape, String signature) {
+		try {
+			SimpleQuery summary = new SimpleQuery(query.getUniverse().S(query.getSubject()));
+			Map<String, ISelectPiece> columns = new HashMap<>();
+			for (Map.Entry<String, Axis> entry : shape.axes.entrySet()) {
+				columns.put(entry.getKey(), summary.select(entry.getValue()));
+			}
+			for (Map.Entry<String, Measure> entry : shape.measures.entrySet()) {
+				summary.select(entry.getValue());
+				columns.put(entry.getKey(), summary.getMapper().find(entry.getValue()).getPiece());
+			}
+			summary.setComment("summary table for aggregate " + signature.substring(0, 12));
+			return new Aggregate(signature, shape.toString(), summary.renderNoLimitNoOrderBy(), columns);
+		} catch (ScopeException | SQLScopeException | RenderingException e) {
+			logger.warn("cannot create the summary table for " + shape + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * render the query reading the summary table: the measures are
+	 * re-aggregated by the query axes, and the filters apply to the axis
+	 * columns. The query mapper aliases are preserved.
+	 */
+	private String render(SimpleQuery query, Aggregate aggregate, Version version)
+			throws ScopeException, SQLScopeException, RenderingException {
+		SQLSkin skin = query.getDatasource().getDBManager().getSkin();
+		final String tableName = version.tableName;
+		IAlias tableAlias = new IAlias() {
+			@Override
+			public String getAlias() {
+				return tableName;
+			}
+		};
+		StringBuilder sql = new StringBuilder();
+		sql.append(skin.quoteComment("reading summary table for aggregate " + aggregate.signature.substring(0, 12)))
+				.append("\n");
+		sql.append("SELECT\n");
+		boolean first = true;
+		// measures
+		for (MeasureMapping mx : query.getMapper().getMeasureMapping()) {
+			if (first) first = false; else sql.append(",\n");
+			OperatorDefinition opdef = AssociativeDomainInformation
+					.getAssociativeOperator(mx.getMapping().getDefinitionSafe().getImageDomain());
+			IPiece[] args = new IPiece[] {
+					new SelectPieceReference(tableAlias, aggregate.columns.get(Shape.getKey(mx.getMapping()))) };
+			IPiece piece = new OperatorPiece(opdef, args);
+			sql.append("\t" + piece.render(skin) + " AS " + skin.quoteIdentifier(mx.getPiece().getAlias()));
+		}
+		// axis
+		List<String> groupBy = new ArrayList<>();
+		for (AxisMapping ax : query.getMapper().getAxisMapping()) {
+			if (first) first = false; else sql.append(",\n");
+			IPiece piece = new SelectPieceReference(tableAlias, aggregate.columns.get(Shape.getKey(ax.getAxis())));
+			sql.append("\t" + piece.render(skin) + " AS " + skin.quoteIdentifier(ax.getPiece().getAlias()));
+			groupBy.add(piece.render(skin));
+		}
+		sql.append("\nFROM ").append(getQualifiedName(skin, tableName)).append(" ")
+				.append(skin.quoteTableIdentifier(tableName));
+		// filters: bind the axis definition to the summary table column
+		SelectUniversal scope = new SelectUniversal(query.getUniverse());
+		first = true;
+		for (Filter filter : query.getFilters()) {
+			ExpressionAST condition = filter.getCondition();
+			if (condition != null) {
+				scope.getScope().put(filter.getAxis().getDefinition(), new SelectPieceReference(tableAlias,
+						aggregate.columns.get(Shape.getKey(filter.getAxis()))));
+				sql.append(first ? "\nWHERE " : "\nAND ");
+				sql.append("(" + scope.createPiece(Context.WHERE, condition).render(skin) + ")");
+				first = false;
+			}
+		}
+		if (!groupBy.isEmpty()) {
+			sql.append("\nGROUP BY ");
+			for (int i = 0; i < groupBy.size(); i++) {
+				if (i > 0) sql.append(", ");
+				sql.append(groupBy.get(i));
+			}
+		}
+		sql.append(skin.quoteEndOfStatement("\n"));
+		return sql.toString();
+	}
+
+	private void build(final SimpleDatabaseManager manager, final Aggregate aggregate, final String generation) {
+		final State previousState = aggregate.state;
+		aggregate.state = State.BUILDING;
+		try {
+			builder.execute(new Runnable() {
+				@Override
+				public void run() {
+					SQLSkin skin = manager.getSkin();
+					// a new version for each build, so we never overwrite a
+					// table that is being read
+					String tableName = "kagg_" + aggregate.signature.substring(0, 12) + "_"
+							+ DigestUtils.sha256Hex(generation + "\n" + UUID.randomUUID()).substring(0, 10);
+					String table = getQualifiedName(skin, tableName);
+					Version previous = aggregate.current;
+					long start = System.currentTimeMillis();
+					try {
+						manager.execute(createTable(skin, table, aggregate.sql));
+						long rows = count(manager, table);
+						aggregate.buildTime = System.currentTimeMillis() - start;
+						if (rows > MAX_ROWS) {
+							logger.info("dropping summary table " + table + ": " + rows + " rows is above the limit");
+							drop(manager, table);
+							aggregate.reject();
+						} else {
+							logger.info("summary table " + table + " ready with " + rows + " rows in "
+									+ aggregate.buildTime + "ms");
+							aggregate.current = new Version(tableName, generation, rows);
+							aggregate.state = State.READY;
+						}
+					} catch (Exception e) {
+						logger.error("failed to build summary table " + table + ": " + e.getMessage());
+						// in case it was partially created
+						drop(manager, table);
+						aggregate.reject();
+					}
+					// the previous version may still be read for a while
+					if (previous != null) {
+						dropLater(manager, previous);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// too many builds pending, try again on the next hit
+			logger.info("postponing the summary table build for aggregate " + aggregate.signature.substring(0, 12));
+			if (previousState == State.BUILDING) {
+				// it was never built
+				aggregates.remove(aggregate.signature, aggregate);
+			} else {
+				aggregate.state = previousState;
+			}
+		}
+	}
+
+	/**
+	 * the statement materializing the query; SQL Server does not support
+	 * CREATE TABLE AS, and Teradata requires the WITH DATA option
+	 */
+	private static String createTable(SQLSkin skin, String table, String sql) {
+		String product = skin.getProduct().getProductName().toLowerCase();
+		if (product.contains("microsoft") || product.contains("sql server")) {
+			return "SELECT * INTO " + table + " FROM (" + sql + ") kagg";
+		} else if (product.contains("teradata")) {
+			return "CREATE TABLE " + table + " AS (" + sql + ") WITH DATA";
+		} else {
+			return "CREATE TABLE " + table + " AS " + sql;
+		}
+	}
+
+	private static String getQualifiedName(SQLSkin skin, String tableName) {
+		return skin.quoteIdentifier(SCHEMA) + "." + skin.quoteIdentifier(tableName);
+	}
+
+	private void dropLater(final SimpleDatabaseManager manager, final Version version) {
+		janitor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				drop(manager, getQualifiedName(manager.getSkin(), version.tableName));
+			}
+		}, DROP_DELAY_SECONDS, TimeUnit.SECONDS);
+	}
+
+	private void drop(SimpleDatabaseManager manager, String table) {
+		try {
+			manager.execute("DROP TABLE " + table);
+		} catch (Exception e) {
+			// the table does not exist
+		}
+	}
+
+	private long count(SimpleDatabaseManager manager, String table) throws Exception {
+		IExecutionItem item = manager.createExecuteQueryTask("SELECT COUNT(*) FROM " + table).call();
+		try {
+			ResultSet result = item.getResultSet();
+			return result.next() ? result.getLong(1) : 0;
+		} finally {
+			item.close();
+		}
+	}
+
+	/**
+	 * the query reading a summary table
+	 */
+	public static class Rewrite {
+
+		private final Aggregate aggregate;
+
+		private final Version version;
+
+		private final String sql;
+
+		private Rewrite(Aggregate aggregate, Version version, String sql) {
+			this.aggregate = aggregate;
+			this.version = version;
+			this.sql = sql;
+		}
+
+		public String getSQL() {
+			return sql;
+		}
+
+	}
+
+	/**
+	 * the aggregate identity: the domain, the axes (selected or filtered) and
+	 * the measures of an eligible query
+	 */
+	private static class Shape {
+
+		private final SimpleQuery query;
+
+		private final TreeMap<String, Axis> axes = new TreeMap<>();
+
+		private final TreeMap<String, Measure> measures = new TreeMap<>();
+
+		private Shape(SimpleQuery query) {
+			this.query = query;
+		}
+
+		/**
+		 * check the query can be answered by re-aggregating a summary table:
+		 * no rollup, no sampling, no condition, only plain axes and
+		 * associative measures
+		 * 
+		 * @return the query shape, or null if it is not eligible
+		 */
+		public static Shape analyze(SimpleQuery query) {
+			if (query.hasRollups() || query.isSampled() || !query.getConditions().isEmpty()
+					|| query.isQualifyRequired()) {
+				return null;
+			}
+			Shape shape = new Shape(query);
+			for (AxisMapping ax : query.getMapper().getAxisMapping()) {
+				if (ax instanceof ContinuousAxisMapping || !isPlain(ax.getAxis())) {
+					return null;
+				}
+				shape.axes.put(getKey(ax.getAxis()), ax.getAxis());
+			}
+			for (Filter filter : query.getFilters()) {
+				if (filter.getType() != FilterType.WHERE || !isPlain(filter.getAxis())) {
+					return null;
+				}
+				shape.axes.put(getKey(filter.getAxis()), filter.getAxis());
+			}
+			for (MeasureMapping mx : query.getMapper().getMeasureMapping()) {
+				Measure measure = mx.getMapping();
+				if (!measure.isAssociative() || AssociativeDomainInformation
+						.getAssociativeOperator(measure.getDefinitionSafe().getImageDomain()) == null) {
+					return null;
+				}
+				shape.measures.put(getKey(measure), measure);
+			}
+			// the ordering is applied in memory
+			for (OrderBy order : query.getOrderBy()) {
+				if (query.getMapper().find(order.getExpression()) == null) {
+					return null;
+				}
+			}
+			return shape.axes.isEmpty() && shape.measures.isEmpty() ? null : shape;
+		}
+
+		/**
+		 * the axis is selected as is, and can be filtered on the column
+		 */
+		private static boolean isPlain(Axis axis) {
+			ExpressionAST expr = axis.getDefinitionSafe();
+			if (expr == null) {
+				return false;
+			}
+			IDomain image = expr.getImageDomain();
+			return !image.isInstanceOf(IDomain.CONDITIONAL) && !image.isInstanceOf(IDomain.OBJECT)
+					&& !image.isInstanceOf(SetDomain.DOMAIN) && !image.isInstanceOf(VectorDomain.DOMAIN);
+		}
+
+		public static String getKey(Axis axis) {
+			return "A:" + axis.prettyPrint();
+		}
+
+		public static String getKey(Measure measure) {
+			return "M:" + measure.getDefinitionSafe().prettyPrint();
+		}
+
+		public String getSignature(SimpleDatabaseManager manager) {
+			return DigestUtils.sha256Hex(manager.getDatabase().getUrl() + "\n" + toString());
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder key = new StringBuilder();
+			key.append(query.getSubject().getId().toUUID());
+			for (String axis : axes.keySet()) {
+				key.append("\n").append(axis);
+			}
+			for (String measure : measures.keySet()) {
+				key.append("\n").append(measure);
+			}
+			return key.toString();
+		}
+
+	}
+
+	private static class Aggregate {
+
+		private final String signature;
+
+		private final String definition;
+
+		private final String sql;
+
+		// the summary table columns, by axis or measure key
+		private final Map<String, ISelectPiece> columns;
+
+		private volatile State state = State.BUILDING;
+
+		// the summary table in use, or null
+		private volatile Version current = null;
+
+		private volatile long rejectedAt = -1;
+
+		private volatile long buildTime = -1;
+
+		private final AtomicInteger hits = new AtomicInteger();
+
+		public Aggregate(String signature, String definition, String sql, Map<String, ISelectPiece> columns) {
+			this.signature = signature;
+			this.definition = definition;
+			this.sql = sql;
+			this.columns = columns;
+		}
+
+		public void reject() {
+			current = null;
+			rejectedAt = System.currentTimeMillis();
+			state = State.REJECTED;
+		}
+
+		public boolean isExpired() {
+			return System.currentTimeMillis() - rejectedAt > TimeUnit.HOURS.toMillis(WINDOW_HOURS);
+		}
+
+	}
+
+	private static class Version {
+
+		private final String tableName;
+
+		private final String generation;
+
+		private final long rows;
+
+		private final long builtAt = System.currentTimeMillis();
+
+		public Version(String tableName, String generation, long rows) {
+			this.tableName = tableName;
+			this.generation = generation;
+			this.rows = rows;
+		}
+
+		public boolean isExpired() {
+			return System.currentTimeMillis() - builtAt > TimeUnit.HOURS.toMillis(MAX_AGE_HOURS);
+		}
+
+	}
+
+}
@@ -61,6 +61,12 @@ public class DashboardAnalysis extends Dashboard {
 	
 	private boolean lazy = false;
 	
+	// if positive, the number of rows needed to answer the request page
+	private long pageRows = 0;
+	
+	// approximate mode: if positive, the fraction of the rows to sample
+	private double sampleRate = 0;
+	
 	private String jobId;
 	
 	
@@ -208,6 +214,31 @@ public class DashboardAnalysis extends Dashboard {
     	return this.lazy;
     }
     
+    /**
+     * the number of rows needed to answer the requested page: if set, the
+     * analysis may return a partial result as soon as the first rows are
+     * available
+     */
+    public long getPageRows(){
+    	return this.pageRows;
+    }
+    
+    public void setPageRows(long pageRows){
+    	this.pageRows = pageRows;
+    }
+    
+    /**
+     * if positive, the analysis may be computed on a sample of the rows: the
+     * result is then flagged as approximate
+     */
+    public double getSampleRate(){
+    	return this.sampleRate;
+    }
+    
+    public void setSampleRate(double sampleRate){
+    	this.sampleRate = sampleRate;
+    }
+    
     public String getJobId(){
     	return this.jobId;
     }
@@ -487,7 +487,8 @@ public class Axis implements Property {
 			} else {
 			    DimensionIndex index = getIndex(false);// prevent deadlock if called from the HierarchyCompute code
 			    if (index!=null) {
-    				stats = index.getMembers().size();
+    				// use the store count, no need to read the members
+    				stats = index.countMembers();
     				return stats>0?stats:-1;
 			    } else {
 			        return -1;// we really don't know
@@ -47,6 +47,7 @@ import com.squid.core.database.model.Table;
 import com.squid.core.database.statistics.IDatabaseStatistics;
 import com.squid.core.expression.ExpressionAST;
 import com.squid.core.expression.scope.ScopeException;
+import com.squid.kraken.v4.core.analysis.engine.cache.MetaModelObserver;
 import com.squid.kraken.v4.core.expression.visitor.ExtractColumns;
 import com.squid.kraken.v4.model.Project;
 import com.squid.kraken.v4.model.ProjectPK;
@@ -77,6 +78,8 @@ public class DatabaseServiceImpl implements DatabaseService {
 	 */
 	public DatasourceDefinition getDatasourceDefinition(Project project)
 			throws DatabaseServiceException {
+		// apply the pending metamodel invalidations first
+		MetaModelObserver.getInstance().flush(project.getId());
 		Future<DatasourceDefinition> mapping = customerAccess.get(project.getId());
 		if (mapping == null) {
 			synchronized (customerAccess) {
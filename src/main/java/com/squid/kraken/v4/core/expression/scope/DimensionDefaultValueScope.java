@@ -24,7 +24,6 @@
 package com.squid.kraken.v4.core.expression.scope;
 
 import java.util.HashMap;
-import java.util.List;
 
 import com.squid.core.domain.IDomain;
 import com.squid.core.domain.vector.VectorOperatorDefinition;
@@ -118,9 +117,8 @@ public class DimensionDefaultValueScope extends DefaultScope {
 			if (name.equalsIgnoreCase("MAX")) {
 				if (dimension.getType() == Type.CONTINUOUS) {
 					if (index!=null && index.getStatus()==Status.DONE) {
-						List<DimensionMember> members = index.getMembers();
-						if (!members.isEmpty()) {
-							DimensionMember member = members.get(0);
+						DimensionMember member = index.getMember(0);
+						if (member != null) {
 							Object value = member.getID();
 							if (value instanceof Intervalle) {
 								Intervalle range = (Intervalle)value;
@@ -134,9 +132,8 @@ public class DimensionDefaultValueScope extends DefaultScope {
 			} else if (name.equalsIgnoreCase("MIN")) {
 				if (dimension.getType() == Type.CONTINUOUS) {
 					if (index!=null && index.getStatus()==Status.DONE) {
-						List<DimensionMember> members = index.getMembers();
-						if (!members.isEmpty()) {
-							DimensionMember member = members.get(0);
+						DimensionMember member = index.getMember(0);
+						if (member != null) {
 							Object value = member.getID();
 							if (value instanceof Intervalle) {
 								Intervalle range = (Intervalle)value;
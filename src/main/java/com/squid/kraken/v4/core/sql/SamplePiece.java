@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright © Squid Solutions, 2016
+ *
+ * This file is part of Open Bouquet software.
+ *  
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ *
+ * There is a special FOSS exception to the terms and conditions of the 
+ * licenses as they are applied to this program. See LICENSE.txt in
+ * the directory of this program distribution.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * Squid Solutions also offers commercial licenses with additional warranties,
+ * professional functionalities or services. If you purchase a commercial
+ * license, then it supersedes and replaces any other agreement between
+ * you and Squid Solutions (above licenses and LICENSE.txt included).
+ * See http://www.squidsolutions.com/EnterpriseBouquet/
+ *******************************************************************************/
+package com.squid.kraken.v4.core.sql;
+
+import java.math.BigDecimal;
+
+import com.squid.core.sql.render.IPiece;
+import com.squid.core.sql.render.RenderingException;
+import com.squid.core.sql.render.SQLSkin;
+
+/**
+ * A WHERE predicate keeping a random sample of the rows, using the vendor
+ * random function
+ */
+public class SamplePiece 
+implements IPiece
+{
+	
+	// resolution of the integer based predicates
+	private static final long SCALE = 1000000;
+	
+	private final String predicate;
+	
+	private final double rate;
+	
+	private SamplePiece(String predicate, double rate) {
+		this.predicate = predicate;
+		this.rate = rate;
+	}
+	
+	/**
+	 * create the sample predicate for the skin vendor
+	 * @param skin
+	 * @param rate the fraction of the rows to keep, in ]0,1[
+	 * @return the piece or null if the vendor is not supported
+	 */
+	public static SamplePiece create(SQLSkin skin, double rate) {
+		if (rate<=0 || rate>=1) return null;
+		String product = skin.getProduct().getProductName().toLowerCase();
+		String value = BigDecimal.valueOf(rate).toPlainString();
+		long threshold = Math.max(1, Math.round(rate*SCALE));
+		if (product.contains("postgres") || product.contains("redshift") 
+				|| product.contains("greenplum") || product.contains("vertica")) {
+			return new SamplePiece("RANDOM()<"+value, rate);
+		} else if (product.contains("mysql") || product.contains("mariadb") 
+				|| product.contains("hive") || product.contains("spark") 
+				|| product.contains("impala") || product.contains("drill") 
+				|| product.contains("bigquery") || product.contains("h2")) {
+			return new SamplePiece("RAND()<"+value, rate);
+		} else if (product.contains("oracle")) {
+			return new SamplePiece("DBMS_RANDOM.VALUE<"+value, rate);
+		} else if (product.contains("microsoft") || product.contains("sql server")) {
+			// RAND() is evaluated once per query, hash a NEWID() instead
+			return new SamplePiece("ABS(CHECKSUM(NEWID()))%"+SCALE+"<"+threshold, rate);
+		} else if (product.contains("teradata")) {
+			return new SamplePiece("RANDOM(1,"+SCALE+")<="+threshold, rate);
+		} else {
+			return null;
+		}
+	}
+	
+	public double getRate() {
+		return rate;
+	}
+
+	@Override
+	public String render(SQLSkin skin) throws RenderingException {
+		return predicate;
+	}
+
+}
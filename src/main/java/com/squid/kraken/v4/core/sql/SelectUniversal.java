@@ -537,6 +537,19 @@ public class SelectUniversal extends PieceCreator {
 		}
 		return where;
 	}
+	
+	/**
+	 * restrict the query to a random sample of the rows
+	 * @param rate the fraction of the rows to keep
+	 * @return the sample piece, or null if the database does not support sampling
+	 */
+	public SamplePiece sample(double rate) {
+		SamplePiece piece = SamplePiece.create(getSkin(), rate);
+		if (piece!=null) {
+			select.addWherePiece(getScope(), piece);
+		}
+		return piece;
+	}
 
 	public OrderByPiece orderBy(IPiece piece) {
 		return this.select.orderBy(piece);
@@ -53,6 +53,14 @@ public interface AnalyticsQuery extends AnalyticsSelection {
 
 	String getLazy();
 
+	void setApproximate(Boolean approximate);
+
+	/**
+	 * if true, the analysis may be answered from a sample of the rows while
+	 * the exact result is computed in the background
+	 */
+	Boolean getApproximate();
+
 	void setStartIndex(Integer startIndex);
 
 	Integer getStartIndex();
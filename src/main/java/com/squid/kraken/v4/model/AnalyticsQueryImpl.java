@@ -33,6 +33,8 @@ public class AnalyticsQueryImpl extends AnalyticsSelectionImpl implements Analyt
 	
 	private String lazy = null;// false
 	
+	private Boolean approximate = null;// false
+	
 	private Style style = Style.HUMAN;
 	
 	private List<Problem> problems;
@@ -55,6 +57,7 @@ public class AnalyticsQueryImpl extends AnalyticsSelectionImpl implements Analyt
 		this.maxResults = copy.getMaxResults();
 		this.startIndex = copy.getStartIndex();
 		this.lazy = copy.getLazy();
+		this.approximate = copy.getApproximate();
 		this.style = copy.getStyle();
 		this.problems = copy.getProblems();
 	}
@@ -207,6 +210,16 @@ public class AnalyticsQueryImpl extends AnalyticsSelectionImpl implements Analyt
 		this.lazy = lazy;
 	}
 
+	@Override
+	public Boolean getApproximate() {
+		return approximate;
+	}
+
+	@Override
+	public void setApproximate(Boolean approximate) {
+		this.approximate = approximate;
+	}
+
 	@Override
 	public Style getStyle() {
 		return style;
@@ -245,7 +258,7 @@ public class AnalyticsQueryImpl extends AnalyticsSelectionImpl implements Analyt
 				+ getPeriod() + ", timeframe=" + getTimeframe() + ", compareTo="
 				+ getCompareTo() + ", offset=" + offset + ", limit=" + limit + ", bookmarkId="
 				+ bookmarkId + ", maxResults=" + maxResults + ", startIndex=" + startIndex
-				+ ", lazy=" + lazy + ", style=" + style + "]";
+				+ ", lazy=" + lazy + ", approximate=" + approximate + ", style=" + style + "]";
 	}
 
 
@@ -61,6 +61,12 @@ public class DataTable extends JobResultBaseImpl {
     private String executionDate = null;
 
     private boolean fullset = true; //true if the whole dataset fits in  REDIS cache  (ie : number of row < LIMIT)
+
+    private boolean pending = false; //true if the query is still running, more data will be available
+
+    private boolean approximate = false; //true if the data are estimated from a sample of the rows
+
+    private double sampleRate = 0; //the fraction of the rows sampled, if approximate
     
     public DataTable() {
         super();
@@ -319,4 +325,32 @@ public class DataTable extends JobResultBaseImpl {
 		this.fullset = fullset;
 	}
 
+	public boolean getPending() {
+		return this.pending;
+	}
+
+	public void setPending(boolean pending) {
+		this.pending = pending;
+	}
+
+	public boolean getApproximate() {
+		return this.approximate;
+	}
+
+	public void setApproximate(boolean approximate) {
+		this.approximate = approximate;
+	}
+
+	public double getSampleRate() {
+		return this.sampleRate;
+	}
+
+	/**
+	 * set the sample rate; a positive rate also flags the table as approximate
+	 */
+	public void setSampleRate(double sampleRate) {
+		this.sampleRate = sampleRate;
+		this.approximate = sampleRate > 0;
+	}
+
 }
@@ -44,6 +44,12 @@ public final class ResultInfo {
 	
 	private boolean complete = false;
 	
+	private boolean pending = false;
+	
+	private boolean approximate = false;
+	
+	private double sampleRate = 0;
+	
 	public ResultInfo() {
 	}
 
@@ -103,4 +109,41 @@ public final class ResultInfo {
 		this.complete = complete;
 	}
 
+	/**
+	 * @return true if the query is still running: more data will be available
+	 *         for the next pages
+	 */
+	public boolean isPending() {
+		return pending;
+	}
+
+	public void setPending(boolean pending) {
+		this.pending = pending;
+	}
+
+	/**
+	 * @return true if the data are estimated from a sample of the rows; the
+	 *         exact result is computed in the background
+	 */
+	public boolean isApproximate() {
+		return approximate;
+	}
+
+	public void setApproximate(boolean approximate) {
+		this.approximate = approximate;
+	}
+
+	/**
+	 * @return the fraction of the rows sampled, as a confidence indication:
+	 *         the relative error of a sum over n sampled rows is about
+	 *         sqrt((1-sampleRate)/n)
+	 */
+	public double getSampleRate() {
+		return sampleRate;
+	}
+
+	public void setSampleRate(double sampleRate) {
+		this.sampleRate = sampleRate;
+	}
+
 }
\ No newline at end of file
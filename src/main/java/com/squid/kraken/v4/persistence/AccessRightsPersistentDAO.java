@@ -64,27 +64,37 @@ public abstract class AccessRightsPersistentDAO<T extends Persistent<PK>, PK ext
 
     /**
      * Role {@link Role#READ} is required to perform the operation.<br>
+     * The check is performed on the (cached) instance that is returned.
      */
 	@Override
 	public Optional<T> read(AppContext ctx, PK id) {
-		Optional<T> object = ds.read(ctx, type, id);
+		Optional<T> object = super.read(ctx, id);
 		if (object.isPresent()) {
 			// check the access rights
-			AccessRightsUtils.getInstance().checkRole(ctx, object.get(),
+			EffectiveRoleCache.getInstance().checkRole(ctx, object.get(),
 					Role.READ);
 		}
-		return super.read(ctx, id);
+		return object;
 	}
 
     /**
      * Role {@link Role#READ} is required to perform the operation.<br>
+     * The check is performed on the (cached) instance that is returned.
      */
 	@Override
 	public T readNotNull(AppContext ctx, PK id) {
-		T object = ds.readNotNull(ctx, type, id);
+		T object = super.readNotNull(ctx, id);
 		// check the access rights
-		AccessRightsUtils.getInstance().checkRole(ctx, object, Role.READ);
-		return super.readNotNull(ctx, id);
+		EffectiveRoleCache.getInstance().checkRole(ctx, object, Role.READ);
+		return object;
+	}
+
+    /**
+     * Role {@link Role#READ} is required to list the object.<br>
+     */
+	@Override
+	protected boolean canRead(AppContext ctx, T object) {
+		return EffectiveRoleCache.getInstance().hasRole(ctx, object, Role.READ);
 	}
 
     /**
@@ -114,7 +124,7 @@ public abstract class AccessRightsPersistentDAO<T extends Persistent<PK>, PK ext
 		Optional<T> object = read(ctx, id);
 		if (object.isPresent()) {
 			// check the access rights
-			AccessRightsUtils.getInstance().checkRole(ctx, object.get(),
+			EffectiveRoleCache.getInstance().checkRole(ctx, object.get(),
 					Role.WRITE);
 			super.delete(ctx, id);
 		}
@@ -23,6 +23,7 @@
  *******************************************************************************/
 package com.squid.kraken.v4.persistence;
 
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -57,6 +58,16 @@ public class CustomerDataStoreDecorator implements DataStore {
         ds.delete(ctx, type, id);
     }
 
+    @Override
+    public <T extends Persistent<PK>, PK extends GenericPK> void deleteMany(AppContext ctx, Class<T> type,
+            Collection<PK> ids) {
+        // set the customerId
+        for (PK id : ids) {
+            ((CustomerPK) id).setCustomerId(ctx.getCustomerId());
+        }
+        ds.deleteMany(ctx, type, ids);
+    }
+
     @Override
     public <T extends Persistent<PK>, PK extends GenericPK> Optional<T> read(AppContext ctx, Class<T> type, PK id) {
         // set the customerId
@@ -71,6 +82,16 @@ public class CustomerDataStoreDecorator implements DataStore {
         return ds.readNotNull(ctx, type, id);
     }
 
+    @Override
+    public <T extends Persistent<PK>, PK extends GenericPK> List<T> readMany(AppContext ctx, Class<T> type,
+            Collection<PK> ids) {
+        // set the customerId
+        for (PK id : ids) {
+            ((CustomerPK) id).setCustomerId(ctx.getCustomerId());
+        }
+        return ds.readMany(ctx, type, ids);
+    }
+
     @Override
     public <T extends Persistent<PK>, PK extends GenericPK> void update(AppContext ctx, T transientObject) {
         // force the customerId
@@ -94,6 +115,13 @@ public class CustomerDataStoreDecorator implements DataStore {
     @Override
     public <T extends Persistent<PK>, PK extends GenericPK> List<T> find(AppContext app, Class<T> type,
             List<DataStoreQueryField> queryFields, List<DataStoreFilterOperator> filterOperators, String orderBy) {
+        return find(app, type, queryFields, filterOperators, orderBy, null);
+    }
+
+    @Override
+    public <T extends Persistent<PK>, PK extends GenericPK> List<T> find(AppContext app, Class<T> type,
+            List<DataStoreQueryField> queryFields, List<DataStoreFilterOperator> filterOperators, String orderBy,
+            List<String> fields) {
         if (queryFields == null) {
             queryFields = new LinkedList<DataStoreQueryField>();
         }
@@ -101,6 +129,6 @@ public class CustomerDataStoreDecorator implements DataStore {
             filterOperators.add(0, DataStoreFilterOperator.EQUAL);
         }
         queryFields.add(0, new DataStoreQueryField("id.customerId", app.getCustomerId()));
-        return ds.find(app, type, queryFields, filterOperators, orderBy);
+        return ds.find(app, type, queryFields, filterOperators, orderBy, fields);
     }
 }
@@ -23,6 +23,7 @@
  *******************************************************************************/
 package com.squid.kraken.v4.persistence;
 
+import java.util.Collection;
 import java.util.List;
 
 import com.google.common.base.Optional;
@@ -60,9 +61,23 @@ public interface DataStore {
      */
     public <T extends Persistent<PK>, PK extends GenericPK> T readNotNull(AppContext ctx, Class<T> type, PK id);
 
+    /**
+     * Read several objects at once.<br>
+     * The objects Role is not set: this is used to warm the cache before reading each object.
+     * 
+     * @return the objects found, in the ids order; ids not found are skipped.
+     */
+    public <T extends Persistent<PK>, PK extends GenericPK> List<T> readMany(AppContext ctx, Class<T> type, Collection<PK> ids);
+
     /** Save changes made to a persistent object. */
     public <T extends Persistent<PK>, PK extends GenericPK> void update(AppContext ctx, T transientObject);
 
+    /**
+     * Remove several objects at once.<br>
+     * A single DELETE event is published, its source is the list of ids.
+     */
+    public <T extends Persistent<PK>, PK extends GenericPK> void deleteMany(AppContext ctx, Class<T> type, Collection<PK> ids);
+
     /** Remove an object from persistent storage in the database */
     public <T extends Persistent<PK>, PK extends GenericPK> void delete(AppContext ctx, Class<T> type, PK id);
     
@@ -113,4 +128,12 @@ public interface DataStore {
      */
     public <T extends Persistent<PK>, PK extends GenericPK> List<T> find(AppContext app, Class<T> type,
             List<DataStoreQueryField> queryFields, List<DataStoreFilterOperator> filterOperators, String orderBy);
+
+    /**
+     * Find with a projection: only the given fields are loaded.<br>
+     * The returned objects are partial views, they must not be cached nor updated.
+     */
+    public <T extends Persistent<PK>, PK extends GenericPK> List<T> find(AppContext app, Class<T> type,
+            List<DataStoreQueryField> queryFields, List<DataStoreFilterOperator> filterOperators, String orderBy,
+            List<String> fields);
 }
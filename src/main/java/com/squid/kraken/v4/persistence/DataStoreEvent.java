@@ -24,12 +24,17 @@
 package com.squid.kraken.v4.persistence;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 import com.squid.kraken.v4.model.User;
 
 /**
  * An Event triggered when an object is updated/created/deleted.<br>
  * The 'source' object is the modified object instance.<br>
+ * For batch operations the 'source' is the collection of the object ids, see {@link #split()}.<br>
  */
 @SuppressWarnings("serial")
 public class DataStoreEvent implements Serializable {
@@ -95,6 +100,28 @@ public class DataStoreEvent implements Serializable {
     	return isExternal;
     }
 
+    /**
+     * @return true if the source is a collection of objects
+     */
+    public boolean isBatch() {
+    	return source instanceof Collection<?>;
+    }
+
+    /**
+     * split a batch event into one event per source object
+     */
+    public List<DataStoreEvent> split() {
+    	if (!isBatch()) {
+    		return Collections.singletonList(this);
+    	}
+    	Collection<?> sources = (Collection<?>) source;
+    	List<DataStoreEvent> events = new ArrayList<DataStoreEvent>(sources.size());
+    	for (Object item : sources) {
+    		events.add(new DataStoreEvent(emitter, origin, item, type, isExternal));
+    	}
+    	return events;
+    }
+
 	public Emitter getEmitter() {
 		return emitter;
 	}
@@ -23,14 +23,46 @@
  *******************************************************************************/
 package com.squid.kraken.v4.persistence;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.squid.kraken.v4.KrakenConfig;
+import com.squid.kraken.v4.model.GenericPK;
+import com.squid.kraken.v4.model.Persistent;
 
 /**
  * Event bus for Datastore operations such as object creation, update, delete.
+ * <p>
+ * The DAOs and the observers registered with {@link #subscribeSync} are
+ * notified inline, before publishEvent returns. The other observers are
+ * notified asynchronously by a fixed set of lanes: events for the same PK
+ * always go to the same lane, so they are delivered in order. The lane queues
+ * are bounded, the publisher blocks if a lane is lagging too much.
  */
 public class DataStoreEventBus {
 
+    static final Logger logger = LoggerFactory.getLogger(DataStoreEventBus.class);
+
+    private static final int LANES = Integer.parseInt(KrakenConfig.getProperty("kraken.eventbus.lanes", "4"));
+
+    private static final int QUEUE_SIZE = Integer
+            .parseInt(KrakenConfig.getProperty("kraken.eventbus.queueSize", "1000"));
+
+    // log a warning if an event is dispatched later than that
+    private static final long LAG_WARNING_MS = Long
+            .parseLong(KrakenConfig.getProperty("kraken.eventbus.lagWarningMs", "5000"));
+
     static private DataStoreEventBus instance;
 
     static synchronized public DataStoreEventBus getInstance() {
@@ -41,20 +73,35 @@ public class DataStoreEventBus {
     }
 
     private Collection<DataStoreEventObserver> DAOobservers;
+    private Collection<DataStoreEventObserver> syncObservers;
     private Collection<DataStoreEventObserver> observers;
 
+    private final Lane[] lanes;
+
     public DataStoreEventBus() {
     	DAOobservers = new ConcurrentLinkedQueue<DataStoreEventObserver>();
+    	syncObservers = new ConcurrentLinkedQueue<DataStoreEventObserver>();
         observers = new ConcurrentLinkedQueue<DataStoreEventObserver>();
+        lanes = new Lane[Math.max(1, LANES)];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(i);
+            lanes[i].start();
+        }
     }
 
     public void publishEvent(DataStoreEvent event) {
-        for (DataStoreEventObserver observer : DAOobservers) {
-            observer.notifyEvent(event);
+        // the DAOs are handling a single object per event
+        for (DataStoreEvent item : event.split()) {
+            for (DataStoreEventObserver observer : DAOobservers) {
+                observer.notifyEvent(item);
+            }
         }
-        for (DataStoreEventObserver observer : observers) {
+        for (DataStoreEventObserver observer : syncObservers) {
             observer.notifyEvent(event);
         }
+        if (!observers.isEmpty()) {
+            lanes[getLane(event)].enqueue(event);
+        }
     }
 
     // T269
@@ -62,14 +109,188 @@ public class DataStoreEventBus {
     	DAOobservers.add(observer);
     }
 
+    /**
+     * subscribe an observer that is notified asynchronously
+     */
     public <T extends DataStoreEventObserver> T subscribe(T observer) {
         observers.add(observer);
         return observer;
     }
+
+    /**
+     * subscribe an observer that must be notified before the event is
+     * published, on the publisher thread
+     */
+    public <T extends DataStoreEventObserver> T subscribeSync(T observer) {
+        syncObservers.add(observer);
+        return observer;
+    }
     
     public <T extends DataStoreEventObserver> T unSubscribe(T observer) {
         observers.remove(observer);
+        syncObservers.remove(observer);
         return observer;
     }
 
+    /**
+     * stop the lanes, waiting for the pending events to be dispatched
+     * 
+     * @param timeout
+     * @param unit
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+        for (Lane lane : lanes) {
+            lane.running = false;
+        }
+        for (Lane lane : lanes) {
+            try {
+                lane.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (!lane.queue.isEmpty()) {
+                logger.warn("stopping event bus lane " + lane.getName() + " with " + lane.queue.size()
+                        + " pending events");
+            }
+        }
+    }
+
+    public List<Map<String, Object>> getStatistics() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (Lane lane : lanes) {
+            Map<String, Object> stat = new LinkedHashMap<>();
+            long count = lane.dispatched.get();
+            stat.put("lane", lane.index);
+            stat.put("pending", lane.queue.size());
+            stat.put("published", lane.published.get());
+            stat.put("dispatched", count);
+            stat.put("failures", lane.failures.get());
+            stat.put("lagMs", lane.getLag());
+            stat.put("maxLagMs", lane.maxLag.get());
+            stat.put("avgLagMs", count > 0 ? lane.lag.get() / count : 0);
+            stats.add(stat);
+        }
+        return stats;
+    }
+
+    private int getLane(DataStoreEvent event) {
+        Object source = event.getSource();
+        GenericPK pk = null;
+        if (source instanceof Persistent<?>) {
+            pk = ((Persistent<?>) source).getId();
+        } else if (source instanceof GenericPK) {
+            pk = (GenericPK) source;
+        }
+        if (pk == null) {
+            return 0;
+        }
+        return (pk.hashCode() & Integer.MAX_VALUE) % lanes.length;
+    }
+
+    private static class PendingEvent {
+
+        private final DataStoreEvent event;
+
+        private final long time = System.currentTimeMillis();
+
+        public PendingEvent(DataStoreEvent event) {
+            this.event = event;
+        }
+
+    }
+
+    /**
+     * dispatch the events in order to the async observers
+     */
+    private class Lane extends Thread {
+
+        private final int index;
+
+        private final BlockingQueue<PendingEvent> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+
+        private volatile boolean running = true;
+
+        // the publication time of the event being dispatched, 0 if idle
+        private volatile long current = 0;
+
+        // metrics
+        private final AtomicLong published = new AtomicLong();
+        private final AtomicLong dispatched = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong lag = new AtomicLong();
+        private final AtomicLong maxLag = new AtomicLong();
+
+        public Lane(int index) {
+            super("DataStoreEventBus-" + index);
+            this.index = index;
+            setDaemon(true);
+        }
+
+        public void enqueue(DataStoreEvent event) {
+            published.incrementAndGet();
+            PendingEvent pending = new PendingEvent(event);
+            if (!queue.offer(pending)) {
+                // back-pressure
+                logger.warn("event bus lane " + getName() + " is full, blocking publisher");
+                try {
+                    queue.put(pending);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    logger.error("interrupted while publishing " + event + ", the event is lost");
+                }
+            }
+        }
+
+        /**
+         * the age of the oldest event not dispatched yet
+         */
+        public long getLag() {
+            long oldest = current;
+            if (oldest == 0) {
+                PendingEvent head = queue.peek();
+                if (head != null) {
+                    oldest = head.time;
+                }
+            }
+            return oldest == 0 ? 0 : System.currentTimeMillis() - oldest;
+        }
+
+        @Override
+        public void run() {
+            while (running || !queue.isEmpty()) {
+                PendingEvent pending;
+                try {
+                    pending = queue.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (pending != null) {
+                    current = pending.time;
+                    long delay = System.currentTimeMillis() - pending.time;
+                    if (delay > LAG_WARNING_MS) {
+                        logger.warn("event bus lane " + getName() + " is lagging by " + delay + "ms");
+                    }
+                    for (DataStoreEventObserver observer : observers) {
+                        try {
+                            observer.notifyEvent(pending.event);
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                            logger.error("failed to notify " + pending.event + " to " + observer, e);
+                        }
+                    }
+                    current = 0;
+                    dispatched.incrementAndGet();
+                    lag.addAndGet(delay);
+                    long max = maxLag.get();
+                    while (delay > max && !maxLag.compareAndSet(max, delay)) {
+                        max = maxLag.get();
+                    }
+                }
+            }
+        }
+
+    }
+
 }
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright © Squid Solutions, 2016
+ *
+ * This file is part of Open Bouquet software.
+ *  
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ *
+ * There is a special FOSS exception to the terms and conditions of the 
+ * licenses as they are applied to this program. See LICENSE.txt in
+ * the directory of this program distribution.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * Squid Solutions also offers commercial licenses with additional warranties,
+ * professional functionalities or services. If you purchase a commercial
+ * license, then it supersedes and replaces any other agreement between
+ * you and Squid Solutions (above licenses and LICENSE.txt included).
+ * See http://www.squidsolutions.com/EnterpriseBouquet/
+ *******************************************************************************/
+package com.squid.kraken.v4.persistence;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.squid.kraken.v4.KrakenConfig;
+import com.squid.kraken.v4.api.core.AccessRightsUtils;
+import com.squid.kraken.v4.api.core.InvalidCredentialsAPIException;
+import com.squid.kraken.v4.model.AccessRight.Role;
+import com.squid.kraken.v4.model.GenericPK;
+import com.squid.kraken.v4.model.HasVersionControl;
+import com.squid.kraken.v4.model.Persistent;
+import com.squid.kraken.v4.model.User;
+import com.squid.kraken.v4.model.UserGroup;
+import com.squid.kraken.v4.model.UserGroupPK;
+import com.squid.kraken.v4.model.UserPK;
+
+/**
+ * Cache the access rights checks per (user, object, version), so that the
+ * secured reads don't have to walk the object access rights every time.<br>
+ * The object entries are invalidated by the {@link DataStoreEvent}s; any user
+ * or group change flushes the whole cache since it may change the group
+ * membership.
+ */
+public class EffectiveRoleCache implements DataStoreEventObserver {
+
+	static private EffectiveRoleCache instance;
+
+	static synchronized public EffectiveRoleCache getInstance() {
+		if (instance == null) {
+			instance = DataStoreEventBus.getInstance().subscribeSync(new EffectiveRoleCache());
+		}
+		return instance;
+	}
+
+	private static final long MAX_OBJECTS = Long
+			.parseLong(KrakenConfig.getProperty("kraken.accessRights.cacheSize", "10000"));
+
+	// object PK -> (user/role/version -> granted)
+	private final Cache<GenericPK, ConcurrentMap<String, Boolean>> cache;
+
+	private EffectiveRoleCache() {
+		cache = CacheBuilder.newBuilder().maximumSize(MAX_OBJECTS).build();
+	}
+
+	/**
+	 * Check if the context user has a ROLE over an object.
+	 * 
+	 * @see AccessRightsUtils#checkRole(AppContext, Persistent, Role)
+	 * @throws InvalidCredentialsAPIException
+	 *             if user hasn't required role.
+	 */
+	public void checkRole(AppContext ctx, Persistent<?> object, Role role) {
+		if (!hasRole(ctx, object, role)) {
+			throw new InvalidCredentialsAPIException("Insufficient privileges : caller hasn't " + role.name()
+					+ " role on " + object.getId(), ctx.isNoError());
+		}
+	}
+
+	public boolean hasRole(AppContext ctx, Persistent<?> object, Role role) {
+		User user = ctx.getUser();
+		if (user == null || user.isSuperUser() || object.getId() == null) {
+			// nothing worth caching
+			return AccessRightsUtils.getInstance().hasRole(ctx, object, role);
+		}
+		ConcurrentMap<String, Boolean> checks = cache.getIfPresent(object.getId());
+		if (checks == null) {
+			checks = new ConcurrentHashMap<String, Boolean>();
+			ConcurrentMap<String, Boolean> previous = cache.asMap().putIfAbsent(object.getId(), checks);
+			if (previous != null) {
+				checks = previous;
+			}
+		}
+		String key = user.getOid() + "/" + role.name() + "/" + getVersion(object);
+		Boolean granted = checks.get(key);
+		if (granted == null) {
+			granted = AccessRightsUtils.getInstance().hasRole(ctx, object, role);
+			checks.put(key, granted);
+		}
+		return granted;
+	}
+
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	@Override
+	public void notifyEvent(DataStoreEvent event) {
+		Object source = event.getSource();
+		if (event.isBatch()) {
+			for (DataStoreEvent item : event.split()) {
+				notifyEvent(item);
+			}
+		} else if (source instanceof User || source instanceof UserGroup || source instanceof UserPK
+				|| source instanceof UserGroupPK) {
+			// group membership may have changed
+			cache.invalidateAll();
+		} else if (source instanceof Persistent<?>) {
+			cache.invalidate(((Persistent<?>) source).getId());
+		} else if (source instanceof GenericPK) {
+			cache.invalidate(source);
+		}
+	}
+
+	private Integer getVersion(Persistent<?> object) {
+		if (object instanceof HasVersionControl) {
+			return ((HasVersionControl) object).getVersionControl();
+		} else {
+			return null;
+		}
+	}
+
+}
@@ -23,6 +23,9 @@
  *******************************************************************************/
 package com.squid.kraken.v4.persistence;
 
+import java.util.Collection;
+import java.util.List;
+
 import com.google.common.base.Optional;
 import com.squid.kraken.v4.api.core.ObjectNotFoundAPIException;
 
@@ -47,6 +50,13 @@ public interface GenericDAO<T, PK> {
      * @return the object wrapped as Optional to handle not found (null) case.
      */
     Optional<T> read(AppContext ctx, PK id);
+
+    /**
+     * Retrieve several objects at once; objects not found or not readable are skipped.
+     * 
+     * @return the objects found, in the ids order.
+     */
+    List<T> readMany(AppContext ctx, Collection<PK> ids);
     
     /**
      * Check if an object exists.
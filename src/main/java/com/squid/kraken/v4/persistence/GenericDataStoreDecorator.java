@@ -23,7 +23,11 @@
  *******************************************************************************/
 package com.squid.kraken.v4.persistence;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.bson.types.ObjectId;
 
@@ -103,6 +107,21 @@ public class GenericDataStoreDecorator implements DataStore {
         }
     }
 
+    /**
+     * Delete several DB records with a single call.<br>
+     * If the AppContext is {@link AppContext#isDryRun()} then the DB update will not occur.<br>
+     * A single batch event is published, the DAOs will update the persistent cache.
+     */
+    @Override
+    public <T extends Persistent<PK>, PK extends GenericPK> void deleteMany(AppContext ctx, Class<T> type,
+            Collection<PK> ids) {
+        if (!ctx.isDryRun() && !ids.isEmpty()) {
+            ds.deleteMany(ctx, type, ids);
+            DataStoreEventBus.getInstance()
+                    .publishEvent(new DataStoreEvent(ctx, new ArrayList<PK>(ids), DataStoreEvent.Type.DELETE));
+        }
+    }
+
     /**
      * Read a DB record.<br>
      * The persistent cache will be updated if the object could be first read from it.
@@ -154,6 +173,45 @@ public class GenericDataStoreDecorator implements DataStore {
         return object;
     }
 
+    /**
+     * Read several DB records.<br>
+     * Objects are served from the persistent cache, the missing ones are loaded at once and put in the cache.<br>
+     * The Role is not set, it will be when reading each object.
+     * 
+     * @return the objects found, in the ids order.
+     */
+    @Override
+    public <T extends Persistent<PK>, PK extends GenericPK> List<T> readMany(AppContext ctx, Class<T> type,
+            Collection<PK> ids) {
+        Cache<PK, T> cache = CacheFactoryEHCache.getCacheFactory().getCache(type);
+        Map<PK, T> found = new HashMap<PK, T>();
+        List<PK> misses = new ArrayList<PK>();
+        for (PK id : ids) {
+            if (id != null) {
+                T object = cache.get(id);
+                if (object != null) {
+                    found.put(id, object);
+                } else {
+                    misses.add(id);
+                }
+            }
+        }
+        if (!misses.isEmpty()) {
+            for (T object : ds.readMany(ctx, type, misses)) {
+                found.put(object.getId(), object);
+                cache.put(object.getId(), object);
+            }
+        }
+        List<T> list = new ArrayList<T>(found.size());
+        for (PK id : ids) {
+            T object = id != null ? found.get(id) : null;
+            if (object != null) {
+                list.add(object);
+            }
+        }
+        return list;
+    }
+
     /**
      * Update a DB record.<br>
      * If the AppContext is {@link AppContext#isDryRun()} then the DB update will not occur.<br>
@@ -193,4 +251,16 @@ public class GenericDataStoreDecorator implements DataStore {
         return ds.find(app, type, queryFields, filterOperators, orderBy);
     }
 
+    @Override
+    public <T extends Persistent<PK>, PK extends GenericPK> List<T> find(AppContext app, Class<T> type,
+            List<DataStoreQueryField> queryFields, List<DataStoreFilterOperator> filterOperators, String orderBy,
+            List<String> fields) {
+        List<T> list = ds.find(app, type, queryFields, filterOperators, orderBy, fields);
+        for (T object : list) {
+            // set the Role
+            AccessRightsUtils.getInstance().setRole(app, object);
+        }
+        return list;
+    }
+
 }
@@ -23,6 +23,7 @@
  *******************************************************************************/
 package com.squid.kraken.v4.persistence;
 
+import java.util.Collection;
 import java.util.List;
 
 import com.google.common.base.Optional;
@@ -85,6 +86,12 @@ public class LocalizationDataStoreDecorator implements DataStore {
         ds.delete(ctx, type, id);
     }
 
+    @Override
+    public <T extends Persistent<PK>, PK extends GenericPK> void deleteMany(AppContext ctx, Class<T> type,
+            Collection<PK> ids) {
+        ds.deleteMany(ctx, type, ids);
+    }
+
     @Override
     public <T extends Persistent<PK>, PK extends GenericPK> boolean exists(AppContext ctx, Class<T> type, PK id) {
         return ds.exists(ctx, type, id);
@@ -135,6 +142,16 @@ public class LocalizationDataStoreDecorator implements DataStore {
     }
 
     
+    @Override
+    public <T extends Persistent<PK>, PK extends GenericPK> List<T> readMany(AppContext ctx, Class<T> type,
+            Collection<PK> ids) {
+        List<T> list = ds.readMany(ctx, type, ids);
+        for (T object : list) {
+            localize(ctx, object);
+        }
+        return list;
+    }
+
     @Override
     public <T extends Persistent<PK>, PK extends GenericPK> void update(AppContext ctx, T transientObject) {
         if (transientObject instanceof HasLocalizedName) {
@@ -178,7 +195,14 @@ public class LocalizationDataStoreDecorator implements DataStore {
     @Override
     public <T extends Persistent<PK>, PK extends GenericPK> List<T> find(AppContext app, Class<T> type,
             List<DataStoreQueryField> queryFields, List<DataStoreFilterOperator> filterOperators, String orderBy) {
-        List<T> list = ds.find(app, type, queryFields, filterOperators, orderBy);
+        return find(app, type, queryFields, filterOperators, orderBy, null);
+    }
+
+    @Override
+    public <T extends Persistent<PK>, PK extends GenericPK> List<T> find(AppContext app, Class<T> type,
+            List<DataStoreQueryField> queryFields, List<DataStoreFilterOperator> filterOperators, String orderBy,
+            List<String> fields) {
+        List<T> list = ds.find(app, type, queryFields, filterOperators, orderBy, fields);
         for (T object : list) {
             localize(app, object);
         }
@@ -23,8 +23,11 @@
  *******************************************************************************/
 package com.squid.kraken.v4.persistence;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.mongodb.morphia.query.Query;
 
@@ -51,6 +54,20 @@ public class MongoDBDataStore implements DataStore {
 		MongoDBHelper.getDatastore().delete(type, id.toUUID());
 	}
 
+	@Override
+	public <T extends Persistent<PK>, PK extends GenericPK> void deleteMany(
+			AppContext ctx, Class<T> type, Collection<PK> ids) {
+		if (ids.isEmpty()) {
+			return;
+		}
+		List<String> uuids = new ArrayList<String>(ids.size());
+		for (PK id : ids) {
+			uuids.add(id.toUUID());
+		}
+		// single remove
+		MongoDBHelper.getDatastore().delete(type, uuids);
+	}
+
 	@Override
 	public <T extends Persistent<PK>, PK extends GenericPK> boolean exists(
 			AppContext ctx, Class<T> type, PK id) {
@@ -62,6 +79,15 @@ public class MongoDBDataStore implements DataStore {
 			AppContext app, Class<T> type,
 			List<DataStoreQueryField> queryFields,
 			List<DataStoreFilterOperator> filterOperators, String orderBy) {
+		return find(app, type, queryFields, filterOperators, orderBy, null);
+	}
+
+	@Override
+	public <T extends Persistent<PK>, PK extends GenericPK> List<T> find(
+			AppContext app, Class<T> type,
+			List<DataStoreQueryField> queryFields,
+			List<DataStoreFilterOperator> filterOperators, String orderBy,
+			List<String> fields) {
 		List<T> list;
 		// build the query
 		Query<T> query = MongoDBHelper.getDatastore().createQuery(type);
@@ -134,6 +160,10 @@ public class MongoDBDataStore implements DataStore {
 		if ((orderBy != null) && !orderBy.isEmpty()) {
 			query.order(orderBy);
 		}
+		if (fields != null) {
+			// projection
+			query.retrievedFields(true, fields.toArray(new String[fields.size()]));
+		}
 		list = query.asList();
 
 		return list;
@@ -158,6 +188,34 @@ public class MongoDBDataStore implements DataStore {
 		}
 	}
 
+	/**
+	 * Load all the objects in a single $in query
+	 */
+	@Override
+	public <T extends Persistent<PK>, PK extends GenericPK> List<T> readMany(
+			AppContext ctx, Class<T> type, Collection<PK> ids) {
+		if (ids.isEmpty()) {
+			return new ArrayList<T>();
+		}
+		List<String> uuids = new ArrayList<String>(ids.size());
+		for (PK id : ids) {
+			uuids.add(id.toUUID());
+		}
+		Map<PK, T> found = new HashMap<PK, T>();
+		for (T object : MongoDBHelper.getDatastore().get(type, uuids).asList()) {
+			found.put(object.getId(), object);
+		}
+		// keep the ids order
+		List<T> list = new ArrayList<T>(found.size());
+		for (PK id : ids) {
+			T object = found.get(id);
+			if (object != null) {
+				list.add(object);
+			}
+		}
+		return list;
+	}
+
 	@Override
 	public <T extends Persistent<PK>, PK extends GenericPK> T readNotNull(
 			AppContext ctx, Class<T> type, PK id) {
@@ -24,9 +24,14 @@
 package com.squid.kraken.v4.persistence;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Collection;
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.google.common.base.Optional;
 import com.squid.kraken.v4.api.core.ObjectNotFoundAPIException;
 import com.squid.kraken.v4.caching.Cache;
@@ -49,12 +54,20 @@ import com.squid.kraken.v4.model.visitor.DeepReadVisitor;
  */
 public abstract class PersistentDAO<T extends Persistent<PK>, PK extends GenericPK> implements GenericDAO<T, PK>, DataStoreEventObserver {
 
+    static final Logger logger = LoggerFactory.getLogger(PersistentDAO.class);
+
     protected final Class<T> type;
 
     protected final DataStore ds;
     
     protected final Cache<PK, T> instanceCache;
 
+    /**
+     * The fields needed to list objects (navigation, pickers...)
+     */
+    public static final List<String> LISTING_VIEW = Collections.unmodifiableList(Arrays.asList("id", "name",
+            "description", "accessRights", "versionControl"));
+
     public PersistentDAO(Class<T> type, DataStore ds) {
         this.type = type;
         this.ds = ds;
@@ -73,6 +86,18 @@ public abstract class PersistentDAO<T extends Persistent<PK>, PK extends Generic
         ds.delete(ctx, type, id);
     }
 
+    /**
+     * Remove several objects with a single DataStore call.<br>
+     * No Role is checked, this is intended for system tasks such as the GC.
+     */
+    protected void deleteAll(AppContext ctx, List<T> objects) {
+        List<PK> ids = new ArrayList<PK>(objects.size());
+        for (T object : objects) {
+            ids.add(object.getId());
+        }
+        ds.deleteMany(ctx, type, ids);
+    }
+
     /**
      * Read a DB record.<br>
      * The customerId will be forced to AppContext's customerId.<br>
@@ -86,6 +111,16 @@ public abstract class PersistentDAO<T extends Persistent<PK>, PK extends Generic
         return ds.read(ctx, type, id);
     }
 
+    /**
+     * Read several DB records.<br>
+     * The missing instances are loaded in a single DataStore call, then each object goes through
+     * {@link #read(AppContext, GenericPK)} so that the DAO specific checks still apply.
+     */
+    @Override
+    public List<T> readMany(AppContext ctx, Collection<PK> ids) {
+        return toPersistentList(ctx, ids);
+    }
+
     @Override
     public boolean exists(AppContext ctx, PK id) {
         return ds.exists(ctx, type, id);
@@ -182,6 +217,12 @@ public abstract class PersistentDAO<T extends Persistent<PK>, PK extends Generic
         if (pkList == null) {
             // execute the query
         	List<T> list = ds.find(app, type, queryFields, filterOperators, orderBy);
+            // the objects are already loaded, no need to read them again
+            for (T o : list) {
+                if (!instanceCache.contains(o.getId())) {
+                    instanceCache.put(o.getId(), o);
+                }
+            }
             // put in cache
             pkList = toPKList(list);
             if (cache != null) {
@@ -194,6 +235,38 @@ public abstract class PersistentDAO<T extends Persistent<PK>, PK extends Generic
         return list;
     }    
 
+    /**
+     * Finder returning lightweight views.<br>
+     * Only the given fields are loaded from the DB, so the objects are partial: they are not cached and must not be
+     * updated. Objects the caller cannot read are filtered out.
+     * 
+     * @param fields
+     *            the fields to load, see {@link #LISTING_VIEW}
+     * @return a filtered list of partial objects
+     */
+    public List<T> findView(AppContext app, List<DataStoreQueryField> queryFields,
+            List<DataStoreFilterOperator> filterOperators, String orderBy, List<String> fields) {
+        List<T> list = ds.find(app, type, queryFields, filterOperators, orderBy, fields);
+        List<T> pList = new ArrayList<T>(list.size());
+        for (T object : list) {
+            if (canRead(app, object)) {
+                if (object instanceof DynamicObject) {
+                    //T2986 persistent objects are not dynamic
+                    ((DynamicObject) object).setInternalDynamic(false);
+                }
+                pList.add(object);
+            }
+        }
+        return pList;
+    }
+
+    /**
+     * Check if a (partial) object can be read, used by {@link #findView(AppContext, List, List, String, List)}
+     */
+    protected boolean canRead(AppContext ctx, T object) {
+        return true;
+    }
+
     private List<PK> toPKList(Collection<T> list) {
         List<PK> pkList = new ArrayList<PK>();
         for (T o : list) {
@@ -204,6 +277,14 @@ public abstract class PersistentDAO<T extends Persistent<PK>, PK extends Generic
 
     private List<T> toPersistentList(AppContext ctx, Collection<PK> list) {
         List<T> pList = new ArrayList<T>();
+        // load the missing instances at once instead of one read per PK
+        try {
+            ds.readMany(ctx, type, list);
+        } catch (Exception e) {
+            // fallback to the single reads
+            logger.warn("failed to read " + list.size() + " " + type.getSimpleName()
+                    + " at once, reading them one by one: " + e.getMessage(), e);
+        }
         for (PK o : list) {
             try {
                 Optional<T> read = read(ctx, o);
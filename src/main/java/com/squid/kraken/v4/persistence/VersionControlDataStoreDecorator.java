@@ -23,6 +23,7 @@
  *******************************************************************************/
 package com.squid.kraken.v4.persistence;
 
+import java.util.Collection;
 import java.util.List;
 
 import com.google.common.base.Optional;
@@ -60,6 +61,12 @@ public class VersionControlDataStoreDecorator implements DataStore {
 		ds.delete(ctx, type, id);
 	}
 
+	@Override
+	public <T extends Persistent<PK>, PK extends GenericPK> void deleteMany(AppContext ctx, Class<T> type,
+			Collection<PK> ids) {
+		ds.deleteMany(ctx, type, ids);
+	}
+
 	@Override
 	public <T extends Persistent<PK>, PK extends GenericPK> Optional<T> read(AppContext ctx, Class<T> type, PK id) {
 		return ds.read(ctx, type, id);
@@ -70,6 +77,12 @@ public class VersionControlDataStoreDecorator implements DataStore {
 		return ds.readNotNull(ctx, type, id);
 	}
 
+	@Override
+	public <T extends Persistent<PK>, PK extends GenericPK> List<T> readMany(AppContext ctx, Class<T> type,
+			Collection<PK> ids) {
+		return ds.readMany(ctx, type, ids);
+	}
+
 	/**
 	 * Implements optimistic-locking through version control check.
 	 */
@@ -123,4 +136,11 @@ public class VersionControlDataStoreDecorator implements DataStore {
 			List<DataStoreQueryField> queryFields, List<DataStoreFilterOperator> filterOperators, String orderBy) {
 		return ds.find(app, type, queryFields, filterOperators, orderBy);
 	}
+
+	@Override
+	public <T extends Persistent<PK>, PK extends GenericPK> List<T> find(AppContext app, Class<T> type,
+			List<DataStoreQueryField> queryFields, List<DataStoreFilterOperator> filterOperators, String orderBy,
+			List<String> fields) {
+		return ds.find(app, type, queryFields, filterOperators, orderBy, fields);
+	}
 }
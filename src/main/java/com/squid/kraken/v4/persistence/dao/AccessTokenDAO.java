@@ -29,6 +29,7 @@ import java.util.List;
 import org.mongodb.morphia.query.Query;
 
 import com.google.common.base.Optional;
+import com.squid.kraken.v4.api.core.AccessTokenSigner;
 import com.squid.kraken.v4.model.AccessToken;
 import com.squid.kraken.v4.model.AccessTokenPK;
 import com.squid.kraken.v4.model.UserPK;
@@ -64,10 +65,22 @@ public class AccessTokenDAO extends PersistentDAO<AccessToken, AccessTokenPK>
 	}
 
 	public List<AccessToken> findAllExpired(long expDate) {
+		return expiredQuery(expDate).asList();
+	}
+
+	public List<AccessToken> findExpired(long expDate, int limit) {
+		return expiredQuery(expDate).retrievedFields(true, "id").limit(limit).asList();
+	}
+
+	public void deleteExpired(AppContext ctx, List<AccessToken> expired) {
+		deleteAll(ctx, expired);
+	}
+
+	private Query<AccessToken> expiredQuery(long expDate) {
 		Query<AccessToken> q = MongoDBHelper.getDatastore().createQuery(type);
 		q.field("expirationDateMillis").exists();
 		q.field("expirationDateMillis").lessThan(expDate);
-		return q.asList();
+		return q;
 	}
 
 	public Optional<AccessToken> read(AppContext app, AccessTokenPK id) {
@@ -81,6 +94,10 @@ public class AccessTokenDAO extends PersistentDAO<AccessToken, AccessTokenPK>
 	}
 
 	public Optional<AccessToken> read(AccessTokenPK id) {
+		if (AccessTokenSigner.getInstance().isSigned(id)) {
+			// no need to look it up
+			return AccessTokenSigner.getInstance().read(id);
+		}
 		Optional<AccessToken> object = instanceCache.getOptional(id);
 		if (object == null) {
 			object = ds.read(null, type, id);
@@ -90,6 +107,10 @@ public class AccessTokenDAO extends PersistentDAO<AccessToken, AccessTokenPK>
 	}
 
 	public AccessToken create(AppContext ctx, AccessToken newInstance) {
+		if (AccessTokenSigner.getInstance().isSignable(newInstance)) {
+			// stateless token, not stored
+			return AccessTokenSigner.getInstance().sign(newInstance);
+		}
 		if (!ctx.isDryRun()) {
 			ds.create(ctx, newInstance);
 			// publish
@@ -102,7 +123,12 @@ public class AccessTokenDAO extends PersistentDAO<AccessToken, AccessTokenPK>
 
 	public void delete(AppContext ctx, AccessTokenPK id) {
 		if (!ctx.isDryRun()) {
-			ds.delete(ctx, type, id);
+			if (!AccessTokenSigner.getInstance().isSigned(id)) {
+				ds.delete(ctx, type, id);
+			} else {
+				AccessTokenSigner.getInstance().store(id);
+			}
+			// for signed tokens the event will revoke it on every server
 			// publish
 			DataStoreEventBus.getInstance().publishEvent(
 					new DataStoreEvent(ctx, id, DataStoreEvent.Type.DELETE));
@@ -139,7 +165,11 @@ public class AccessTokenDAO extends PersistentDAO<AccessToken, AccessTokenPK>
 		if (event.getSource() instanceof AccessTokenPK) {
 			// deletion
 			sourceId = (AccessTokenPK) event.getSource();
-			instanceCache.remove(sourceId);
+			if (AccessTokenSigner.getInstance().isSigned(sourceId)) {
+				AccessTokenSigner.getInstance().revoke(sourceId);
+			} else {
+				instanceCache.remove(sourceId);
+			}
 		}
 		if (event.getSource() instanceof AccessToken) {
 			// creation or update
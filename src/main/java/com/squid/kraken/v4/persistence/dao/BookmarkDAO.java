@@ -92,6 +92,28 @@ public class BookmarkDAO extends
 			String path) {
 		return findByPath(app, null, path);
 	}
+
+	private static final List<String> BOOKMARK_VIEW = new ArrayList<String>(LISTING_VIEW);
+	static {
+		BOOKMARK_VIEW.add("path");
+	}
+
+	/**
+	 * same as findByPath() but only load the listing view, not the bookmark
+	 * config
+	 * 
+	 * @param app
+	 * @param path
+	 * @return partial bookmarks
+	 */
+	public List<Bookmark> findViewByPath(AppContext app, String path) {
+		List<DataStoreQueryField> queryFields = new ArrayList<DataStoreQueryField>(
+				1);
+		List<DataStoreFilterOperator> filterOperators = new ArrayList<DataStoreFilterOperator>();
+		queryFields.add(new DataStoreQueryField("path", path));
+		filterOperators.add(DataStoreFilterOperator.STARTS_WITH);
+		return super.findView(app, queryFields, filterOperators, null, BOOKMARK_VIEW);
+	}
 	
 	public List<Bookmark> findByOwner(AppContext app) {
 		List<DataStoreQueryField> queryFields = new LinkedList<DataStoreQueryField>();
@@ -257,6 +279,12 @@ public class BookmarkDAO extends
 		return super.read(ctx, id);
 	}
 	
+	@Override
+	protected boolean canRead(AppContext ctx, Bookmark object) {
+		// same as read(): the path rules and the READ role
+		return checkBookmarkRole(ctx, object) && super.canRead(ctx, object);
+	}
+
 	private boolean checkBookmarkRole(AppContext ctx, Bookmark object) {
 		String path = object.getPath();
 		if (path==null) {
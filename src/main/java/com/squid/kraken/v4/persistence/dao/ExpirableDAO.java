@@ -25,8 +25,20 @@ package com.squid.kraken.v4.persistence.dao;
 
 import java.util.List;
 
+import com.squid.kraken.v4.persistence.AppContext;
+
 public interface ExpirableDAO<T> {
 
     public List<T> findAllExpired(long expDate);
+
+    /**
+     * Find at most limit expired objects, only their ids are loaded.
+     */
+    public List<T> findExpired(long expDate, int limit);
+
+    /**
+     * Delete expired objects at once, without checking the access rights.
+     */
+    public void deleteExpired(AppContext ctx, List<T> expired);
     
 }
@@ -53,10 +53,22 @@ public abstract class JobDAO<T extends Persistent<PK>, PK extends GenericPK> ext
     }
     
     public List<T> findAllExpired(long expDate) {
+        return expiredQuery(expDate).asList();
+    }
+
+    public List<T> findExpired(long expDate, int limit) {
+        return expiredQuery(expDate).retrievedFields(true, "id").limit(limit).asList();
+    }
+
+    public void deleteExpired(AppContext ctx, List<T> expired) {
+        deleteAll(ctx, expired);
+    }
+
+    private Query<T> expiredQuery(long expDate) {
         Query<T> q = MongoDBHelper.getDatastore().createQuery(type);
         q.field("temporary").notEqual(false);
         q.field("creationTime").lessThan(expDate);
-        return q.asList();
+        return q;
     }
 
     /**
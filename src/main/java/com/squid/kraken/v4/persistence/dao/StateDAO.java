@@ -57,10 +57,23 @@ public class StateDAO extends
 	}
 	
     public List<State> findAllExpired(long expDate) {
+        return expiredQuery(expDate).asList();
+    }
+
+    public List<State> findExpired(long expDate, int limit) {
+        return expiredQuery(expDate).retrievedFields(true, "id").limit(limit).asList();
+    }
+
+    public void deleteExpired(AppContext ctx, List<State> expired) {
+        deleteAll(ctx, expired);
+    }
+
+    private Query<State> expiredQuery(long expDate) {
         Query<State> q = MongoDBHelper.getDatastore().createQuery(type);
         q.field("creationTime").lessThan(expDate);
+        // states associated to a shortcut never expire
         q.field("shortcutId").doesNotExist();
-        return q.asList();
+        return q;
     }
     
     public List<State> findByParent(AppContext app, CustomerPK parentId) {
@@ -34,7 +34,6 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.zip.GZIPOutputStream;
 
 import javax.ws.rs.core.MediaType;
 
@@ -52,6 +51,8 @@ import org.apache.cxf.phase.AbstractPhaseInterceptor;
 import org.apache.cxf.phase.Phase;
 import org.apache.cxf.transport.common.gzip.GZIPOutInterceptor;
 
+import com.squid.kraken.v4.KrakenConfig;
+
 public class CustomGZIPOutInterceptor extends AbstractPhaseInterceptor<Message> {
 
 	    /**
@@ -96,6 +97,18 @@ public class CustomGZIPOutInterceptor extends AbstractPhaseInterceptor<Message>
 	    
 	    public static final String SOAP_JMS_CONTENTENCODING = "SOAPJMS_contentEncoding";
 
+	    /**
+	     * Key under which we store the initial compression level
+	     */
+	    public static final String GZIP_LEVEL_KEY = CustomGZIPOutInterceptor.class.getName() + ".gzipLevel";
+
+	    // compression levels: strong for small replies, fast for large exports
+	    private static final int SMALL_LEVEL = Integer.parseInt(KrakenConfig.getProperty("kraken.gzip.level.small", "9"));
+	    private static final int DEFAULT_LEVEL = Integer.parseInt(KrakenConfig.getProperty("kraken.gzip.level.default", "6"));
+	    private static final int LARGE_LEVEL = Integer.parseInt(KrakenConfig.getProperty("kraken.gzip.level.large", "1"));
+	    private static final long SMALL_SIZE = Long.parseLong(KrakenConfig.getProperty("kraken.gzip.smallSize", "65536"));
+	    private static final long LARGE_SIZE = Long.parseLong(KrakenConfig.getProperty("kraken.gzip.largeSize", "1048576"));
+
 	    private static final ResourceBundle BUNDLE = BundleUtils.getBundle(GZIPOutInterceptor.class);
 	    private static final Logger LOG = LogUtils.getL7dLogger(GZIPOutInterceptor.class);
 
@@ -161,21 +174,43 @@ public class CustomGZIPOutInterceptor extends AbstractPhaseInterceptor<Message>
             Message response = exchange.getOutMessage();
             List<?> contentList = response.getContent(List.class);
             String contentType = null;
+            String contentEncoding = null;
             if ((contentList != null) && (contentList.size()>0)) {
             	if (contentList.get(0) instanceof ResponseImpl) {
             		ResponseImpl resp = (ResponseImpl) contentList.get(0);
             		contentType = resp.getHeaderString("Content-Type");
+            		contentEncoding = resp.getHeaderString("Content-Encoding");
             	}
             }
             
             if (contentType != null && (contentType.equals(MediaType.APPLICATION_OCTET_STREAM))) {
             	LOG.fine("Content-Type:application/octet-stream, bypassing gzip compression");
             	return UseGzip.NO;
+            } else if (contentEncoding != null || isCompressed(contentType)) {
+            	// already compressed, pass it through
+            	LOG.fine("Content already compressed, bypassing gzip compression");
+            	return UseGzip.NO;
             } else {
+            	message.put(GZIP_LEVEL_KEY, isExport(contentType) ? LARGE_LEVEL : SMALL_LEVEL);
             	return gzipPermittedOriginal(message);
             }
 	    }
 
+	    private boolean isCompressed(String contentType) {
+	    	return contentType != null
+	    			&& (contentType.startsWith("application/zip")
+	    					|| contentType.startsWith("application/gzip")
+	    					|| contentType.startsWith("application/x-gzip")
+	    					// XLSX is a zip archive
+	    					|| contentType.startsWith("application/vnd.openxmlformats"));
+	    }
+
+	    private boolean isExport(String contentType) {
+	    	return contentType != null
+	    			&& (contentType.startsWith("text/csv")
+	    					|| contentType.startsWith("application/vnd.ms-excel"));
+	    }
+
 	    /**
 	     * Checks whether we can, cannot or must use gzip compression on this output
 	     * message. Gzip is always permitted if the message is a client request. If
@@ -323,9 +358,14 @@ public class CustomGZIPOutInterceptor extends AbstractPhaseInterceptor<Message>
 	                addHeader(message, "Vary", "Accept-Encoding");
 	            } 
 
-	            // gzip the result
-	            GZIPOutputStream zipOutput = new GZIPOutputStream(wrappedStream);
-	            wrappedStream = zipOutput;
+	            // gzip the result, lowering the level as the response grows
+	            Integer level = (Integer)message.get(GZIP_LEVEL_KEY);
+	            if (level == null) {
+	                level = SMALL_LEVEL;
+	            }
+	            wrappedStream = new PooledGZIPOutputStream(wrappedStream, level,
+	                    new long[] {SMALL_SIZE, LARGE_SIZE},
+	                    new int[] {Math.min(level, DEFAULT_LEVEL), Math.min(level, LARGE_LEVEL)});
 	        }
 	    }
 	    
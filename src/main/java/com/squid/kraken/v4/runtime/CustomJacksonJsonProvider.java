@@ -58,6 +58,25 @@ public class CustomJacksonJsonProvider extends JacksonJsonProvider {
 	
 	private static final Annotation DEEP_READ_ANNOTATION = new DeepReadAnnotation();
 
+	// shared with the responses streamed outside of the provider
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	static {
+		MAPPER.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+		MAPPER.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+	}
+
+	public CustomJacksonJsonProvider() {
+		super(MAPPER);
+	}
+
+	/**
+	 * the mapper used to serialize the API responses
+	 */
+	public static ObjectMapper getMapper() {
+		return MAPPER;
+	}
+
 	/**
      * Method that JAX-RS container calls to serialize given value.
      */
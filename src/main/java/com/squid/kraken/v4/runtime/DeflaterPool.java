@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright © Squid Solutions, 2016
+ *
+ * This file is part of Open Bouquet software.
+ *  
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ *
+ * There is a special FOSS exception to the terms and conditions of the 
+ * licenses as they are applied to this program. See LICENSE.txt in
+ * the directory of this program distribution.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * Squid Solutions also offers commercial licenses with additional warranties,
+ * professional functionalities or services. If you purchase a commercial
+ * license, then it supersedes and replaces any other agreement between
+ * you and Squid Solutions (above licenses and LICENSE.txt included).
+ * See http://www.squidsolutions.com/EnterpriseBouquet/
+ *******************************************************************************/
+package com.squid.kraken.v4.runtime;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+import com.squid.kraken.v4.KrakenConfig;
+
+/**
+ * A pool of raw Deflater instances used to compress the responses, so we
+ * don't allocate the (large) native zlib buffers for every request. It also
+ * collects the compression statistics.
+ */
+public class DeflaterPool {
+
+	public static final DeflaterPool INSTANCE = new DeflaterPool();
+
+	private static final int MAX_POOLED = Integer.parseInt(KrakenConfig.getProperty("kraken.gzip.pool.size", "64"));
+
+	private final ConcurrentLinkedQueue<Deflater> pool = new ConcurrentLinkedQueue<>();
+
+	private final AtomicInteger pooled = new AtomicInteger();
+
+	// metrics
+	private final AtomicLong created = new AtomicLong();
+	private final AtomicLong streams = new AtomicLong();
+	private final AtomicLong bytesIn = new AtomicLong();
+	private final AtomicLong bytesOut = new AtomicLong();
+	private final AtomicLong cpuTime = new AtomicLong();
+
+	private DeflaterPool() {
+	}
+
+	/**
+	 * get a Deflater (with no zlib header, the caller is writing the gzip
+	 * format) set to the given level
+	 *
+	 * @param level
+	 * @return
+	 */
+	public Deflater acquire(int level) {
+		Deflater deflater = pool.poll();
+		if (deflater != null) {
+			pooled.decrementAndGet();
+		} else {
+			deflater = new Deflater(level, true);
+			created.incrementAndGet();
+		}
+		deflater.setLevel(level);
+		return deflater;
+	}
+
+	/**
+	 * return the deflater to the pool; it must not be used anymore by the
+	 * caller
+	 *
+	 * @param deflater
+	 */
+	public void release(Deflater deflater) {
+		deflater.reset();
+		if (pooled.incrementAndGet() <= MAX_POOLED) {
+			pool.offer(deflater);
+		} else {
+			pooled.decrementAndGet();
+			deflater.end();
+		}
+	}
+
+	/**
+	 * record a compressed stream
+	 *
+	 * @param in
+	 *            uncompressed size
+	 * @param out
+	 *            compressed size
+	 * @param cpu
+	 *            compression CPU time in nanoseconds
+	 */
+	protected void report(long in, long out, long cpu) {
+		streams.incrementAndGet();
+		bytesIn.addAndGet(in);
+		bytesOut.addAndGet(out);
+		cpuTime.addAndGet(cpu);
+	}
+
+	public Map<String, Object> getStatistics() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		long in = bytesIn.get();
+		stats.put("streams", streams.get());
+		stats.put("deflaters", created.get());
+		stats.put("pooled", pooled.get());
+		stats.put("bytesIn", in);
+		stats.put("bytesOut", bytesOut.get());
+		stats.put("ratio", in > 0 ? (double) bytesOut.get() / in : 0);
+		stats.put("cpuTimeMs", cpuTime.get() / 1000000);
+		return stats;
+	}
+
+}
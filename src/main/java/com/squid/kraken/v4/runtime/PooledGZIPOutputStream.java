@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright © Squid Solutions, 2016
+ *
+ * This file is part of Open Bouquet software.
+ *  
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ *
+ * There is a special FOSS exception to the terms and conditions of the 
+ * licenses as they are applied to this program. See LICENSE.txt in
+ * the directory of this program distribution.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * Squid Solutions also offers commercial licenses with additional warranties,
+ * professional functionalities or services. If you purchase a commercial
+ * license, then it supersedes and replaces any other agreement between
+ * you and Squid Solutions (above licenses and LICENSE.txt included).
+ * See http://www.squidsolutions.com/EnterpriseBouquet/
+ *******************************************************************************/
+package com.squid.kraken.v4.runtime;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A GZIP stream using a Deflater from the {@link DeflaterPool}. The
+ * compression level is lowered once the uncompressed size crosses the
+ * given thresholds, so large exports don't pay for a strong compression.
+ * The compression CPU time is reported to the pool when the stream is closed.
+ */
+public class PooledGZIPOutputStream extends DeflaterOutputStream {
+
+	static final Logger logger = LoggerFactory.getLogger(PooledGZIPOutputStream.class);
+
+	private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+	private final CRC32 crc = new CRC32();
+
+	// the level to apply beyond each size threshold
+	private final long[] sizes;
+	private final int[] levels;
+
+	private int step = 0;
+
+	private long cpuTime = 0;
+
+	private boolean finished = false;
+
+	private boolean released = false;
+
+	/**
+	 * @param out
+	 * @param level
+	 *            the initial compression level
+	 * @param sizes
+	 *            the uncompressed size thresholds, ascending
+	 * @param levels
+	 *            the compression level to use beyond each threshold
+	 * @throws IOException
+	 */
+	public PooledGZIPOutputStream(OutputStream out, int level, long[] sizes, int[] levels) throws IOException {
+		super(out, DeflaterPool.INSTANCE.acquire(level), 8192);
+		this.sizes = sizes;
+		this.levels = levels;
+		out.write(HEADER);
+	}
+
+	@Override
+	public synchronized void write(byte[] b, int off, int len) throws IOException {
+		if (finished) {
+			throw new IOException("write beyond end of stream");
+		}
+		long start = cpuTime();
+		try {
+			super.write(b, off, len);
+			crc.update(b, off, len);
+			while (step < sizes.length && def.getBytesRead() >= sizes[step]) {
+				def.setLevel(levels[step]);
+				step++;
+			}
+		} finally {
+			cpuTime += cpuTime() - start;
+		}
+	}
+
+	@Override
+	public void finish() throws IOException {
+		if (finished) {
+			return;
+		}
+		long start = cpuTime();
+		try {
+			super.finish();
+			writeTrailer();
+			finished = true;
+		} finally {
+			cpuTime += cpuTime() - start;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			super.close();
+		} finally {
+			release();
+		}
+	}
+
+	private void release() {
+		if (!released) {
+			released = true;
+			long in = def.getBytesRead();
+			long out = def.getBytesWritten() + HEADER.length + 8;
+			DeflaterPool.INSTANCE.report(in, out, cpuTime);
+			if (logger.isDebugEnabled()) {
+				logger.debug("compressed " + in + " bytes to " + out + " in " + (cpuTime / 1000000) + "ms");
+			}
+			DeflaterPool.INSTANCE.release(def);
+		}
+	}
+
+	private void writeTrailer() throws IOException {
+		long value = crc.getValue();
+		long size = def.getBytesRead();
+		byte[] trailer = new byte[8];
+		for (int i = 0; i < 4; i++) {
+			trailer[i] = (byte) (value >> (8 * i));
+			trailer[i + 4] = (byte) (size >> (8 * i));
+		}
+		out.write(trailer);
+	}
+
+	private static long cpuTime() {
+		return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+	}
+
+}
@@ -37,9 +37,21 @@ import com.squid.kraken.v4.core.analysis.datamatrix.DataMatrix;
 public class PreviewWriter extends QueryWriter {
 
 	private DataMatrix dm = null;
+	
+	// if positive, only wait for the rows of the requested page
+	private long pageRows = 0;
 
 	public PreviewWriter() {
 	}
+	
+	/**
+	 * if the result is still being computed, read only the first pageRows
+	 * rows instead of waiting for the whole result
+	 * @param pageRows
+	 */
+	public void setPageRows(long pageRows) {
+		this.pageRows = pageRows;
+	}
 
 	@Override
 	public void write() throws ScopeException {
@@ -48,7 +60,7 @@ public class PreviewWriter extends QueryWriter {
 				this.dm = new DataMatrix(db, (RawMatrix) val, mapper);
 			} else {
 				if (val instanceof RedisCacheValuesList) {
-					RawMatrix raw = RedisCacheManager.getInstance().getRawMatrix(val.getRedisKey());
+					RawMatrix raw = RedisCacheManager.getInstance().getRawMatrix(val.getRedisKey(), pageRows>0?pageRows:-1);
 					this.dm = new DataMatrix(db, raw, mapper);
 				}
 			}